@@ -0,0 +1,188 @@
+package com.wzy.codedatabase.juc.grep;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Queue;
+
+/**
+ * 基于字节的Aho-Corasick多关键字自动机，一次扫描同时匹配所有关键字
+ * A byte-level Aho-Corasick automaton compiled into a dense DFA: every state has all 256 transitions
+ * precomputed (failure links folded in), so matching is one table lookup per input byte.
+ * 关键字按UTF-8编码为字节，直接在原始字节上匹配，不需要解码为字符串。
+ * 状态编号预先乘以256（即在转移表中的偏移），转移为 delta[state + (b & 0xFF)]，没有乘法。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 16:00
+ */
+public final class AhoCorasick
+{
+    private static final int ALPHABET = 256;
+
+    /**
+     * 转移表：delta[state + b]为下一个状态（同样是偏移）
+     * the transition table, indexed by state offset + unsigned byte
+     */
+    private final int[] delta;
+
+    /**
+     * 状态是否命中任意关键字（包含沿失败链可达的关键字），下标为 state >>> 8
+     * whether a keyword ends at the state, including keywords reachable through failure links
+     */
+    private final boolean[] terminal;
+
+    /**
+     * 初始状态下会离开初始状态的字节，以及换行
+     * bytes that leave the start state, plus the newline that ends a line
+     */
+    private final boolean[] rootStops = new boolean[ALPHABET];
+
+    /**
+     * Builds the automaton.
+     * @param keywords 关键字，不能为空串，也不能包含换行（按行匹配）
+     */
+    public AhoCorasick(Collection<String> keywords)
+    {
+        if (keywords.isEmpty()) throw new IllegalArgumentException("至少需要一个关键字");
+        //1.构建字典树，0为根，-1表示没有子节点
+        int[] trie = new int[ALPHABET * 16];
+        Arrays.fill(trie, -1);
+        boolean[] ends = new boolean[16];
+        int states = 1;
+        for (String keyword : keywords)
+        {
+            byte[] bytes = keyword.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0) throw new IllegalArgumentException("关键字不能为空");
+            int state = 0;
+            for (byte b : bytes)
+            {
+                if (b == '\n') throw new IllegalArgumentException("关键字不能包含换行：" + keyword);
+                int slot = state * ALPHABET + (b & 0xFF);
+                if (trie[slot] < 0)
+                {
+                    if (states == ends.length)
+                    {
+                        int oldLength = trie.length;
+                        trie = Arrays.copyOf(trie, oldLength * 2);
+                        Arrays.fill(trie, oldLength, trie.length, -1);
+                        ends = Arrays.copyOf(ends, ends.length * 2);
+                    }
+                    trie[slot] = states++;
+                }
+                state = trie[slot];
+            }
+            ends[state] = true;
+        }
+
+        //2.广度优先计算失败链，并把缺失的转移指向失败状态的转移（得到完整的DFA）
+        delta = new int[states * ALPHABET];
+        terminal = new boolean[states];
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++)
+        {
+            int child = trie[c];
+            if (child > 0)
+            {
+                fail[child] = 0;
+                delta[c] = child * ALPHABET;
+                queue.add(child);
+            }
+            else delta[c] = 0;
+        }
+        terminal[0] = false;
+        for (int c = 0; c < ALPHABET; c++) rootStops[c] = delta[c] != 0 || c == '\n';
+        while (!queue.isEmpty())
+        {
+            int state = queue.poll();
+            terminal[state] = ends[state] || terminal[fail[state]];
+            for (int c = 0; c < ALPHABET; c++)
+            {
+                int child = trie[state * ALPHABET + c];
+                if (child > 0)
+                {
+                    fail[child] = delta[fail[state] * ALPHABET + c] / ALPHABET;
+                    delta[state * ALPHABET + c] = child * ALPHABET;
+                    queue.add(child);
+                }
+                else delta[state * ALPHABET + c] = delta[fail[state] * ALPHABET + c];
+            }
+        }
+    }
+
+    /**
+     * @return 初始状态 the start state
+     */
+    public int start()
+    {
+        return 0;
+    }
+
+    /**
+     * 读入一个字节后的状态
+     * @param state 当前状态 the current state
+     * @param b 输入字节 the input byte
+     * @return 下一个状态 the next state
+     */
+    public int next(int state, byte b)
+    {
+        return delta[state + (b & 0xFF)];
+    }
+
+    /**
+     * @param state 状态
+     * @return 到达该状态时是否命中关键字 whether some keyword ends here
+     */
+    public boolean matches(int state)
+    {
+        return terminal[state >>> 8];
+    }
+
+    /**
+     * 判断一段字节中是否包含任意关键字
+     * Tells whether the given bytes contain any keyword.
+     */
+    public boolean containsAny(byte[] bytes, int from, int to)
+    {
+        int state = 0;
+        for (int i = from; i < to; i++)
+        {
+            state = delta[state + (bytes[i] & 0xFF)];
+            if (terminal[state >>> 8]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 转移表，供扫描循环直接访问 the transition table, for tight scan loops
+     */
+    int[] transitions()
+    {
+        return delta;
+    }
+
+    /**
+     * @return 命中标记，下标为 state >>> 8 the terminal flags, indexed by state >>> 8
+     */
+    boolean[] terminals()
+    {
+        return terminal;
+    }
+
+    /**
+     * @return 初始状态下需要处理的字节 the bytes a scan at the start state cannot skip
+     */
+    boolean[] rootStops()
+    {
+        return rootStops;
+    }
+
+    /**
+     * @return 状态数 the number of states
+     */
+    public int stateCount()
+    {
+        return terminal.length;
+    }
+}
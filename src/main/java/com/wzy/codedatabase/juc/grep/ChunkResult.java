@@ -0,0 +1,56 @@
+package com.wzy.codedatabase.juc.grep;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个分块的搜索结果：分块内命中的行（分块内的行号）和分块拥有的行数
+ * The matches found in one chunk, with line numbers relative to the chunk.
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 16:00
+ */
+final class ChunkResult
+{
+    /**
+     * 分块的全局顺序号
+     */
+    final long sequence;
+    final Path file;
+    /**
+     * 分块在文件中的序号
+     */
+    final int chunkIndex;
+    final List<Match> matches = new ArrayList<>();
+    /**
+     * 起始位置在分块内的行数
+     */
+    long lines;
+    /**
+     * 读取失败：行数未知，同一文件之后的分块无法确定行号
+     */
+    boolean failed;
+
+    ChunkResult(long sequence, Path file, int chunkIndex)
+    {
+        this.sequence = sequence;
+        this.file = file;
+        this.chunkIndex = chunkIndex;
+    }
+
+    static final class Match
+    {
+        /**
+         * 分块内的行号，从1开始
+         */
+        final long line;
+        final byte[] bytes;
+
+        Match(long line, byte[] bytes)
+        {
+            this.line = line;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.wzy.codedatabase.juc.grep;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 并行多关键字grep引擎
+ * A parallel grep engine: one thread enumerates files and splits them into chunks onto a bounded
+ * blocking queue, one search thread per core scans chunks with an Aho-Corasick DFA over raw bytes,
+ * and an ordered sink prints matching lines in enumeration order.
+ * 1.文件按chunkBytes切分为分块，大文件也能被多个线程并行扫描；分块拥有起始位置落在[start, end)内的行，
+ *   开头不完整的行属于上一个分块，结尾的行读过end直到换行。
+ * 2.分块按pieceBytes逐段读入每个线程复用的直接缓冲区（positional read，默认）或内存映射（FileChannel.map），
+ *   再整块复制到线程的字节数组中扫描，不经过Scanner和字符解码；跨段的不完整行暂存在线程的行缓冲中。
+ * 3.处于初始状态时跳过不能开始任何关键字的字节，行内已命中后只找换行，不再走自动机；
+ *   每行最多保留MAX_LINE_BYTES字节用于输出。
+ * 4.读取失败的分块计入GrepReport的failedChunks，并交给错误回调（没有回调时忽略），引擎本身不打印任何内容；
+ *   失败分块之后同一文件的分块无法确定行号，结果被丢弃，同样计入failedChunks；
+ *   无法读取的目录和文件（例如枚举期间被删除）计入failedFiles并交给错误回调，不中断整个搜索。
+ * 注意：Java 8没有主动释放映射的API，映射段在GC时才释放，大量文件时可能达到vm.max_map_count上限；
+ * 而且段总要复制到字节数组中扫描，映射并不省去复制，因此默认使用直接缓冲区读取。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 16:00
+ */
+public final class GrepEngine
+{
+    public static final long DEFAULT_CHUNK_BYTES = 64L << 20;
+    public static final int DEFAULT_PIECE_BYTES = 8 << 20;
+
+    /**
+     * 输出的行最多保留的字节数（超过的部分截断）
+     */
+    static final int MAX_LINE_BYTES = 1 << 20;
+
+    /**
+     * 读过分块末尾找换行时每次读取的字节数
+     */
+    private static final int TAIL_PIECE_BYTES = 64 << 10;
+
+    /**
+     * 每个搜索线程排队的分块数
+     */
+    private static final int QUEUE_PER_THREAD = 4;
+
+    /**
+     * 只有换行需要处理 only newlines stop the skip loop
+     */
+    private static final boolean[] NEWLINE = new boolean[256];
+
+    static
+    {
+        NEWLINE['\n'] = true;
+    }
+
+    private static final Chunk DUMMY = new Chunk(-1, null, -1, 0, 0, 0);
+
+    private final AhoCorasick automaton;
+    private final int threads;
+    private final long chunkBytes;
+    private final int pieceBytes;
+    private final boolean memoryMapped;
+    private final BiConsumer<Path, Exception> onError;
+
+    /**
+     * 线程数取CPU核数，直接缓冲区读取，忽略读取失败的分块（只计数）
+     * @param keywords 关键字 keywords to search for
+     */
+    public GrepEngine(Collection<String> keywords)
+    {
+        this(keywords, null);
+    }
+
+    /**
+     * 线程数取CPU核数，直接缓冲区读取
+     * @param keywords 关键字 keywords to search for
+     * @param onError 错误回调（文件, 异常），在搜索线程或枚举线程中调用，可以为null the callback for failed files and chunks, may be null
+     */
+    public GrepEngine(Collection<String> keywords, BiConsumer<Path, Exception> onError)
+    {
+        this(keywords, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_BYTES, DEFAULT_PIECE_BYTES, false, onError);
+    }
+
+    /**
+     * @param keywords 关键字 keywords to search for
+     * @param threads 搜索线程数 the number of search threads
+     * @param chunkBytes 分块大小 the size of the unit of parallelism
+     * @param pieceBytes 每次映射/读取的大小 the size of one mapping or read
+     * @param memoryMapped true用内存映射，false用直接缓冲区读取 whether to map files instead of reading them
+     */
+    public GrepEngine(Collection<String> keywords, int threads, long chunkBytes, int pieceBytes, boolean memoryMapped)
+    {
+        this(keywords, threads, chunkBytes, pieceBytes, memoryMapped, null);
+    }
+
+    /**
+     * @param keywords 关键字 keywords to search for
+     * @param threads 搜索线程数 the number of search threads
+     * @param chunkBytes 分块大小 the size of the unit of parallelism
+     * @param pieceBytes 每次映射/读取的大小 the size of one mapping or read
+     * @param memoryMapped true用内存映射（映射段在GC时才释放），false用直接缓冲区读取 whether to map files instead of reading them
+     * @param onError 错误回调（文件, 异常），在搜索线程或枚举线程中调用，可以为null the callback for failed files and chunks, may be null
+     */
+    public GrepEngine(Collection<String> keywords, int threads, long chunkBytes, int pieceBytes, boolean memoryMapped,
+                      BiConsumer<Path, Exception> onError)
+    {
+        if (threads <= 0 || chunkBytes <= 0 || pieceBytes <= 0)
+            throw new IllegalArgumentException("threads, chunkBytes and pieceBytes must be positive");
+        this.automaton = new AhoCorasick(keywords);
+        this.threads = threads;
+        this.chunkBytes = chunkBytes;
+        this.pieceBytes = (int) Math.min(pieceBytes, chunkBytes);
+        this.memoryMapped = memoryMapped;
+        this.onError = onError;
+    }
+
+    /**
+     * 搜索目录（或单个文件）下所有普通文件，把命中行按 文件:行号:行 写到out
+     * Searches every regular file under root and writes matching lines to out in enumeration order.
+     * @param root 起始目录或文件 the base directory or a single file
+     * @param out 输出，不会被关闭 the output, flushed but not closed
+     * @return 统计 the statistics of the run
+     */
+    public GrepReport search(Path root, OutputStream out) throws IOException, InterruptedException
+    {
+        long start = System.nanoTime();
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        OrderedLineSink sink = new OrderedLineSink(out);
+        AtomicLong failedChunks = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread(new Searcher(queue, sink, failedChunks), "grep-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        //由当前线程枚举文件并切分分块
+        Enumerator enumerator = new Enumerator(queue);
+        try
+        {
+            Files.walkFileTree(root, enumerator);
+            //枚举被中断时visitor只能返回TERMINATE，在这里抛出
+            if (Thread.interrupted()) throw new InterruptedException();
+            queue.put(DUMMY);
+            for (Thread worker : workers) worker.join();
+        }
+        catch (IOException | InterruptedException | RuntimeException e)
+        {
+            for (Thread worker : workers) worker.interrupt();
+            throw e;
+        }
+        sink.close();
+        return new GrepReport(enumerator.files, enumerator.bytes, sink.matchedLines(), enumerator.failedFiles,
+                failedChunks.get() + sink.droppedChunks(), System.nanoTime() - start);
+    }
+
+    /**
+     * 交给错误回调，回调自身的异常不影响搜索
+     */
+    private void report(Path file, Exception e)
+    {
+        if (onError == null) return;
+        try
+        {
+            onError.accept(file, e);
+        }
+        catch (RuntimeException ignored)
+        {
+        }
+    }
+
+    /**
+     * 枚举文件并切分分块放入队列
+     * Walks the tree and queues the chunks of every regular file; a file or directory that cannot be read
+     * is reported and skipped instead of aborting the search.
+     */
+    private final class Enumerator extends SimpleFileVisitor<Path>
+    {
+        private final BlockingQueue<Chunk> queue;
+        private long sequence;
+        long files;
+        long bytes;
+        long failedFiles;
+
+        Enumerator(BlockingQueue<Chunk> queue)
+        {
+            this.queue = queue;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+        {
+            if (attrs.isSymbolicLink())
+            {//符号链接按目标判断，目标不存在或不可读时跳过（与Files.isRegularFile一致）
+                try
+                {
+                    attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                }
+                catch (IOException e)
+                {
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+            if (!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+            long size = attrs.size();
+            files++;
+            bytes += size;
+            //空文件也放一个分块，保证顺序号连续
+            int chunkIndex = 0;
+            long chunkStart = 0;
+            try
+            {
+                do
+                {
+                    long chunkEnd = Math.min(size, chunkStart + chunkBytes);
+                    queue.put(new Chunk(sequence++, file, chunkIndex++, chunkStart, chunkEnd, size));
+                    chunkStart = chunkEnd;
+                }
+                while (chunkStart < size);
+            }
+            catch (InterruptedException e)
+            {//保留中断状态，由search()抛出
+                Thread.currentThread().interrupt();
+                return FileVisitResult.TERMINATE;
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e)
+        {
+            failedFiles++;
+            report(file, e);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException e)
+        {
+            if (e != null)
+            {//目录在遍历中途读取失败，已经枚举到的文件照常搜索
+                failedFiles++;
+                report(dir, e);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /**
+     * 搜索线程：从队列中取分块扫描，直到取到DUMMY
+     * A search thread; each owns a reusable direct buffer and line buffer.
+     */
+    private final class Searcher implements Runnable
+    {
+        private final BlockingQueue<Chunk> queue;
+        private final OrderedLineSink sink;
+        private final AtomicLong failedChunks;
+        private final ByteBuffer direct;
+        private final byte[] bytes;
+        private final LineBuffer line = new LineBuffer();
+
+        Searcher(BlockingQueue<Chunk> queue, OrderedLineSink sink, AtomicLong failedChunks)
+        {
+            this.queue = queue;
+            this.sink = sink;
+            this.failedChunks = failedChunks;
+            this.direct = memoryMapped ? null : ByteBuffer.allocateDirect(pieceBytes);
+            this.bytes = new byte[pieceBytes];
+        }
+
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    Chunk chunk = queue.take();
+                    if (chunk == DUMMY)
+                    {
+                        queue.put(chunk);
+                        return;
+                    }
+                    ChunkResult result;
+                    try
+                    {
+                        result = scan(chunk);
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        //失败的分块也要交给sink（标记失败的空结果），否则之后的分块永远轮不到输出
+                        fail(chunk, e);
+                        result = new ChunkResult(chunk.sequence, chunk.file, chunk.chunkIndex);
+                        result.failed = true;
+                    }
+                    try
+                    {
+                        sink.accept(result);
+                    }
+                    catch (IOException e)
+                    {//输出失败时该分块的命中行丢失，同样算作失败的分块
+                        fail(chunk, e);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 记录失败的分块并交给错误回调
+         */
+        private void fail(Chunk chunk, Exception e)
+        {
+            failedChunks.incrementAndGet();
+            report(chunk.file, e);
+        }
+
+        /**
+         * 扫描一个分块
+         * Scans the lines owned by one chunk.
+         */
+        private ChunkResult scan(Chunk chunk) throws IOException
+        {
+            ChunkResult result = new ChunkResult(chunk.sequence, chunk.file, chunk.chunkIndex);
+            if (chunk.fileSize == 0) return result;
+            //自动机的表放到局部变量，内层循环只有数组访问
+            int[] delta = automaton.transitions();
+            boolean[] terminal = automaton.terminals();
+            boolean[] rootStops = automaton.rootStops();
+            byte[] bytes = this.bytes;
+            try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ))
+            {
+                long pos = chunk.start;
+                //1.不是从行首开始的分块，跳过开头不完整的行（它属于上一个分块）
+                boolean skipping = chunk.start > 0 && !endsLine(channel, chunk.start - 1);
+                long lineStartPos = chunk.start;
+                int state = 0;
+                boolean lineMatched = false;
+                boolean done = false;
+                line.reset();
+                //2.逐段扫描，直到分块内开始的行全部结束
+                while (!done && pos < chunk.fileSize)
+                {
+                    int limit = (int) Math.min(chunk.fileSize - pos,
+                            pos < chunk.end ? Math.min(pieceBytes, chunk.end - pos) : Math.min(pieceBytes, TAIL_PIECE_BYTES));
+                    read(channel, pos, limit);
+                    int i = 0;
+                    if (skipping)
+                    {
+                        while (i < limit && bytes[i] != '\n') i++;
+                        if (i == limit)
+                        {
+                            pos += limit;
+                            continue;
+                        }
+                        skipping = false;
+                        i++;
+                        lineStartPos = pos + i;
+                        if (lineStartPos >= chunk.end) break;
+                    }
+                    int lineStart = i;
+                    for (; i < limit; i++)
+                    {
+                        if (state == 0)
+                        {//在初始状态（或本行已命中）时，快速跳过不会改变状态的字节，没有状态依赖的循环流水线更好
+                            boolean[] stops = lineMatched ? NEWLINE : rootStops;
+                            while (i < limit && !stops[bytes[i] & 0xFF]) i++;
+                            if (i == limit) break;
+                        }
+                        byte b = bytes[i];
+                        if (b == '\n')
+                        {
+                            result.lines++;
+                            if (lineMatched) result.matches.add(new ChunkResult.Match(result.lines, line.toBytes(bytes, lineStart, i)));
+                            state = 0;
+                            lineMatched = false;
+                            line.reset();
+                            lineStart = i + 1;
+                            lineStartPos = pos + lineStart;
+                            if (lineStartPos >= chunk.end)
+                            {
+                                done = true;
+                                break;
+                            }
+                        }
+                        else if (!lineMatched)
+                        {
+                            state = delta[state + (b & 0xFF)];
+                            if (terminal[state >>> 8])
+                            {//本行已命中，之后只找换行
+                                lineMatched = true;
+                                state = 0;
+                            }
+                        }
+                    }
+                    if (!done) line.append(bytes, lineStart, limit);
+                    pos += limit;
+                }
+                //3.文件末尾没有换行的最后一行
+                if (!done && !skipping && lineStartPos < chunk.fileSize && lineStartPos < chunk.end)
+                {
+                    result.lines++;
+                    if (lineMatched) result.matches.add(new ChunkResult.Match(result.lines, line.toBytes(bytes, 0, 0)));
+                }
+            }
+            return result;
+        }
+
+        private boolean endsLine(FileChannel channel, long position) throws IOException
+        {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            while (one.hasRemaining())
+            {
+                if (channel.read(one, position) < 0) throw new IOException("unexpected end of file");
+            }
+            return one.get(0) == '\n';
+        }
+
+        /**
+         * 把文件的[position, position + length)整块复制到bytes中（按字节访问ByteBuffer太慢）
+         */
+        private void read(FileChannel channel, long position, int length) throws IOException
+        {
+            ByteBuffer buffer;
+            if (memoryMapped) buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            else
+            {
+                buffer = direct;
+                buffer.clear();
+                buffer.limit(length);
+                while (buffer.hasRemaining())
+                {
+                    if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("unexpected end of file");
+                }
+                buffer.flip();
+            }
+            buffer.get(bytes, 0, length);
+        }
+    }
+
+    /**
+     * 跨段的不完整行，最多保留MAX_LINE_BYTES字节
+     * Holds the part of the current line that was read in earlier pieces, capped at MAX_LINE_BYTES.
+     */
+    private static final class LineBuffer
+    {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void reset()
+        {
+            size = 0;
+        }
+
+        void append(byte[] piece, int from, int to)
+        {
+            int length = Math.min(to - from, MAX_LINE_BYTES - size);
+            if (length <= 0) return;
+            if (size + length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.min(MAX_LINE_BYTES, Math.max(bytes.length * 2, size + length)));
+            System.arraycopy(piece, from, bytes, size, length);
+            size += length;
+        }
+
+        /**
+         * 已暂存的部分加上当前段中的[from, to)
+         */
+        byte[] toBytes(byte[] piece, int from, int to)
+        {
+            int length = Math.max(0, Math.min(to - from, MAX_LINE_BYTES - size));
+            byte[] line = Arrays.copyOf(bytes, size + length);
+            System.arraycopy(piece, from, line, size, length);
+            return line;
+        }
+    }
+
+    /**
+     * 文件的一个分块 a byte range of one file
+     */
+    private static final class Chunk
+    {
+        final long sequence;
+        final Path file;
+        final int chunkIndex;
+        final long start;
+        final long end;
+        final long fileSize;
+
+        Chunk(long sequence, Path file, int chunkIndex, long start, long end, long fileSize)
+        {
+            this.sequence = sequence;
+            this.file = file;
+            this.chunkIndex = chunkIndex;
+            this.start = start;
+            this.end = end;
+            this.fileSize = fileSize;
+        }
+    }
+}
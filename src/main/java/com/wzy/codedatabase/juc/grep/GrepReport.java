@@ -0,0 +1,76 @@
+package com.wzy.codedatabase.juc.grep;
+
+/**
+ * 一次搜索的统计：文件数、扫描字节数、命中行数、无法读取的文件数、失败的分块数和吞吐量
+ * Statistics of one search run.
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 16:00
+ */
+public final class GrepReport
+{
+    private final long files;
+    private final long bytes;
+    private final long matchedLines;
+    private final long failedFiles;
+    private final long failedChunks;
+    private final long elapsedNanos;
+
+    public GrepReport(long files, long bytes, long matchedLines, long failedFiles, long failedChunks, long elapsedNanos)
+    {
+        this.files = files;
+        this.bytes = bytes;
+        this.matchedLines = matchedLines;
+        this.failedFiles = failedFiles;
+        this.failedChunks = failedChunks;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getFiles()
+    {
+        return files;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getMatchedLines()
+    {
+        return matchedLines;
+    }
+
+    /**
+     * @return 无法枚举的文件和目录数 files and directories that could not be read while enumerating
+     */
+    public long getFailedFiles()
+    {
+        return failedFiles;
+    }
+
+    public long getFailedChunks()
+    {
+        return failedChunks;
+    }
+
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return 吞吐量（GB/s，1GB = 10^9字节） the throughput in GB/s
+     */
+    public double gigabytesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0D : (double) bytes / elapsedNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d files, %.3f GB scanned, %d matching lines, %d failed files, %d failed chunks in %.3f s (%.2f GB/s)",
+                files, bytes / 1e9, matchedLines, failedFiles, failedChunks, elapsedNanos / 1e9, gigabytesPerSecond());
+    }
+}
@@ -0,0 +1,123 @@
+package com.wzy.codedatabase.juc.grep;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按顺序输出命中行的缓冲输出
+ * Collects chunk results from the search threads and writes them in enumeration order through one large buffer,
+ * instead of every thread contending on System.out.printf.
+ * 分块按枚举顺序编号，结果先放入等待区，轮到的编号到达后连同之后已到达的分块一起写出；
+ * 行号在这里累加：分块只知道自己内部的行号，加上同一文件之前所有分块的行数得到文件中的行号。
+ * 分块读取失败后行数未知，同一文件之后的分块无法得到正确的行号，丢弃它们的结果并计数。
+ * 输出格式与原来一致：文件:行号:行内容（行内容为原始字节）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 16:00
+ */
+final class OrderedLineSink implements Closeable
+{
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final OutputStream out;
+
+    /**
+     * 已到达、但前面还有分块未到达的结果
+     * results that arrived ahead of their turn
+     */
+    private final Map<Long, ChunkResult> pending = new HashMap<>();
+
+    private long next;
+
+    /**
+     * 当前文件中已输出分块的总行数
+     */
+    private long lineBase;
+
+    private byte[] filePrefix;
+
+    /**
+     * 当前文件已有分块读取失败
+     */
+    private boolean fileFailed;
+
+    private long matchedLines;
+
+    private long droppedChunks;
+
+    OrderedLineSink(OutputStream out)
+    {
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * 接收一个分块的结果，并写出所有已轮到的分块
+     * Accepts one chunk result and flushes every chunk whose turn has come.
+     */
+    synchronized void accept(ChunkResult result) throws IOException
+    {
+        pending.put(result.sequence, result);
+        ChunkResult ready;
+        while ((ready = pending.remove(next)) != null)
+        {
+            write(ready);
+            next++;
+        }
+    }
+
+    private void write(ChunkResult result) throws IOException
+    {
+        if (result.chunkIndex == 0)
+        {//文件的第一个分块，行号从头开始
+            lineBase = 0;
+            fileFailed = false;
+            filePrefix = (result.file.toString() + ':').getBytes(StandardCharsets.UTF_8);
+        }
+        if (result.failed)
+        {//之后的分块行号缺少这一段，不再输出
+            fileFailed = true;
+            return;
+        }
+        if (fileFailed)
+        {
+            droppedChunks++;
+            return;
+        }
+        List<ChunkResult.Match> matches = result.matches;
+        for (ChunkResult.Match match : matches)
+        {
+            out.write(filePrefix);
+            out.write(Long.toString(lineBase + match.line).getBytes(StandardCharsets.US_ASCII));
+            out.write(':');
+            out.write(match.bytes);
+            out.write('\n');
+        }
+        matchedLines += matches.size();
+        lineBase += result.lines;
+    }
+
+    synchronized long matchedLines()
+    {
+        return matchedLines;
+    }
+
+    /**
+     * @return 因同一文件之前的分块读取失败而丢弃结果的分块数 chunks dropped after an earlier chunk of the same file failed
+     */
+    synchronized long droppedChunks()
+    {
+        return droppedChunks;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        out.flush();
+    }
+}
@@ -1,29 +1,76 @@
 package com.wzy.codedatabase.redis.cache;
 
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONArray;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.wzy.codedatabase.redis.cache.async.AsyncRedis;
+import com.wzy.codedatabase.redis.cache.async.AsyncSupport;
+import com.wzy.codedatabase.redis.cache.async.CallerRunsExecutor;
+import com.wzy.codedatabase.redis.cache.bloom.BloomFilterManager;
+import com.wzy.codedatabase.redis.cache.codec.CacheCodec;
+import com.wzy.codedatabase.redis.cache.codec.CacheCodecs;
+import com.wzy.codedatabase.redis.cache.codec.CacheDecodeException;
+import com.wzy.codedatabase.redis.cache.codec.CompressingCacheCodec;
+import com.wzy.codedatabase.redis.cache.flight.RebuildNotifier;
+import com.wzy.codedatabase.redis.cache.flight.SingleFlight;
+import com.wzy.codedatabase.redis.cache.hotkey.HotKeyDetector;
+import com.wzy.codedatabase.redis.cache.hotkey.HotKeyStats;
+import com.wzy.codedatabase.redis.cache.limit.DbLimitSnapshot;
+import com.wzy.codedatabase.redis.cache.limit.DbLimiter;
+import com.wzy.codedatabase.redis.cache.limit.DbLimiterRegistry;
+import com.wzy.codedatabase.redis.cache.limit.DbOverloadException;
+import com.wzy.codedatabase.redis.cache.lock.LuaLeaseLock;
+import com.wzy.codedatabase.redis.cache.lock.RebuildLease;
+import com.wzy.codedatabase.redis.cache.lock.RebuildLock;
+import com.wzy.codedatabase.redis.cache.lock.RedissonRebuildLock;
+import com.wzy.codedatabase.redis.cache.metrics.CacheMetrics;
+import com.wzy.codedatabase.redis.cache.metrics.CacheMetricsRegistry;
+import com.wzy.codedatabase.redis.cache.metrics.CacheMetricsSnapshot;
+import com.wzy.codedatabase.redis.cache.metrics.CompressionSnapshot;
+import com.wzy.codedatabase.redis.cache.near.NearCache;
+import com.wzy.codedatabase.redis.cache.packed.PackedStore;
+import com.wzy.codedatabase.redis.cache.rebuild.CacheRebuildScheduler;
+import com.wzy.codedatabase.redis.cache.rebuild.RefreshAheadScheduler;
+import com.wzy.codedatabase.redis.cache.rebuild.RefreshAheadStats;
+import com.wzy.codedatabase.redis.cache.replica.ReplicaReadRouter;
+import com.wzy.codedatabase.redis.cache.replica.ReplicaReadStats;
+import com.wzy.codedatabase.redis.cache.tag.CacheTagManager;
+import com.wzy.codedatabase.redis.cache.near.NearCacheManager;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 缓存的读、写工具类
- * 解决了缓存击穿和缓存穿透问题，缓存雪崩无需这里解决。
+ * 解决了缓存击穿和缓存穿透问题；缓存雪崩通过按前缀配置过期时间抖动（TtlJitter）和预热时分散过期时间缓解。
+ * 缓存穿透默认通过缓存空值解决，也可以按前缀配置布隆过滤器（见CachePolicy、BloomFilterManager）。
  * 固定了缓存的流程逻辑，先读redis后读maysql，且通过锁（特殊的分布式锁）和缓存空值来降低了mysql的压力。
+ * 缓存值的编解码可按前缀配置（见CacheCodec），默认json，旧的json数据始终可读。
+ * 单key读取的各策略都有返回CompletableFuture的异步版本（*Async），基于Lettuce异步命令和Redisson异步锁，
+ * 数据库查询逻辑也可以返回future，等待redis、锁、重建通知和数据库期间不占用线程；
+ * 对应的阻塞方法是异步版本的包装，解码和数据库查询在调用线程中执行（见CallerRunsExecutor）。
  * @author 王忠义
  * @version 1.0
  * @date 2023/6/22 10:29
@@ -38,9 +85,145 @@ public class CacheClient {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 缓存值的redis连接，值为编解码后的字节（见CacheCodec）
+     */
+    @Resource
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    /**
+     * 空值标记（与原来的空字符串一致）
+     */
+    private static final byte[] NULL_MARKER = new byte[0];
+
+    private static final String[] NO_TAGS = new String[0];
+
     @Resource
     private RedissonClient redissonClient;
 
+    /**
+     * 缓存重建锁，按前缀通过CachePolicy.rebuildLock选择
+     */
+    @Resource
+    private RedissonRebuildLock redissonRebuildLock;
+
+    @Resource
+    private LuaLeaseLock luaLeaseLock;
+
+    /**
+     * 本地一级缓存，按前缀通过CachePolicy开启
+     */
+    @Resource
+    private NearCacheManager nearCacheManager;
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    /**
+     * 热点key探测，热点key即使前缀未开启本地缓存也会在本地短时缓存
+     */
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 按前缀和读取策略统计命中情况和延迟分解（redis、解码、等锁、数据库）
+     */
+    @Resource
+    private CacheMetricsRegistry cacheMetricsRegistry;
+
+    /**
+     * 重建完成通知，获取锁失败的节点等待通知而不是轮询
+     */
+    @Resource
+    private RebuildNotifier rebuildNotifier;
+
+    /**
+     * 布隆过滤器，按前缀通过CachePolicy开启
+     */
+    @Resource
+    private BloomFilterManager bloomFilterManager;
+
+    /**
+     * 缓存标签索引，按标签批量失效
+     */
+    @Resource
+    private CacheTagManager cacheTagManager;
+
+    /**
+     * 缓存读取路由（从节点读取、对冲读取），写入和锁始终访问主节点
+     */
+    @Resource
+    private ReplicaReadRouter replicaReadRouter;
+
+    /**
+     * 小对象打包存储，按前缀通过CachePolicy开启；开启后读写方法不变，底层改为按桶存入hash
+     */
+    @Resource
+    private PackedStore packedStore;
+
+    /**
+     * 查询数据库的自适应并发限制，按前缀通过CachePolicy开启
+     */
+    @Resource
+    private DbLimiterRegistry dbLimiterRegistry;
+
+    /**
+     * 异步redis命令（Lettuce），异步接口和阻塞接口的单key读取都通过它访问redis
+     */
+    @Resource
+    private AsyncRedis asyncRedis;
+
+    /**
+     * 进程内请求合并，同一key同时只有一个线程执行互斥锁重建
+     */
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * 等待重建完成通知的最长时间，超时后重新检查redis并尝试获取锁
+     */
+    private static final long REBUILD_WAIT_MILLIS = 200L;
+
+    /**
+     * 正在提前刷新的key（概率提前刷新策略），同一key同时只有一个线程刷新
+     */
+    private final Set<String> earlyRefreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已创建的缓存区域，key为前缀
+     */
+    private final Map<String, CacheRegion> regions = new ConcurrentHashMap<>();
+
+    /**
+     * 注册某个key前缀的缓存策略
+     * @param keyPrefix 缓存key前缀
+     * @param policy 策略
+     */
+    public void registerPolicy(String keyPrefix, CachePolicy policy){
+        cachePolicyRegistry.register(keyPrefix, policy);
+        regions.remove(keyPrefix);
+    }
+
+    /**
+     * 获取key前缀的缓存区域（前缀预编码、byte[] key、数字id不经过字符串），同一前缀复用同一个区域
+     * @param keyPrefix 缓存key前缀
+     * @return 缓存区域
+     */
+    public CacheRegion region(String keyPrefix){
+        CacheRegion region = regions.get(keyPrefix);
+        if (region != null){
+            return region;
+        }
+        return regions.computeIfAbsent(keyPrefix, prefix -> {
+            CachePolicy policy = cachePolicyRegistry.resolve(prefix);
+            if (policy.isPacked()){
+                throw new IllegalStateException("打包存储的前缀请使用CacheClient的读写方法：" + prefix);
+            }
+            return new CacheRegion(prefix, policy, cacheRedisTemplate, nearCacheManager,
+                    cacheMetricsRegistry.of(prefix, CacheStrategy.PASS_THROUGH),
+                    cacheMetricsRegistry.compression(policy.getKeyPrefix()), dbLimiterRegistry.of(prefix), cacheTagManager);
+        });
+    }
+
     /**
      * 写入redis任意对象数据，并设置过期时间
      * @param key 键
@@ -48,31 +231,1151 @@ public class CacheClient {
      * @param time 过期时间
      * @param unit 时间单位
      */
-    public void set(String key, Object value, Long time, TimeUnit unit){
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value),time,unit);
+    public void set(String key, Object value, Long time, TimeUnit unit){
+        setRaw(key, codecOf(key).encode(value), ttlOf(key, unit.toMillis(time)), tagsOf(key, value));
+    }
+
+    /**
+     * 写入已经编码好的字节，并使所有节点的本地缓存失效
+     * @param key 键
+     * @param raw 编码后的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期（逻辑过期数据）
+     */
+    private void setRaw(String key, byte[] raw, long ttlMillis){
+        setRaw(key, raw, ttlMillis, NO_TAGS);
+    }
+
+    /**
+     * 写入已经编码好的字节并登记标签，并使所有节点的本地缓存失效
+     * @param key 键
+     * @param raw 编码后的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期（逻辑过期数据）
+     * @param tags 标签（见tagsOf()），可以为空数组
+     */
+    private void setRaw(String key, byte[] raw, long ttlMillis, String[] tags){
+        if (tags.length > 0){
+            cacheTagManager.write(key, raw, ttlMillis, tags);
+            return;
+        }
+        CachePolicy packed = packedStore.policyOf(key);
+        if (packed != null){
+            packedStore.set(packed, key, raw, ttlMillis);
+        } else if (ttlMillis > 0){
+            cacheRedisTemplate.opsForValue().set(key, raw, ttlMillis, TimeUnit.MILLISECONDS);
+        } else {
+            cacheRedisTemplate.opsForValue().set(key, raw);
+        }
+        nearCacheManager.invalidate(key);
+    }
+
+    /**
+     * 异步写入已经编码好的字节，写入完成后使所有节点的本地缓存失效
+     * @param key 键
+     * @param raw 编码后的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期（逻辑过期数据）
+     */
+    private CompletableFuture<Void> setRawAsync(String key, byte[] raw, long ttlMillis){
+        return setRawAsync(key, raw, ttlMillis, NO_TAGS);
+    }
+
+    /**
+     * 异步写入已经编码好的字节并登记标签，写入完成后使所有节点的本地缓存失效
+     * @param key 键
+     * @param raw 编码后的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期（逻辑过期数据）
+     * @param tags 标签（见tagsOf()），可以为空数组
+     */
+    private CompletableFuture<Void> setRawAsync(String key, byte[] raw, long ttlMillis, String[] tags){
+        if (tags.length > 0){
+            return cacheTagManager.writeAsync(key, raw, ttlMillis, tags);
+        }
+        CachePolicy packed = packedStore.policyOf(key);
+        CompletableFuture<Void> write = packed != null ? packedStore.setAsync(packed, key, raw, ttlMillis)
+                : asyncRedis.set(key.getBytes(StandardCharsets.UTF_8), raw, ttlMillis);
+        return write.thenRun(() -> nearCacheManager.invalidate(key));
+    }
+
+    /**
+     * 按前缀策略对过期时间加抖动（见TtlJitter），真实过期时间和逻辑过期时间都通过这里计算
+     * @param key 缓存key
+     * @param ttlMillis 原过期时间（毫秒）
+     * @return 加抖动后的过期时间（毫秒）
+     */
+    private long ttlOf(String key, long ttlMillis){
+        return TtlJitter.apply(cachePolicyRegistry.resolve(key), key, ttlMillis);
+    }
+
+    /**
+     * 从redis异步读取原始字节，并统计读取耗时和命中情况
+     * @param key 键
+     * @param m 统计
+     * @param primary 是否必须读主节点（获取锁之后的双端检锁，从节点可能还没有同步到最新数据）；否则按读取路由，可能读从节点
+     * @return 字节；不存在为null；空值标记为空数组
+     */
+    private CompletableFuture<byte[]> getRawAsync(String key, CacheMetrics m, boolean primary){
+        long start = System.nanoTime();
+        CachePolicy packed = packedStore.policyOf(key);
+        CompletableFuture<byte[]> read;
+        if (packed != null){
+            //打包存储的条目只从主节点读取
+            read = packedStore.getAsync(packed, key);
+        } else if (!primary && replicaReadRouter.isEnabled()){
+            read = replicaReadRouter.getAsync(key.getBytes(StandardCharsets.UTF_8));
+        } else {
+            read = asyncRedis.get(key.getBytes(StandardCharsets.UTF_8));
+        }
+        return read.thenApply(raw -> {
+            m.redis(start);
+            if (raw == null){
+                m.miss();
+            } else if (raw.length == 0){
+                m.nullHit();
+            } else {
+                m.hit();
+            }
+            return raw;
+        });
+    }
+
+    /**
+     * 从主节点读取原始字节（打包存储的前缀读取hash中的条目）
+     */
+    private byte[] readPrimary(String key){
+        CachePolicy packed = packedStore.policyOf(key);
+        return packed != null ? packedStore.get(packed, key) : cacheRedisTemplate.opsForValue().get(key);
+    }
+
+    /**
+     * MGET（按读取路由，可能读从节点；打包存储的前缀按桶HMGET）
+     * @param keys 键
+     * @return 与keys顺序一致的字节列表
+     */
+    private List<byte[]> multiGetRaw(List<String> keys){
+        CachePolicy packed = keys.isEmpty() ? null : packedStore.policyOf(keys.get(0));
+        if (packed != null){
+            return packedStore.multiGet(packed, keys);
+        }
+        if (!replicaReadRouter.isEnabled()){
+            return cacheRedisTemplate.opsForValue().multiGet(keys);
+        }
+        byte[][] keyBytes = new byte[keys.size()][];
+        for (int i = 0; i < keyBytes.length; i++) {
+            keyBytes[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return replicaReadRouter.mget(keyBytes);
+    }
+
+    /**
+     * 解码并统计解码耗时
+     */
+    private static <R> R decode(byte[] raw, Class<R> type, CacheMetrics m){
+        long start = System.nanoTime();
+        R r = CacheCodecs.decode(raw, type);
+        m.decode(start);
+        return r;
+    }
+
+    private static <R> List<R> decodeList(byte[] raw, Class<R> type, CacheMetrics m){
+        long start = System.nanoTime();
+        List<R> list = CacheCodecs.decodeList(raw, type);
+        m.decode(start);
+        return list;
+    }
+
+    /**
+     * 读取封装中的数据（只在第一次调用时解码）并统计解码耗时
+     */
+    private static <R> R dataOf(RedisDataEnvelope envelope, Class<R> type, CacheMetrics m){
+        long start = System.nanoTime();
+        R r = envelope.getData(type);
+        m.decode(start);
+        return r;
+    }
+
+    private static <R> List<R> dataListOf(RedisDataEnvelope envelope, Class<R> type, CacheMetrics m){
+        long start = System.nanoTime();
+        List<R> list = envelope.getDataList(type);
+        m.decode(start);
+        return list;
+    }
+
+    /**
+     * 缓存数据无法解码（类结构不兼容、类型不在白名单中等）：按未命中处理，重新加载的数据会覆盖它
+     */
+    private static void undecodable(String key, CacheDecodeException e){
+        log.debug("缓存数据无法解码，按未命中处理，key：{}，原因：{}", key, e.getMessage());
+    }
+
+    /**
+     * 查询数据库并统计耗时和重建次数
+     */
+    private static <T,R> R loadFromDb(Function<T,R> dbFallBack, T arg, CacheMetrics m){
+        long start = System.nanoTime();
+        try {
+            return dbFallBack.apply(arg);
+        } finally {
+            m.db(start);
+        }
+    }
+
+    /**
+     * 查询数据库并统计耗时和重建次数；前缀开启了数据库并发限制时先获取许可，等待许可的时间不计入查询耗时
+     * @param keyOrPrefix key前缀或完整的key
+     * @param staleAvailable 调用方是否有逻辑过期的旧数据可以返回
+     * @throws DbOverloadException 数据库并发达到上限，本次查询被拒绝
+     */
+    private <T,R> R loadFromDb(String keyOrPrefix, Function<T,R> dbFallBack, T arg, CacheMetrics m, boolean staleAvailable){
+        DbLimiter limiter = dbLimiterRegistry.of(keyOrPrefix);
+        if (limiter == null){
+            return loadFromDb(dbFallBack, arg, m);
+        }
+        long start = limiter.acquire(staleAvailable);
+        boolean success = false;
+        try {
+            R r = dbFallBack.apply(arg);
+            success = true;
+            return r;
+        } finally {
+            m.db(start);
+            limiter.release(start, success);
+        }
+    }
+
+    /**
+     * 异步查询数据库，统计和并发限制与loadFromDb()相同；等待许可时不占用线程
+     * @param keyOrPrefix key前缀或完整的key
+     * @param staleAvailable 调用方是否有逻辑过期的旧数据可以返回
+     * @param executor 调用数据库查询逻辑的执行器
+     * @return 查询结果；数据库并发达到上限被拒绝时以DbOverloadException失败
+     */
+    private <T,R> CompletableFuture<R> loadFromDbAsync(String keyOrPrefix, Function<T,CompletableFuture<R>> dbFallBack,
+                                                       T arg, CacheMetrics m, boolean staleAvailable, Executor executor){
+        DbLimiter limiter = dbLimiterRegistry.of(keyOrPrefix);
+        CompletableFuture<Long> permit = limiter == null ? CompletableFuture.completedFuture(0L)
+                : limiter.acquireAsync(staleAvailable);
+        return permit.thenComposeAsync(acquired -> {
+            long start = limiter == null ? System.nanoTime() : acquired;
+            return AsyncSupport.call(() -> dbFallBack.apply(arg)).whenComplete((r, e) -> {
+                m.db(start);
+                if (limiter != null){
+                    limiter.release(start, e == null);
+                }
+            });
+        }, executor);
+    }
+
+    /**
+     * 把阻塞的数据库查询逻辑适配为异步接口（在调用方指定的执行器中执行）
+     */
+    private static <T,R> Function<T,CompletableFuture<R>> blocking(Function<T,R> dbFallBack){
+        return arg -> CompletableFuture.completedFuture(dbFallBack.apply(arg));
+    }
+
+    /**
+     * 异步接口返回的future在续接线程池中完成，调用方的后续阶段不会在redis的io线程中执行
+     */
+    private static <T> CompletableFuture<T> completeOn(CompletableFuture<T> future){
+        return future.isDone() ? future : future.thenApplyAsync(r -> r, AsyncSupport.EXECUTOR);
+    }
+
+    /**
+     * 是否是有效数据（不是null，也不是空值标记）
+     */
+    private static boolean isPresent(byte[] raw){
+        return raw != null && raw.length > 0;
+    }
+
+    /**
+     * key前缀或key对应的写入编解码器（前缀开启压缩时包装为压缩编解码器）
+     */
+    private CacheCodec codecOf(String keyOrPrefix){
+        CachePolicy policy = cachePolicyRegistry.resolve(keyOrPrefix);
+        return CompressingCacheCodec.wrap(policy, cacheMetricsRegistry.compression(policy.getKeyPrefix()));
+    }
+
+    /**
+     * 写入redis任意对象数据，并设置逻辑过期时间
+     * @param key 键
+     * @param value 对象数据值（会被封装为RedisDataEnvelope）
+     * @param time 逻辑过期时间
+     * @param unit 时间单位
+     */
+    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit){
+        writeLogicalExpire(key, value, time, unit);
+    }
+
+    /**
+     * 写入逻辑过期数据
+     * @return 写入的逻辑过期时间
+     */
+    private long writeLogicalExpire(String key, Object value, Long time, TimeUnit unit){
+
+        //1.设置逻辑过期，封装为紧凑格式（固定头部 + 数据）
+        long expireAtMillis = System.currentTimeMillis() + ttlOf(key, unit.toMillis(time));
+        byte[] raw = RedisDataEnvelope.encode(value, expireAtMillis, codecOf(key));
+
+        //2.写入redis
+        setRaw(key, raw, -1L, tagsOf(key, value));
+        return expireAtMillis;
+    }
+
+    /**
+     * 异步写入逻辑过期数据
+     * @return 写入的逻辑过期时间
+     */
+    private CompletableFuture<Long> writeLogicalExpireAsync(String key, Object value, Long time, TimeUnit unit){
+        long expireAtMillis = System.currentTimeMillis() + ttlOf(key, unit.toMillis(time));
+        byte[] raw = RedisDataEnvelope.encode(value, expireAtMillis, codecOf(key));
+        return setRawAsync(key, raw, -1L, tagsOf(key, value)).thenApply(v -> expireAtMillis);
+    }
+
+    /**
+     * 写入redis任意对象数据，供queryWithEarlyRefresh()读取（真实过期时间与逻辑过期时间一致）
+     * 重建耗时未知记为0：过期前不会被提前刷新，过期后第一次重建会记录真实耗时。
+     * @param key 键
+     * @param value 对象数据值（会被封装为RedisDataEnvelope）
+     * @param time 过期时间
+     * @param unit 时间单位
+     */
+    public void setWithEarlyRefresh(String key, Object value, Long time, TimeUnit unit){
+        setWithEarlyRefresh(key, value, 0, time, unit);
+    }
+
+    /**
+     * 写入redis任意对象数据，供queryWithEarlyRefresh()读取（真实过期时间与逻辑过期时间一致）
+     * @param key 键
+     * @param value 对象数据值（会被封装为RedisDataEnvelope）
+     * @param rebuildCostMillis 从数据库重建该数据的预估耗时（毫秒），用于提前刷新的概率计算
+     * @param time 过期时间
+     * @param unit 时间单位
+     */
+    public void setWithEarlyRefresh(String key, Object value, int rebuildCostMillis, Long time, TimeUnit unit){
+        long ttl = ttlOf(key, unit.toMillis(time));
+        setRaw(key, RedisDataEnvelope.encode(value, System.currentTimeMillis() + ttl, rebuildCostMillis, codecOf(key)), ttl,
+                tagsOf(key, value));
+    }
+
+    /**
+     * 写入redis任意对象数据，设置过期时间，并登记标签（同一次管道）
+     * @param key 键
+     * @param value 对象数据值
+     * @param time 过期时间
+     * @param unit 时间单位
+     * @param tags 标签，通过invalidateTag()批量失效；查询重建时只保留CachePolicy.tagResolver解析出的标签
+     */
+    public void set(String key, Object value, Long time, TimeUnit unit, String... tags){
+        checkTaggable(key);
+        cacheTagManager.write(key, codecOf(key).encode(value), ttlOf(key, unit.toMillis(time)), tagsOf(key, value, tags));
+    }
+
+    /**
+     * 写入redis任意对象数据，设置逻辑过期时间，并登记标签（同一次管道）
+     * @param key 键
+     * @param value 对象数据值（会被封装为RedisDataEnvelope）
+     * @param time 逻辑过期时间
+     * @param unit 时间单位
+     * @param tags 标签，通过invalidateTag()批量失效；查询重建时只保留CachePolicy.tagResolver解析出的标签
+     */
+    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit, String... tags){
+        checkTaggable(key);
+        long expireAtMillis = System.currentTimeMillis() + ttlOf(key, unit.toMillis(time));
+        cacheTagManager.write(key, RedisDataEnvelope.encode(value, expireAtMillis, codecOf(key)), -1L, tagsOf(key, value, tags));
+    }
+
+    /**
+     * 标签按key删除，打包存储的条目不是独立的key，不支持标签
+     */
+    private void checkTaggable(String key){
+        if (packedStore.policyOf(key) != null){
+            throw new UnsupportedOperationException("打包存储的前缀不支持标签：" + key);
+        }
+    }
+
+    /**
+     * 删除标签下的所有key（每页一个脚本SPOP + UNLINK，不会长时间阻塞redis），并使所有节点的本地缓存失效
+     * @param tag 标签
+     * @return 删除的key个数
+     */
+    public long invalidateTag(String tag){
+        return cacheTagManager.invalidate(tag);
+    }
+
+    /**
+     * 删除缓存，并使所有节点的本地缓存失效
+     * @param key 键
+     */
+    public void delete(String key){
+        CachePolicy packed = packedStore.policyOf(key);
+        if (packed != null){
+            packedStore.delete(packed, key);
+        } else {
+            cacheRedisTemplate.delete(key);
+        }
+        nearCacheManager.invalidate(key);
+    }
+
+    /**
+     * 读本地缓存：先记录一次访问用于热点探测，再依次查前缀的本地缓存和热点key的本地缓存
+     * @param near 本地缓存，为null表示未开启
+     * @param key 键
+     * @param m 统计
+     * @return 命中的对象；空值标记返回NearCache.NULL_VALUE；未命中返回null
+     */
+    private Object nearGet(NearCache near, String key, CacheMetrics m){
+        hotKeyDetector.record(key);
+        Object value = near == null ? null : near.get(key);
+        if (value == null){
+            value = hotKeyDetector.getLocal(key);
+        }
+        if (value != null){
+            m.localHit();
+        }
+        return value;
+    }
+
+    /**
+     * 本地缓存命中的对象（空值标记转为null），用于没有Class参数的泛型读取（如数组数据）；
+     * 本地缓存中的对象由同一前缀、同一读取方法写入，类型与调用方一致
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T localValue(Object local){
+        return local == NearCache.NULL_VALUE ? null : (T) local;
+    }
+
+    /**
+     * 写本地缓存
+     * @param near 本地缓存，为null表示未开启
+     * @param key 键
+     * @param value 对象（空值传NearCache.NULL_VALUE）
+     * @param raw 对象在redis中的编码，用于估算权重
+     * @param maxTtlMillis 本地缓存最长存活时间，不超过redis中的过期时间
+     */
+    private void nearPut(NearCache near, String key, Object value, byte[] raw, long maxTtlMillis){
+        long weight = raw == null ? 1 : raw.length;
+        if (near != null){
+            near.put(key, value, weight, maxTtlMillis);
+        }
+        hotKeyDetector.putLocal(key, value, weight, maxTtlMillis);
+    }
+
+    /**
+     * @return 热点key探测的统计快照
+     */
+    public HotKeyStats hotKeyStats(){
+        return hotKeyDetector.stats();
+    }
+
+    /**
+     * @return 各前缀、各读取策略的命中情况和延迟分解快照
+     */
+    public List<CacheMetricsSnapshot> metrics(){
+        return cacheMetricsRegistry.snapshot();
+    }
+
+    /**
+     * @return 各前缀的压缩率和压缩耗时快照
+     */
+    public List<CompressionSnapshot> compressionStats(){
+        return cacheMetricsRegistry.compressionSnapshot();
+    }
+
+    /**
+     * @return 缓存读取路由和对冲读取的统计快照
+     */
+    public ReplicaReadStats replicaReadStats(){
+        return replicaReadRouter.stats();
+    }
+
+    /**
+     * @return 各前缀查询数据库的并发上限、正在执行数和拒绝次数
+     */
+    public List<DbLimitSnapshot> dbLimitStats(){
+        return dbLimiterRegistry.snapshot();
+    }
+
+    /**
+     * @return 提前刷新的跟踪key数和刷新、淘汰次数
+     */
+    public RefreshAheadStats refreshAheadStats(){
+        return refreshAheadScheduler.stats();
+    }
+
+    /**
+     * 布隆过滤器拦截：前缀配置了布隆过滤器且判定id一定不存在时返回false
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @return id是否可能存在
+     */
+    private boolean mightExist(String keyPrefix, Object id){
+        String filterName = cachePolicyRegistry.resolve(keyPrefix).getBloomFilterName();
+        return filterName == null || bloomFilterManager.mightContain(filterName, id);
+    }
+
+    /**
+     * 读数据：从缓存和数据库
+     * 解决了缓存穿透，没有解决缓存击穿
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param type 缓存数据值类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> R queryWithPassThrough(
+            String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFallBack,
+            Long time, TimeUnit unit){
+        return CallerRunsExecutor.join(executor -> passThroughAsync(keyPrefix, id, type, blocking(dbFallBack),
+                time, unit, executor));
+    }
+
+    /**
+     * 读数据：缓存穿透策略的异步版本，流程与queryWithPassThrough()相同
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param type 缓存数据值类型
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> CompletableFuture<R> queryWithPassThroughAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time, TimeUnit unit){
+        return completeOn(passThroughAsync(keyPrefix, id, type, dbFallBack, time, unit, AsyncSupport.EXECUTOR));
+    }
+
+    private <R,ID> CompletableFuture<R> passThroughAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time, TimeUnit unit, Executor executor){
+        String key = keyPrefix + id;
+        //0.先查本地缓存
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.PASS_THROUGH);
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        Object local = nearGet(near, key, m);
+        if (local != null){
+            return CompletableFuture.completedFuture(local == NearCache.NULL_VALUE ? null : type.cast(local));
+        }
+        //0.1.布隆过滤器判定一定不存在，直接返回
+        if (!mightExist(keyPrefix, id)){
+            m.bloomRejected();
+            return CompletableFuture.completedFuture(null);
+        }
+        long ttlMillis = unit.toMillis(time);
+
+        //1.从redis查询信息缓存（根据id）
+        return getRawAsync(key, m, false).thenComposeAsync(raw -> {
+            //2.判断是否存在缓存
+            if (isPresent(raw)){
+                //3.存在，返回（无法解码按未命中处理）
+                try {
+                    R r = decode(raw, type, m);
+                    nearPut(near, key, r, raw, ttlMillis);
+                    return CompletableFuture.completedFuture(r);
+                } catch (CacheDecodeException e) {
+                    undecodable(key, e);
+                }
+            } else if (raw!=null){
+                //判断返回的是否是空值
+                //返回错误信息
+                nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            //4.不存在，根据id查询数据库；5.写入redis（不存在时写入空值）
+            return loadFromDbAsync(keyPrefix, dbFallBack, id, m, false, executor)
+                    .thenComposeAsync(r -> writeLoadedAsync(key, r, ttlMillis, near), executor);
+        }, executor);
+    }
+
+    /**
+     * 缓存重建调度器：有界队列、按key去重、按访问次数优先、按前缀限制并发
+     */
+    @Resource
+    private CacheRebuildScheduler cacheRebuildScheduler;
+
+    /**
+     * 逻辑过期缓存的提前刷新，按前缀通过registerRefreshAhead()开启
+     */
+    @Resource
+    private RefreshAheadScheduler refreshAheadScheduler;
+
+    /**
+     * 开启key前缀的提前刷新：逻辑过期策略读取过的热点key在逻辑过期前由后台刷新，
+     * 过期后的第一个请求不再返回旧数据；一个过期周期内访问较少的key自动移出（见RefreshAheadScheduler、CachePolicy）
+     * @param keyPrefix 缓存key前缀
+     * @param lockPrefix 缓存的key对应的锁的前缀（与读取时一致）
+     * @param dbFallBack 数据库查询逻辑（单个数据或数组数据）
+     * @param time 缓存逻辑过期时间
+     * @param unit 时间单位
+     * @param <ID> id类型参数
+     */
+    public <ID> void registerRefreshAhead(String keyPrefix, String lockPrefix, Function<ID,?> dbFallBack,
+                                         Long time, TimeUnit unit){
+        //登记的id来自同一前缀的读取请求，类型与dbFallBack的参数一致
+        @SuppressWarnings("unchecked")
+        Function<Object,?> loader = (Function<Object,?>) dbFallBack;
+        refreshAheadScheduler.register(keyPrefix,
+                (key, id) -> refreshAhead(keyPrefix, key, lockPrefix + id, id, loader, time, unit));
+    }
+
+    /**
+     * 提前刷新单个key（由重建线程执行）
+     * @return 新的逻辑过期时间；0表示锁被其他节点持有；-1表示缓存已不存在
+     */
+    private <ID> long refreshAhead(String keyPrefix, String key, String lockkey, ID id, Function<ID,?> dbFallBack,
+                                   Long time, TimeUnit unit) throws InterruptedException {
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.LOGICAL_EXPIRE);
+        //1.获取互斥锁
+        RebuildLease lease = tryLock(key, lockkey, m);
+        if (lease == null){
+            return 0L;
+        }
+        try {
+            //2.双端检锁：从主节点读取，其他节点已刷新时不再查询数据库
+            byte[] raw = readPrimary(key);
+            if (!isPresent(raw)){
+                return -1L;
+            }
+            long expireAtMillis = RedisDataEnvelope.read(raw).getExpireAtMillis();
+            if (expireAtMillis - System.currentTimeMillis() > cachePolicyRegistry.resolve(keyPrefix).getRefreshAheadMillis()){
+                return expireAtMillis;
+            }
+            //3.查询数据库，写入新的逻辑过期时间
+            Object r = loadFromDb(keyPrefix, dbFallBack, id, m, true);
+            return writeLogicalExpire(key, r, time, unit);
+        } finally {
+            lease.unlock();
+        }
+    }
+
+    /**
+     * 读数据：从缓存和数据库
+     * 解决了缓存击穿，通过逻辑过期。没有缓存穿透问题，不存在的缓存直接在redis层返回null
+     * ========================================================
+     * 增数据/改数据：先操作数据库；再操作缓存使用setWithLogicalExpire()；再添加方法为事务确保同时成功与失败
+     * 删数据：先操作数据库；再操作缓存直接删除redis中的键；再添加方法为事务确保同时成功与失败
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据值类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param time 缓存逻辑过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> R queryWithLogicalExpire(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,R> dbFallBack,
+            Long time,TimeUnit unit) throws InterruptedException {
+        return CallerRunsExecutor.join(executor -> logicalExpireAsync(keyPrefix, id, lockPrefix,
+                (envelope, m) -> dataOf(envelope, type, m), blocking(dbFallBack), time, unit, executor, AsyncSupport.DIRECT));
+    }
+
+    /**
+     * 读数据：逻辑过期策略的异步版本，流程与queryWithLogicalExpire()相同
+     * 重建任务由重建调度器启动，等待数据库和redis期间不占用重建线程
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据值类型
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存逻辑过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> CompletableFuture<R> queryWithLogicalExpireAsync(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time,TimeUnit unit){
+        return completeOn(logicalExpireAsync(keyPrefix, id, lockPrefix, (envelope, m) -> dataOf(envelope, type, m),
+                dbFallBack, time, unit, AsyncSupport.EXECUTOR, AsyncSupport.EXECUTOR));
+    }
+
+    /**
+     * 读数据：从缓存和数据库，针对数组数据的缓存
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据单个元素值类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param time 缓存逻辑过期时间
+     * @param unit 时间单位
+     * @param <R> 数据单个元素类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> List<R> queryWithLogicalExpireForArr(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,List<R>> dbFallBack,
+            Long time,TimeUnit unit) throws InterruptedException {
+        return CallerRunsExecutor.join(executor -> logicalExpireAsync(keyPrefix, id, lockPrefix,
+                (envelope, m) -> dataListOf(envelope, type, m), blocking(dbFallBack), time, unit, executor, AsyncSupport.DIRECT));
+    }
+
+    /**
+     * 读数据：逻辑过期策略针对数组数据的异步版本
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据单个元素值类型
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存逻辑过期时间
+     * @param unit 时间单位
+     * @param <R> 数据单个元素类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> CompletableFuture<List<R>> queryWithLogicalExpireForArrAsync(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,CompletableFuture<List<R>>> dbFallBack,
+            Long time,TimeUnit unit){
+        return completeOn(logicalExpireAsync(keyPrefix, id, lockPrefix, (envelope, m) -> dataListOf(envelope, type, m),
+                dbFallBack, time, unit, AsyncSupport.EXECUTOR, AsyncSupport.EXECUTOR));
+    }
+
+    /**
+     * 逻辑过期策略（单个数据和数组数据共用）
+     * @param reader 从封装中读取数据的逻辑
+     * @param executor 读取流程中解码等阶段的执行器
+     * @param rebuildExecutor 重建任务中调用数据库查询逻辑的执行器
+     * @param <T> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    private <T,ID> CompletableFuture<T> logicalExpireAsync(
+            String keyPrefix, ID id, String lockPrefix, BiFunction<RedisDataEnvelope,CacheMetrics,T> reader,
+            Function<ID,CompletableFuture<T>> dbFallBack, Long time, TimeUnit unit,
+            Executor executor, Executor rebuildExecutor){
+        String key = keyPrefix + id;
+        //0.先查本地缓存（本地缓存的存活时间不超过逻辑过期时间，命中即未过期）
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.LOGICAL_EXPIRE);
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        Object local = nearGet(near, key, m);
+        if (local != null){
+            refreshAheadScheduler.touch(key);
+            return CompletableFuture.completedFuture(localValue(local));
+        }
+
+        //1.从redis查询信息缓存（根据id）
+        return getRawAsync(key, m, false).thenComposeAsync(raw -> {
+            //2.判断是否存在缓存
+            if (!isPresent(raw)){
+                //3.不存在，返回
+                return CompletableFuture.completedFuture(null);
+            }
+
+            //4.命中，只读取封装头部（逻辑过期时间），数据部分延迟解码；登记提前刷新
+            RedisDataEnvelope envelope = RedisDataEnvelope.read(raw);
+            refreshAheadScheduler.touch(keyPrefix, key, id, envelope.getExpireAtMillis());
+
+            //5.判断是否过期
+            //5.1.未过期，直接返回信息（无法解码按已过期处理）
+            if (!envelope.isExpired()){
+                try {
+                    T r = reader.apply(envelope, m);
+                    nearPut(near, key, r, raw, envelope.millisUntilExpire());
+                    return CompletableFuture.completedFuture(r);
+                } catch (CacheDecodeException e) {
+                    undecodable(key, e);
+                }
+            }
+
+            //5.2.已过期（或无法解码），需要缓存重建；无法解码的旧数据按未命中返回null
+            BiFunction<RedisDataEnvelope,CacheMetrics,T> staleReader = (stale, sm) -> {
+                try {
+                    return reader.apply(stale, sm);
+                } catch (CacheDecodeException e) {
+                    return null;
+                }
+            };
+
+            //6.缓存重建
+            //6.0.该key已在本节点排队重建，不再竞争锁
+            if (cacheRebuildScheduler.touch(key)){
+                m.staleServed();
+                return CompletableFuture.completedFuture(staleReader.apply(envelope, m));
+            }
+            String lockkey = lockPrefix + id;
+            //6.1.获取互斥锁
+            return tryLockAsync(key, lockkey, m).thenComposeAsync(lease -> {
+                //6.2.判断是否获取锁成功
+                if (lease == null){
+                    m.staleServed();
+                    return CompletableFuture.completedFuture(staleReader.apply(envelope, m));
+                }
+                //双端检锁
+                //1.从redis主节点查询信息缓存（根据id）
+                return getRawAsync(key, m, true).thenApplyAsync(latestRaw -> {
+                    //2.判断是否存在缓存
+                    if (!isPresent(latestRaw)){
+                        //3.不存在，返回
+                        lease.unlock();
+                        return null;
+                    }
+
+                    //4.命中，读取封装头部
+                    RedisDataEnvelope latest = RedisDataEnvelope.read(latestRaw);
+
+                    //5.判断是否过期
+                    //5.1.未过期（其他线程已重建），直接返回信息；无法解码继续重建
+                    if (!latest.isExpired()){
+                        try {
+                            T r = reader.apply(latest, m);
+                            lease.unlock();
+                            return r;
+                        } catch (CacheDecodeException e) {
+                            undecodable(key, e);
+                        }
+                    }
+
+                    //6.3.成功，提交给重建调度器，重建期间不占用调度器的线程
+                    boolean submitted = cacheRebuildScheduler.submitAsync(keyPrefix, key, () ->
+                            //查数据库，缓存逻辑过期
+                            loadFromDbAsync(keyPrefix, dbFallBack, id, m, true, rebuildExecutor)
+                                    .thenComposeAsync(newr -> writeLogicalExpireAsync(key, newr, time, unit), rebuildExecutor)
+                                    .handle((expireAt, e) -> {
+                                        //释放锁（锁由读取流程获取，凭证可以在重建流程中释放）
+                                        lease.unlock();
+                                        if (e != null && AsyncSupport.unwrap(e) instanceof DbOverloadException){
+                                            //数据库并发已达上限，保留旧数据，之后的读取再触发重建
+                                            log.debug("数据库并发已达上限，跳过缓存重建，key：{}", key);
+                                            return null;
+                                        }
+                                        if (e != null){
+                                            throw AsyncSupport.rethrow(e);
+                                        }
+                                        return expireAt;
+                                    }));
+                    if (!submitted){
+                        //队列已满或已在排队，释放锁，本次返回旧数据
+                        lease.unlock();
+                    }
+
+                    //6.4.返回过期的信息（数据只解码这一次）
+                    m.staleServed();
+                    return staleReader.apply(envelope, m);
+                }, executor).whenComplete((r, e) -> {
+                    if (e != null){
+                        lease.unlock();
+                    }
+                });
+            }, executor);
+        }, executor);
+    }
+
+    /**
+     * 读数据：从缓存和数据库
+     * 解决了缓存穿透和缓存击穿，通过互斥锁和空值缓存
+     * ========================================================
+     * 增数据：先操作数据库；再操作缓存使用set()；再添加方法为事务确保同时成功与失败（或者无需操作缓存！！！）
+     * 删数据/改数据：先操作数据库；再操作缓存直接删除redis中的键；再添加方法为事务确保同时成功与失败
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据值类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> R queryWithMutex(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,R> dbFallBack,
+            Long time,TimeUnit unit) throws InterruptedException {
+        return CallerRunsExecutor.join(executor -> mutexAsync(keyPrefix, id, lockPrefix,
+                (raw, m) -> decode(raw, type, m), blocking(dbFallBack), time, unit, executor));
+    }
+
+    /**
+     * 读数据：互斥锁策略的异步版本，流程与queryWithMutex()相同
+     * 获取锁失败时等待重建完成通知期间不占用线程
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据值类型
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> CompletableFuture<R> queryWithMutexAsync(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time,TimeUnit unit){
+        return completeOn(mutexAsync(keyPrefix, id, lockPrefix, (raw, m) -> decode(raw, type, m), dbFallBack,
+                time, unit, AsyncSupport.EXECUTOR));
+    }
+
+    /**
+     * 读数据：从缓存和数据库，针对数组数据的缓存
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据的单个元素值类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据单个元素类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> List<R> queryWithMutexForArr(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,List<R>> dbFallBack,
+            Long time,TimeUnit unit) throws InterruptedException {
+        return CallerRunsExecutor.join(executor -> mutexAsync(keyPrefix, id, lockPrefix,
+                (raw, m) -> decodeList(raw, type, m), blocking(dbFallBack), time, unit, executor));
+    }
+
+    /**
+     * 读数据：互斥锁策略针对数组数据的异步版本
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀
+     * @param type 缓存数据的单个元素值类型
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据单个元素类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> CompletableFuture<List<R>> queryWithMutexForArrAsync(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,CompletableFuture<List<R>>> dbFallBack,
+            Long time,TimeUnit unit){
+        return completeOn(mutexAsync(keyPrefix, id, lockPrefix, (raw, m) -> decodeList(raw, type, m), dbFallBack,
+                time, unit, AsyncSupport.EXECUTOR));
+    }
+
+    /**
+     * 互斥锁策略（单个数据和数组数据共用）
+     * @param decoder 反序列化逻辑
+     * @param executor 解码、调用数据库查询逻辑等阶段的执行器
+     * @param <T> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    private <T,ID> CompletableFuture<T> mutexAsync(
+            String keyPrefix, ID id, String lockPrefix, BiFunction<byte[],CacheMetrics,T> decoder,
+            Function<ID,CompletableFuture<T>> dbFallBack, Long time, TimeUnit unit, Executor executor){
+        String key = keyPrefix + id;
+        //0.先查本地缓存
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.MUTEX);
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        Object local = nearGet(near, key, m);
+        if (local != null){
+            return CompletableFuture.completedFuture(localValue(local));
+        }
+        //0.1.布隆过滤器判定一定不存在，直接返回
+        if (!mightExist(keyPrefix, id)){
+            m.bloomRejected();
+            return CompletableFuture.completedFuture(null);
+        }
+        long ttlMillis = unit.toMillis(time);
+
+        //1.从redis查询商铺信息缓存（根据商铺id）
+        return getRawAsync(key, m, false).thenComposeAsync(raw -> {
+            //2.判断是否存在缓存
+            if (isPresent(raw)){
+                //3.存在，返回商铺信息（无法解码按未命中处理）
+                try {
+                    T cached = decoder.apply(raw, m);
+                    nearPut(near, key, cached, raw, ttlMillis);
+                    return CompletableFuture.completedFuture(cached);
+                } catch (CacheDecodeException e) {
+                    undecodable(key, e);
+                }
+            } else if (raw!=null){
+                //判断返回的是否是空值
+                //返回错误信息
+                nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            //4.实现缓存重建：同一JVM内的并发请求合并为一次重建，只有一个请求竞争分布式锁
+            String lockkey = lockPrefix + id;
+            return singleFlight.executeAsync(key, () -> rebuildWithMutexAsync(
+                    key, lockkey, value -> decoder.apply(value, m),
+                    () -> loadFromDbAsync(keyPrefix, dbFallBack, id, m, false, executor), time, unit, near, m, executor));
+        }, executor);
+    }
+
+    /**
+     * 互斥锁重建缓存（由single-flight的leader请求执行）
+     * 获取分布式锁成功：再次读取主节点（双端检锁），仍未命中才查询数据库写入缓存，并发布重建完成通知；
+     * 获取失败：等待持锁节点的重建完成通知（不占用线程）后重新读取，不再休眠递归重试
+     * @param key 缓存key
+     * @param lockkey 锁的key
+     * @param decoder 反序列化逻辑
+     * @param loader 数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param near 本地缓存，为null表示未开启
+     * @param m 统计
+     * @param executor 解码、调用数据库查询逻辑等阶段的执行器
+     * @param <T> 数据类型参数
+     * @return 数据
+     */
+    private <T> CompletableFuture<T> rebuildWithMutexAsync(String key, String lockkey, Function<byte[],T> decoder,
+                                                           Supplier<CompletableFuture<T>> loader, Long time, TimeUnit unit,
+                                                           NearCache near, CacheMetrics m, Executor executor){
+        long ttlMillis = unit.toMillis(time);
+        //1.先登记等待重建通知，避免读redis与等待之间错过通知
+        CompletableFuture<Void> signal = rebuildNotifier.register(key);
+        //双端检锁
+        //2.从redis主节点查询缓存
+        return getRawAsync(key, m, true).thenComposeAsync(raw -> {
+            if (raw != null){
+                //3.存在（或空值），返回；无法解码按未命中处理
+                try {
+                    return CompletableFuture.completedFuture(cachedOf(key, raw, decoder, near, ttlMillis));
+                } catch (CacheDecodeException e) {
+                    undecodable(key, e);
+                }
+            }
+
+            //4.获取互斥锁
+            return tryLockAsync(key, lockkey, m).thenComposeAsync(lease -> {
+                if (lease == null){
+                    //4.1.失败，等待重建完成通知（超时后重新检查，持锁节点可能已宕机）
+                    long waitStart = System.nanoTime();
+                    return rebuildNotifier.awaitAsync(key, signal, REBUILD_WAIT_MILLIS).thenComposeAsync(notified -> {
+                        m.lockWait(waitStart);
+                        rebuildNotifier.unregister(key, signal);
+                        return rebuildWithMutexAsync(key, lockkey, decoder, loader, time, unit, near, m, executor);
+                    }, executor);
+                }
+                //4.2.成功，再次读取主节点：其他节点可能在第一次读取之后、本节点获取锁之前完成了重建并释放了锁
+                return getRawAsync(key, m, true).thenComposeAsync(latest -> {
+                    if (latest != null){
+                        try {
+                            return CompletableFuture.completedFuture(cachedOf(key, latest, decoder, near, ttlMillis));
+                        } catch (CacheDecodeException e) {
+                            undecodable(key, e);
+                        }
+                    }
+                    //5.仍未命中，查询数据库，写入redis
+                    return AsyncSupport.call(loader).thenComposeAsync(r -> writeLoadedAsync(key, r, ttlMillis, near), executor);
+                }, executor).whenComplete((r, e) -> {
+                    //6.释放互斥锁，通知其他节点重新读取
+                    lease.unlock();
+                    rebuildNotifier.publishAsync(key);
+                });
+            }, executor);
+        }, executor).whenComplete((r, e) -> rebuildNotifier.unregister(key, signal));
+    }
+
+    /**
+     * redis中读到的缓存（数据或空值标记）解码后放入本地缓存
+     * @param raw 非null的字节，空数组为空值标记
+     * @return 数据，空值标记返回null
+     * @throws CacheDecodeException 无法解码
+     */
+    private <T> T cachedOf(String key, byte[] raw, Function<byte[],T> decoder, NearCache near, long ttlMillis){
+        if (!isPresent(raw)){
+            nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+            return null;
+        }
+        T cached = decoder.apply(raw);
+        nearPut(near, key, cached, raw, ttlMillis);
+        return cached;
+    }
+
+    /**
+     * 把数据库查询结果写入redis（不存在时写入空值）和本地缓存
+     * @param key 缓存key
+     * @param r 数据库查询结果
+     * @param ttlMillis 过期时间（毫秒，写入redis时加抖动）
+     * @param near 本地缓存，为null表示未开启
+     * @param <T> 数据类型参数
+     * @return 写入完成后返回r
+     */
+    private <T> CompletableFuture<T> writeLoadedAsync(String key, T r, long ttlMillis, NearCache near){
+        if (r==null){
+            //将空值写入redis
+            return setRawAsync(key, NULL_MARKER, ttlOf(key, ttlMillis)).thenApply(v -> {
+                nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+                return null;
+            });
+        }
+        //存在，写入redis（只编码一次）
+        byte[] raw = codecOf(key).encode(r);
+        return setRawAsync(key, raw, ttlOf(key, ttlMillis), tagsOf(key, r)).thenApply(v -> {
+            nearPut(near, key, r, raw, ttlMillis);
+            return r;
+        });
+    }
+
+    /**
+     * 读数据：按前缀配置的策略（CachePolicy.strategy）读取
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀（互斥锁、逻辑过期策略使用）
+     * @param type 缓存数据值类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
+     */
+    public <R,ID> R query(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,R> dbFallBack,
+            Long time,TimeUnit unit) throws InterruptedException {
+        switch (cachePolicyRegistry.resolve(keyPrefix).getStrategy()){
+            case PASS_THROUGH:
+                return queryWithPassThrough(keyPrefix, id, type, dbFallBack, time, unit);
+            case LOGICAL_EXPIRE:
+                return queryWithLogicalExpire(keyPrefix, id, lockPrefix, type, dbFallBack, time, unit);
+            case EARLY_REFRESH:
+                return queryWithEarlyRefresh(keyPrefix, id, type, dbFallBack, time, unit);
+            case MUTEX:
+            default:
+                return queryWithMutex(keyPrefix, id, lockPrefix, type, dbFallBack, time, unit);
+        }
     }
 
     /**
-     * 写入redis任意对象数据，并设置逻辑过期时间
-     * @param key 键
-     * @param value 对象数据值（会被封装为RedisData）
-     * @param time 逻辑过期时间
+     * 读数据：按前缀配置的策略（CachePolicy.strategy）异步读取
+     * @param keyPrefix 缓存key前缀
+     * @param id
+     * @param lockPrefix 缓存的key对应的锁的前缀（互斥锁、逻辑过期策略使用）
+     * @param type 缓存数据值类型
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存过期时间
      * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return 数据
      */
-    public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit){
-
-        //1.设置逻辑过期
-        RedisData redisData = new RedisData();
-        redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
-
-        //2.写入redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+    public <R,ID> CompletableFuture<R> queryAsync(
+            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time,TimeUnit unit){
+        switch (cachePolicyRegistry.resolve(keyPrefix).getStrategy()){
+            case PASS_THROUGH:
+                return queryWithPassThroughAsync(keyPrefix, id, type, dbFallBack, time, unit);
+            case LOGICAL_EXPIRE:
+                return queryWithLogicalExpireAsync(keyPrefix, id, lockPrefix, type, dbFallBack, time, unit);
+            case EARLY_REFRESH:
+                return queryWithEarlyRefreshAsync(keyPrefix, id, type, dbFallBack, time, unit);
+            case MUTEX:
+            default:
+                return queryWithMutexAsync(keyPrefix, id, lockPrefix, type, dbFallBack, time, unit);
+        }
     }
 
     /**
-     * 读数据：从缓存和数据库
-     * 解决了缓存穿透，没有解决缓存击穿
+     * 读数据：从缓存和数据库，概率提前刷新（XFetch）
+     * 缓存值连同最近一次重建耗时delta一起存储，每次读取时按概率决定是否提前重建：
+     * now - delta * beta * ln(rand) >= 过期时间 时由当前读请求重建。离过期越近、重建越慢，提前重建的概率越大，
+     * 因此通常只有一个读请求在过期前完成重建，没有锁竞争，也不会返回过期数据。
+     * 缓存同时设置了真实过期时间，冷数据过期后按缓存空值的方式同步加载（同一JVM内合并）。
      * @param keyPrefix 缓存key前缀
      * @param id
      * @param type 缓存数据值类型
@@ -83,395 +1386,543 @@ public class CacheClient {
      * @param <ID> id类型参数
      * @return 数据
      */
-    public <R,ID> R queryWithPassThrough(
-            String keyPrefix, ID id, Class<R> type, Function<ID,R> dbFallBack,
-            Long time, TimeUnit unit){
-        String key = keyPrefix + id;
-        //1.从redis查询信息缓存（根据id）
-        String json = stringRedisTemplate.opsForValue().get(key);
-
-        //2.判断是否存在缓存
-        if (StrUtil.isNotBlank(json)){
-            //3.存在，返回
-            return JSONUtil.toBean(json, type);
-        }
-        //判断返回的是否是空值
-        if (json!=null){
-            //返回错误信息
-            return null;
-        }
-
-        //4.不存在，根据id查询数据库
-        R r = dbFallBack.apply(id);
-
-        //5.判断数据库中是否存在商铺信息
-        if (r==null){
-            //将空值写入redis
-            set(key,"",time, unit);
-            //6.不存在，返回错误信息
-            return null;
-        }
-
-        //7.存在，写入redis
-        set(key,JSONUtil.toJsonStr(r),time, unit);
-
-        //8.返回商铺信息
-        return r;
+    public <R,ID> R queryWithEarlyRefresh(
+            String keyPrefix,ID id,Class<R> type,Function<ID,R> dbFallBack,
+            Long time,TimeUnit unit) throws InterruptedException {
+        return CallerRunsExecutor.join(executor -> earlyRefreshAsync(keyPrefix, id, type, blocking(dbFallBack),
+                time, unit, executor));
     }
 
-    //线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
-
     /**
-     * 读数据：从缓存和数据库
-     * 解决了缓存击穿，通过逻辑过期。没有缓存穿透问题，不存在的缓存直接在redis层返回null
-     * ========================================================
-     * 增数据/改数据：先操作数据库；再操作缓存使用setWithLogicalExpire()；再添加方法为事务确保同时成功与失败
-     * 删数据：先操作数据库；再操作缓存直接删除redis中的键；再添加方法为事务确保同时成功与失败
+     * 读数据：概率提前刷新策略的异步版本，流程与queryWithEarlyRefresh()相同
      * @param keyPrefix 缓存key前缀
      * @param id
-     * @param lockPrefix 缓存的key对应的锁的前缀
      * @param type 缓存数据值类型
-     * @param dbFallBack 数据库查询逻辑
-     * @param time 缓存逻辑过期时间
+     * @param dbFallBack 异步数据库查询逻辑
+     * @param time 缓存过期时间
      * @param unit 时间单位
      * @param <R> 数据类型参数
      * @param <ID> id类型参数
      * @return 数据
      */
-    public <R,ID> R queryWithLogicalExpire(
-            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,R> dbFallBack,
-            Long time,TimeUnit unit) throws InterruptedException {
-        String key = keyPrefix + id;
-        //1.从redis查询信息缓存（根据id）
-        String json = stringRedisTemplate.opsForValue().get(key);
+    public <R,ID> CompletableFuture<R> queryWithEarlyRefreshAsync(
+            String keyPrefix,ID id,Class<R> type,Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time,TimeUnit unit){
+        return completeOn(earlyRefreshAsync(keyPrefix, id, type, dbFallBack, time, unit, AsyncSupport.EXECUTOR));
+    }
 
-        //2.判断是否存在缓存
-        if (StrUtil.isBlank(json)){
-            //3.不存在，返回
-            return null;
+    private <R,ID> CompletableFuture<R> earlyRefreshAsync(
+            String keyPrefix, ID id, Class<R> type, Function<ID,CompletableFuture<R>> dbFallBack,
+            Long time, TimeUnit unit, Executor executor){
+        String key = keyPrefix + id;
+        //0.先查本地缓存
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.EARLY_REFRESH);
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        Object local = nearGet(near, key, m);
+        if (local != null){
+            return CompletableFuture.completedFuture(local == NearCache.NULL_VALUE ? null : type.cast(local));
+        }
+        //0.1.布隆过滤器判定一定不存在，直接返回
+        if (!mightExist(keyPrefix, id)){
+            m.bloomRejected();
+            return CompletableFuture.completedFuture(null);
         }
+        long ttlMillis = unit.toMillis(time);
 
-        //4.命中，需要把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
+        //1.从redis查询缓存
+        return getRawAsync(key, m, false).thenComposeAsync(raw -> {
+            //2.空值标记
+            if (raw != null && raw.length == 0){
+                nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+                return CompletableFuture.completedFuture(null);
+            }
 
-        //5.判断是否过期
-        LocalDateTime expireTime = redisData.getExpireTime();
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-        //5.1.未过期，直接返回信息
-        if (LocalDateTime.now().isBefore(expireTime)){
-            return r;
-        }
+            //3.命中，按概率判断是否需要提前刷新（只读取头部）；不是封装格式（例如通过set()写入）按未命中处理
+            RedisDataEnvelope envelope = raw == null ? null : RedisDataEnvelope.tryRead(raw);
+            if (envelope != null){
+                try {
+                    double beta = cachePolicyRegistry.resolve(keyPrefix).getEarlyRefreshBeta();
+                    if (!shouldRefreshEarly(envelope, beta)){
+                        R r = dataOf(envelope, type, m);
+                        nearPut(near, key, r, raw, envelope.millisUntilExpire());
+                        return CompletableFuture.completedFuture(r);
+                    }
+                    //3.1.被选中提前刷新；本节点已有请求在刷新该key时直接返回当前值
+                    if (!earlyRefreshing.add(key)){
+                        return CompletableFuture.completedFuture(dataOf(envelope, type, m));
+                    }
+                    return loadWithCostAsync(key, id, dbFallBack, ttlMillis, near, m, true, executor).handleAsync((r, e) -> {
+                        earlyRefreshing.remove(key);
+                        if (e == null){
+                            return r;
+                        }
+                        if (AsyncSupport.unwrap(e) instanceof DbOverloadException){
+                            //数据库并发已达上限，返回当前值（尚未过期）
+                            return dataOf(envelope, type, m);
+                        }
+                        throw AsyncSupport.rethrow(e);
+                    }, executor);
+                } catch (CacheDecodeException e) {
+                    //无法解码按未命中处理
+                    undecodable(key, e);
+                }
+            }
 
-        //5.2.已过期，需要缓存重建
+            //4.未命中，同一JVM内合并为一次加载
+            return singleFlight.executeAsync(key, () -> loadWithCostAsync(key, id, dbFallBack, ttlMillis, near, m, false, executor));
+        }, executor);
+    }
 
-        //6.缓存重建
-        String lockkey = lockPrefix + id;
-        //6.1.获取互斥锁
-        boolean flag = tryLock(lockkey);
-        //6.2.判断是否获取锁成功
-        if (flag){
-            //双端检锁
-            //1.从redis查询信息缓存（根据id）
-            json = stringRedisTemplate.opsForValue().get(key);
+    /**
+     * XFetch判断：now - delta * beta * ln(rand) >= expiry
+     * @param envelope 缓存数据封装
+     * @param beta 提前刷新系数，越大越倾向于提前刷新
+     * @return 是否需要提前刷新
+     */
+    private static boolean shouldRefreshEarly(RedisDataEnvelope envelope, double beta){
+        double rand = 1D - ThreadLocalRandom.current().nextDouble();
+        double gap = -envelope.getRebuildCostMillis() * beta * Math.log(rand);
+        return System.currentTimeMillis() + gap >= envelope.getExpireAtMillis();
+    }
 
-            //2.判断是否存在缓存
-            if (StrUtil.isBlank(json)){
-                //3.不存在，返回
-                return null;
-            }
+    /**
+     * 查询数据库并记录重建耗时，连同过期时间写入redis（真实过期时间与逻辑过期时间一致）
+     * @param staleAvailable 调用方是否有当前值可以返回（数据库并发达到上限时使用）
+     */
+    private <R,ID> CompletableFuture<R> loadWithCostAsync(String key, ID id, Function<ID,CompletableFuture<R>> dbFallBack,
+                                                          long ttlMillis, NearCache near, CacheMetrics m,
+                                                          boolean staleAvailable, Executor executor){
+        //1.查询数据库并计时
+        long start = System.nanoTime();
+        return loadFromDbAsync(key, dbFallBack, id, m, staleAvailable, executor).thenComposeAsync(r -> {
+            int costMillis = (int) Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
-            //4.命中，需要把json反序列化为对象
-            redisData = JSONUtil.toBean(json, RedisData.class);
+            //2.不存在，写入空值
+            if (r == null){
+                return setRawAsync(key, NULL_MARKER, ttlOf(key, ttlMillis)).thenApply(v -> {
+                    nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+                    return null;
+                });
+            }
 
-            //5.判断是否过期
-            expireTime = redisData.getExpireTime();
-            r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-            //5.1.未过期，直接返回信息
-            if (LocalDateTime.now().isBefore(expireTime)){
+            //3.存在，写入数据、过期时间和重建耗时
+            long ttl = ttlOf(key, ttlMillis);
+            byte[] raw = RedisDataEnvelope.encode(r, System.currentTimeMillis() + ttl, costMillis, codecOf(key));
+            return setRawAsync(key, raw, ttl, tagsOf(key, r)).thenApply(v -> {
+                nearPut(near, key, r, raw, ttlMillis);
                 return r;
-            }
+            });
+        }, executor);
+    }
 
-            //6.3.成功，开启独立线程，实现缓存重建
-            CompletableFuture.runAsync(()->{
-                try {
-                    //重建缓存
-                    //查数据库
-                    R newr = dbFallBack.apply(id);
-
-                    //缓存逻辑过期
-                    setWithLogicalExpire(key,newr,time,unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    //释放锁
-                    unlock(lockkey);
-                }
-            },CACHE_REBUILD_EXECUTOR);
+    /**
+     * 批量读数据：从缓存和数据库（缓存穿透策略的批量版本）
+     * 所有key通过一次MGET读取，未命中的id合并为一次数据库查询，结果和空值通过一次管道写回redis
+     * @param keyPrefix 缓存key前缀
+     * @param ids id集合
+     * @param type 缓存数据值类型
+     * @param dbFallBack 数据库批量查询逻辑，返回id到数据的映射，不存在的id不放入映射
+     * @param time 缓存过期时间
+     * @param unit 时间单位
+     * @param <R> 数据类型参数
+     * @param <ID> id类型参数
+     * @return id到数据的映射，不存在的id不会出现在结果中
+     */
+    public <R,ID> Map<ID,R> queryAllWithPassThrough(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<Collection<ID>,Map<ID,R>> dbFallBack,
+            Long time, TimeUnit unit){
+        Map<ID,R> result = new HashMap<>();
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.PASS_THROUGH);
+        //1.批量查询本地缓存和redis，得到完全未命中的id
+        List<ID> missing = multiGet(keyPrefix, ids, type, unit.toMillis(time), result, m);
+        if (missing.isEmpty()){
+            return result;
         }
-
-        //6.4.返回过期的商铺信息
-        return r;
+        //2.未命中的id合并查询数据库，并批量写回redis
+        loadAll(keyPrefix, missing, dbFallBack, time, unit, result, m);
+        return result;
     }
 
     /**
-     * 读数据：从缓存和数据库，针对数组数据的缓存
+     * 批量读数据：从缓存和数据库（互斥锁策略的批量版本）
+     * 未命中的id一次性获取互斥锁（一次往返），获取成功的id合并为一次数据库查询并通过管道写回，写回后发布重建完成通知；
+     * 获取失败的id等待持锁节点的重建完成通知（超时后重新检查）后重新读取
      * @param keyPrefix 缓存key前缀
-     * @param id
+     * @param ids id集合
      * @param lockPrefix 缓存的key对应的锁的前缀
-     * @param type 缓存数据单个元素值类型
-     * @param dbFallBack 数据库查询逻辑
-     * @param time 缓存逻辑过期时间
+     * @param type 缓存数据值类型
+     * @param dbFallBack 数据库批量查询逻辑，返回id到数据的映射，不存在的id不放入映射
+     * @param time 缓存过期时间
      * @param unit 时间单位
-     * @param <R> 数据单个元素类型参数
+     * @param <R> 数据类型参数
      * @param <ID> id类型参数
-     * @return 数据
+     * @return id到数据的映射，不存在的id不会出现在结果中
      */
-    public <R,ID> List<R> queryWithLogicalExpireForArr(
-            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,List<R>> dbFallBack,
-            Long time,TimeUnit unit) throws InterruptedException {
-        String key = keyPrefix + id;
-        //1.从redis查询信息缓存（根据id）
-        String json = stringRedisTemplate.opsForValue().get(key);
-
-        //2.判断是否存在缓存
-        if (StrUtil.isBlank(json)){
-            //3.不存在，返回
-            return null;
-        }
-
-        //4.命中，需要把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-
-        //5.判断是否过期
-        LocalDateTime expireTime = redisData.getExpireTime();
-        List<R> rList = JSONUtil.toList((JSONArray) redisData.getData(), type);
-        //5.1.未过期，直接返回信息
-        if (LocalDateTime.now().isBefore(expireTime)){
-            return rList;
-        }
-
-        //5.2.已过期，需要缓存重建
-
-        //6.缓存重建
-        String lockkey = lockPrefix + id;
-        //6.1.获取互斥锁
-        boolean flag = tryLock(lockkey);
-        //6.2.判断是否获取锁成功
-        if (flag){
-            //双端检锁
-            //1.从redis查询信息缓存（根据id）
-            json = stringRedisTemplate.opsForValue().get(key);
-
-            //2.判断是否存在缓存
-            if (StrUtil.isBlank(json)){
-                //3.不存在，返回
-                return null;
+    public <R,ID> Map<ID,R> queryAllWithMutex(
+            String keyPrefix, Collection<ID> ids, String lockPrefix, Class<R> type,
+            Function<Collection<ID>,Map<ID,R>> dbFallBack, Long time, TimeUnit unit) throws InterruptedException {
+        Map<ID,R> result = new HashMap<>();
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.MUTEX);
+        long ttlMillis = unit.toMillis(time);
+        //1.批量查询本地缓存和redis
+        List<ID> missing = multiGet(keyPrefix, ids, type, ttlMillis, result, m);
+        while (!missing.isEmpty()){
+            //2.先登记等待重建通知（避免读redis与等待之间错过通知），再一次性获取所有未命中id的互斥锁
+            Map<String,CompletableFuture<Void>> signals = new LinkedHashMap<>();
+            List<String> lockkeys = new ArrayList<>(missing.size());
+            for (ID id : missing) {
+                String key = keyPrefix + id;
+                signals.put(key, rebuildNotifier.register(key));
+                lockkeys.add(lockPrefix + id);
             }
-
-            //4.命中，需要把json反序列化为对象
-            redisData = JSONUtil.toBean(json, RedisData.class);
-
-            //5.判断是否过期
-            expireTime = redisData.getExpireTime();
-            rList = JSONUtil.toList((JSONArray) redisData.getData(), type);
-            //5.1.未过期，直接返回信息
-            if (LocalDateTime.now().isBefore(expireTime)){
-                return rList;
+            List<RebuildLease> leases = tryLockAll(keyPrefix, lockkeys, m);
+            List<ID> locked = new ArrayList<>();
+            List<ID> waiting = new ArrayList<>();
+            Map<String,CompletableFuture<Void>> waitingSignals = new LinkedHashMap<>();
+            for (int i = 0; i < missing.size(); i++) {
+                ID id = missing.get(i);
+                String key = keyPrefix + id;
+                if (leases.get(i) != null){
+                    locked.add(id);
+                    rebuildNotifier.unregister(key, signals.get(key));
+                } else {
+                    waiting.add(id);
+                    waitingSignals.put(key, signals.get(key));
+                }
             }
-
-            //6.3.成功，开启独立线程，实现缓存重建
-            CompletableFuture.runAsync(()->{
-                try {
-                    //重建缓存
-                    //查数据库
-                    List<R> newr = dbFallBack.apply(id);
-
-                    //缓存逻辑过期
-                    setWithLogicalExpire(key,newr,time,unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    //释放锁
-                    unlock(lockkey);
+            try {
+                if (!locked.isEmpty()){
+                    //双端检锁：再查一次redis，只有仍未命中的id才查数据库
+                    List<ID> stillMissing = multiGet(keyPrefix, locked, type, ttlMillis, result, m);
+                    if (!stillMissing.isEmpty()){
+                        loadAll(keyPrefix, stillMissing, dbFallBack, time, unit, result, m);
+                    }
                 }
-            },CACHE_REBUILD_EXECUTOR);
+            } finally {
+                //释放互斥锁，通知其他节点重新读取
+                for (int i = 0; i < leases.size(); i++) {
+                    RebuildLease lease = leases.get(i);
+                    if (lease != null){
+                        lease.unlock();
+                        rebuildNotifier.publishAsync(keyPrefix + missing.get(i));
+                    }
+                }
+            }
+            if (waiting.isEmpty()){
+                break;
+            }
+            //3.获取锁失败的id等待重建完成通知（共用一个超时时间，持锁节点可能已宕机），然后重新读取
+            long waitStart = System.nanoTime();
+            rebuildNotifier.awaitAll(waitingSignals, REBUILD_WAIT_MILLIS);
+            m.lockWait(waitStart);
+            waitingSignals.forEach(rebuildNotifier::unregister);
+            missing = multiGet(keyPrefix, waiting, type, ttlMillis, result, m);
         }
-
-        //6.4.返回过期的商铺信息
-        return rList;
+        return result;
     }
 
     /**
-     * 读数据：从缓存和数据库
-     * 解决了缓存穿透和缓存击穿，通过互斥锁和空值缓存
-     * ========================================================
-     * 增数据：先操作数据库；再操作缓存使用set()；再添加方法为事务确保同时成功与失败（或者无需操作缓存！！！）
-     * 删数据/改数据：先操作数据库；再操作缓存直接删除redis中的键；再添加方法为事务确保同时成功与失败
+     * 批量读数据：从缓存和数据库（逻辑过期策略的批量版本）
+     * 通过一次MGET读取，已过期的id一次性获取互斥锁（一次往返），获取成功的id在独立线程中合并为一次数据库查询并通过管道写回；本次返回过期数据
      * @param keyPrefix 缓存key前缀
-     * @param id
+     * @param ids id集合
      * @param lockPrefix 缓存的key对应的锁的前缀
      * @param type 缓存数据值类型
-     * @param dbFallBack 数据库查询逻辑
-     * @param time 缓存过期时间
+     * @param dbFallBack 数据库批量查询逻辑，返回id到数据的映射
+     * @param time 缓存逻辑过期时间
      * @param unit 时间单位
      * @param <R> 数据类型参数
      * @param <ID> id类型参数
-     * @return 数据
+     * @return id到数据的映射，redis中不存在的id不会出现在结果中
      */
-    public <R,ID> R queryWithMutex(
-            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,R> dbFallBack,
-            Long time,TimeUnit unit) throws InterruptedException {
-        String key = keyPrefix + id;
-        //1.从redis查询商铺信息缓存（根据商铺id）
-        String json = stringRedisTemplate.opsForValue().get(key);
-
-        //2.判断是否存在缓存
-        if (StrUtil.isNotBlank(json)){
-            //3.存在，返回商铺信息
-            return JSONUtil.toBean(json, type);
+    public <R,ID> Map<ID,R> queryAllWithLogicalExpire(
+            String keyPrefix, Collection<ID> ids, String lockPrefix, Class<R> type,
+            Function<Collection<ID>,Map<ID,R>> dbFallBack, Long time, TimeUnit unit) throws InterruptedException {
+        Map<ID,R> result = new HashMap<>();
+        CacheMetrics m = cacheMetricsRegistry.of(keyPrefix, CacheStrategy.LOGICAL_EXPIRE);
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        //1.先查本地缓存
+        List<ID> idList = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (ID id : new LinkedHashSet<>(ids)) {
+            String key = keyPrefix + id;
+            Object local = nearGet(near, key, m);
+            if (local != null){
+                refreshAheadScheduler.touch(key);
+                result.put(id, type.cast(local));
+            } else {
+                idList.add(id);
+                keys.add(key);
+            }
         }
-        //判断返回的是否是空值
-        if (json!=null){
-            //返回错误信息
-            return null;
+        if (idList.isEmpty()){
+            return result;
         }
 
-        //4.实现缓存重建
-        String lockkey = lockPrefix + id;
-        //4.1.获取互斥锁
-        boolean flag = tryLock(lockkey);
-        R r = null;
-        try {
-            //4.2.判断是否获取成功
-            if (!flag){
-                //4.3.失败，则休眠并重试
-                //暂停几毫秒钟线程
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix,id,lockPrefix,type,dbFallBack,time,unit);
+        //2.一次MGET读取redis
+        long start = System.nanoTime();
+        List<byte[]> raws = multiGetRaw(keys);
+        m.redis(start);
+        List<ID> expired = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            byte[] raw = raws == null ? null : raws.get(i);
+            if (!isPresent(raw)){
+                m.miss();
+                continue;
             }
-
-            //双端检锁
-            //1.从redis查询商铺信息缓存（根据商铺id）
-            json = stringRedisTemplate.opsForValue().get(key);
-
-            //2.判断是否存在缓存
-            if (StrUtil.isNotBlank(json)){
-                //3.存在，返回商铺信息
-                return JSONUtil.toBean(json, type);
+            m.hit();
+            RedisDataEnvelope envelope = RedisDataEnvelope.read(raw);
+            refreshAheadScheduler.touch(keyPrefix, keys.get(i), idList.get(i), envelope.getExpireAtMillis());
+            R r;
+            try {
+                r = dataOf(envelope, type, m);
+            } catch (CacheDecodeException e) {
+                //无法解码按已过期处理：参与重建，本次不返回
+                undecodable(keys.get(i), e);
+                expired.add(idList.get(i));
+                continue;
             }
-            //判断返回的是否是空值
-            if (json!=null){
-                //返回错误信息
-                return null;
+            result.put(idList.get(i), r);
+            if (!envelope.isExpired()){
+                nearPut(near, keys.get(i), r, raw, envelope.millisUntilExpire());
+            } else {
+                m.staleServed();
+                expired.add(idList.get(i));
             }
+        }
+        if (expired.isEmpty()){
+            return result;
+        }
 
-            //4.4.成功，根据id查询数据库
-            r = dbFallBack.apply(id);
-
-            //5.判断数据库中是否存在商铺信息
-            if (r==null){
-                //将空值写入redis
-                set(key,"",time,unit);
-                //6.不存在，返回错误信息
-                return null;
+        //3.已过期的id一次性获取互斥锁（已在本节点排队重建的跳过），成功的id合并重建
+        List<ID> candidates = new ArrayList<>();
+        List<String> lockkeys = new ArrayList<>();
+        for (ID id : expired) {
+            if (!cacheRebuildScheduler.touch(keyPrefix + id)){
+                candidates.add(id);
+                lockkeys.add(lockPrefix + id);
             }
-
-            //7.存在，写入redis
-            set(key,r,time,unit);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            //8.释放互斥锁
-            unlock(lockkey);
+        }
+        if (candidates.isEmpty()){
+            return result;
+        }
+        List<RebuildLease> acquired = tryLockAll(keyPrefix, lockkeys, m);
+        List<ID> locked = new ArrayList<>();
+        List<String> lockedKeys = new ArrayList<>();
+        List<RebuildLease> leases = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (acquired.get(i) != null){
+                locked.add(candidates.get(i));
+                lockedKeys.add(keyPrefix + candidates.get(i));
+                leases.add(acquired.get(i));
+            }
+        }
+        if (locked.isEmpty()){
+            return result;
+        }
+        boolean submitted = cacheRebuildScheduler.submit(keyPrefix, lockedKeys, ()->{
+            try {
+                //重建缓存：批量查数据库，管道写回逻辑过期数据
+                Map<ID,R> loaded = loadFromDb(keyPrefix, dbFallBack, locked, m, true);
+                CacheCodec codec = codecOf(keyPrefix);
+                Map<String,byte[]> writes = new LinkedHashMap<>();
+                Map<String,String[]> tags = new HashMap<>();
+                long now = System.currentTimeMillis();
+                for (ID id : locked) {
+                    String key = keyPrefix + id;
+                    R r = loaded == null ? null : loaded.get(id);
+                    writes.put(key, RedisDataEnvelope.encode(r, now + ttlOf(key, unit.toMillis(time)), codec));
+                    putTags(tags, key, r);
+                }
+                pipelineSet(writes, tags, -1L);
+            } catch (DbOverloadException e) {
+                //数据库并发已达上限，保留旧数据，之后的读取再触发重建
+                log.debug("数据库并发已达上限，跳过缓存重建，key：{}", lockedKeys);
+            } finally {
+                //释放锁（锁由提交线程获取，凭证可以在重建线程中释放）
+                leases.forEach(RebuildLease::unlock);
+            }
+        });
+        if (!submitted){
+            leases.forEach(RebuildLease::unlock);
         }
 
-        //9.返回商铺信息
-        return r;
+        //4.返回数据（包含过期数据）
+        return result;
     }
 
     /**
-     * 读数据：从缓存和数据库，针对数组数据的缓存
-     * @param keyPrefix 缓存key前缀
-     * @param id
-     * @param lockPrefix 缓存的key对应的锁的前缀
-     * @param type 缓存数据的单个元素值类型
-     * @param dbFallBack 数据库查询逻辑
-     * @param time 缓存过期时间
-     * @param unit 时间单位
-     * @param <R> 数据单个元素类型参数
-     * @param <ID> id类型参数
-     * @return 数据
+     * 批量查询本地缓存和redis（一次MGET），命中的数据放入result
+     * @return 本地缓存和redis都未命中（且不是空值标记）的id
      */
-    public <R,ID> List<R> queryWithMutexForArr(
-            String keyPrefix,ID id,String lockPrefix,Class<R> type,Function<ID,List<R>> dbFallBack,
-            Long time,TimeUnit unit) throws InterruptedException {
-        String key = keyPrefix + id;
-        //1.从redis查询商铺信息缓存（根据商铺id）
-        String json = stringRedisTemplate.opsForValue().get(key);
-
-        //2.判断是否存在缓存
-        if (StrUtil.isNotBlank(json)){
-            //3.存在，返回商铺信息
-            return JSONUtil.toList(json, type);
+    private <R,ID> List<ID> multiGet(String keyPrefix, Collection<ID> ids, Class<R> type, long ttlMillis, Map<ID,R> result,
+                                     CacheMetrics m){
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        //1.先查本地缓存
+        List<ID> idList = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (ID id : new LinkedHashSet<>(ids)) {
+            //布隆过滤器判定一定不存在的id直接跳过
+            if (!mightExist(keyPrefix, id)){
+                m.bloomRejected();
+                continue;
+            }
+            String key = keyPrefix + id;
+            Object local = nearGet(near, key, m);
+            if (local == null){
+                idList.add(id);
+                keys.add(key);
+            } else if (local != NearCache.NULL_VALUE){
+                result.put(id, type.cast(local));
+            }
         }
-        //判断返回的是否是空值
-        if (json!=null){
-            //返回错误信息
-            return null;
+        List<ID> missing = new ArrayList<>();
+        if (idList.isEmpty()){
+            return missing;
         }
 
-        //4.实现缓存重建
-        String lockkey = lockPrefix + id;
-        //4.1.获取互斥锁
-        boolean flag = tryLock(lockkey);
-        List<R> rList = null;
-        try {
-            //4.2.判断是否获取成功
-            if (!flag){
-                //4.3.失败，则休眠并重试
-                //暂停几毫秒钟线程
-                Thread.sleep(50);
-                return queryWithMutexForArr(keyPrefix,id,lockPrefix,type,dbFallBack,time,unit);
+        //2.一次MGET查询redis
+        long start = System.nanoTime();
+        List<byte[]> raws = multiGetRaw(keys);
+        m.redis(start);
+        for (int i = 0; i < idList.size(); i++) {
+            byte[] raw = raws == null ? null : raws.get(i);
+            if (isPresent(raw)){
+                R r;
+                try {
+                    r = decode(raw, type, m);
+                } catch (CacheDecodeException e) {
+                    //无法解码按未命中处理
+                    undecodable(keys.get(i), e);
+                    m.miss();
+                    missing.add(idList.get(i));
+                    continue;
+                }
+                m.hit();
+                result.put(idList.get(i), r);
+                nearPut(near, keys.get(i), r, raw, ttlMillis);
+            } else if (raw != null){
+                //空值标记
+                m.nullHit();
+                nearPut(near, keys.get(i), NearCache.NULL_VALUE, null, ttlMillis);
+            } else {
+                m.miss();
+                missing.add(idList.get(i));
             }
+        }
+        return missing;
+    }
+
+    /**
+     * 合并查询数据库，查到的数据和不存在的空值通过一次管道写回redis，查到的数据放入result
+     */
+    private <R,ID> void loadAll(String keyPrefix, List<ID> missing, Function<Collection<ID>,Map<ID,R>> dbFallBack,
+                                Long time, TimeUnit unit, Map<ID,R> result, CacheMetrics m){
+        NearCache near = nearCacheManager.cacheFor(keyPrefix);
+        long ttlMillis = unit.toMillis(time);
+        //1.一次数据库查询
+        Map<ID,R> loaded = loadFromDb(keyPrefix, dbFallBack, missing, m, false);
 
-            //双端检锁
-            //1.从redis查询商铺信息缓存（根据商铺id）
-            json = stringRedisTemplate.opsForValue().get(key);
+        //2.一次管道写回数据和空值
+        CacheCodec codec = codecOf(keyPrefix);
+        Map<String,byte[]> writes = new LinkedHashMap<>();
+        Map<String,String[]> tags = new HashMap<>();
+        for (ID id : missing) {
+            R r = loaded == null ? null : loaded.get(id);
+            writes.put(keyPrefix + id, r == null ? NULL_MARKER : codec.encode(r));
+            putTags(tags, keyPrefix + id, r);
+        }
+        pipelineSet(writes, tags, ttlMillis);
 
-            //2.判断是否存在缓存
-            if (StrUtil.isNotBlank(json)){
-                //3.存在，返回商铺信息
-                return JSONUtil.toList(json, type);
+        //3.填充结果和本地缓存
+        for (ID id : missing) {
+            String key = keyPrefix + id;
+            R r = loaded == null ? null : loaded.get(id);
+            if (r == null){
+                nearPut(near, key, NearCache.NULL_VALUE, null, ttlMillis);
+            } else {
+                result.put(id, r);
+                nearPut(near, key, r, writes.get(key), ttlMillis);
             }
-            //判断返回的是否是空值
-            if (json!=null){
-                //返回错误信息
-                return null;
-            }
-
-            //4.4.成功，根据id查询数据库
-            rList = dbFallBack.apply(id);
+        }
+    }
 
-            //5.判断数据库中是否存在商铺信息
-            if (rList==null){
-                //将空值写入redis
-                set(key,"",time,unit);
-                //6.不存在，返回错误信息
-                return null;
+    /**
+     * 通过一次管道批量写入redis（同时登记标签），并合并广播本地缓存失效
+     * @param writes key到编码后字节的映射
+     * @param tags key到标签的映射（见putTags()），没有标签的key不在其中
+     * @param ttlMillis 过期时间（毫秒，每个key单独加抖动），小于等于0表示不过期（逻辑过期数据）
+     */
+    private void pipelineSet(Map<String,byte[]> writes, Map<String,String[]> tags, long ttlMillis){
+        if (writes.isEmpty()){
+            return;
+        }
+        CachePolicy packed = packedStore.policyOf(writes.keySet().iterator().next());
+        RedisCallback<Object> action = connection -> {
+            for (Map.Entry<String,byte[]> entry : writes.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                long ttl = ttlMillis > 0 ? ttlOf(entry.getKey(), ttlMillis) : -1L;
+                if (packed != null){
+                    packedStore.write(connection, packed, entry.getKey(), entry.getValue(), ttl);
+                } else if (ttl > 0){
+                    connection.pSetEx(key, ttl, entry.getValue());
+                } else {
+                    connection.set(key, entry.getValue());
+                }
+                String[] keyTags = tags.get(entry.getKey());
+                if (keyTags != null){
+                    cacheTagManager.tag(connection, key, ttl, keyTags);
+                }
             }
+            return null;
+        };
+        Runnable pipeline = tags.isEmpty() ? () -> cacheRedisTemplate.executePipelined(action)
+                : () -> cacheTagManager.executePipelined(action);
+        if (packed != null){
+            //打包存储通过EVALSHA写入，脚本丢失时整体重试
+            packedStore.withScript(pipeline);
+        } else {
+            pipeline.run();
+        }
+        nearCacheManager.invalidate(writes.keySet());
+    }
 
-            //7.存在，写入redis
-            set(key,rList,time,unit);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            //8.释放互斥锁
-            unlock(lockkey);
+    /**
+     * 按前缀策略的tagResolver解析数据的标签，有标签时放入tags
+     */
+    private void putTags(Map<String,String[]> tags, String key, Object value){
+        String[] resolved = tagsOf(key, value);
+        if (resolved.length > 0){
+            tags.put(key, resolved);
+        }
+    }
+
+    /**
+     * 按前缀策略的tagResolver解析数据的标签
+     * @param key 缓存key
+     * @param value 数据，为null时没有标签（空值标记）
+     * @return 标签，没有配置tagResolver时为空数组
+     */
+    private String[] tagsOf(String key, Object value){
+        Function<Object, String[]> resolver = cachePolicyRegistry.resolve(key).getTagResolver();
+        if (resolver == null || value == null){
+            return NO_TAGS;
         }
+        String[] tags = resolver.apply(value);
+        return tags == null ? NO_TAGS : tags;
+    }
 
-        //9.返回商铺信息
-        return rList;
+    /**
+     * 显式登记的标签与tagResolver解析的标签合并（去重）
+     */
+    private String[] tagsOf(String key, Object value, String... tags){
+        String[] resolved = tagsOf(key, value);
+        if (resolved.length == 0){
+            return tags;
+        }
+        Set<String> merged = new LinkedHashSet<>(Arrays.asList(tags));
+        merged.addAll(Arrays.asList(resolved));
+        return merged.toArray(new String[0]);
     }
 
     /**
@@ -486,6 +1937,58 @@ public class CacheClient {
         return BooleanUtil.isTrue(flag);
     }
 
+    /**
+     * 按缓存key所属前缀配置的锁类型获取重建锁，并统计获取耗时和成功/失败次数
+     * @param key 缓存key（用于选择前缀策略）
+     * @param lockkey 锁的名字
+     * @param m 统计
+     * @return 锁凭证，获取失败返回null；释放只能通过凭证，不会释放不属于自己的锁
+     */
+    private RebuildLease tryLock(String key, String lockkey, CacheMetrics m) throws InterruptedException {
+        CachePolicy policy = cachePolicyRegistry.resolve(key);
+        RebuildLock lock = policy.getRebuildLock() == RebuildLock.Type.LEASE ? luaLeaseLock : redissonRebuildLock;
+        long start = System.nanoTime();
+        RebuildLease lease = lock.tryLock(lockkey, policy.getLockLeaseMillis());
+        m.lockWait(start);
+        m.lock(lease != null);
+        return lease;
+    }
+
+    /**
+     * 批量获取重建锁（所有获取命令一次发出，约一次往返，见RebuildLock.tryLockAllAsync()），统计与tryLock()相同
+     * @param keyPrefix 缓存key前缀（用于选择前缀策略）
+     * @param lockkeys 锁的名字
+     * @param m 统计
+     * @return 与lockkeys顺序一致的锁凭证，获取失败的位置为null
+     */
+    private List<RebuildLease> tryLockAll(String keyPrefix, List<String> lockkeys, CacheMetrics m){
+        CachePolicy policy = cachePolicyRegistry.resolve(keyPrefix);
+        RebuildLock lock = policy.getRebuildLock() == RebuildLock.Type.LEASE ? luaLeaseLock : redissonRebuildLock;
+        long start = System.nanoTime();
+        List<RebuildLease> leases = AsyncSupport.join(lock.tryLockAllAsync(lockkeys, policy.getLockLeaseMillis()));
+        m.lockWait(start);
+        for (RebuildLease lease : leases) {
+            m.lock(lease != null);
+        }
+        return leases;
+    }
+
+    /**
+     * 异步获取重建锁，统计与tryLock()相同
+     * @return 锁凭证，获取失败为null
+     */
+    private CompletableFuture<RebuildLease> tryLockAsync(String key, String lockkey, CacheMetrics m){
+        CachePolicy policy = cachePolicyRegistry.resolve(key);
+        RebuildLock lock = policy.getRebuildLock() == RebuildLock.Type.LEASE ? luaLeaseLock : redissonRebuildLock;
+        long start = System.nanoTime();
+        return lock.tryLockAsync(lockkey, policy.getLockLeaseMillis()).whenComplete((lease, e) -> {
+            if (e == null){
+                m.lockWait(start);
+                m.lock(lease != null);
+            }
+        });
+    }
+
     /**
      * 分布式互斥锁释放锁
      * @param key 锁的名字
@@ -497,7 +2000,7 @@ public class CacheClient {
     }
 
     /**
-     * 通过查询数据库预热redis
+     * 通过查询数据库预热redis（单个id；大批量预热使用CacheWarmer）
      * @param keyPrefix key缓存前缀
      * @param id
      * @param expireSeconds 逻辑过期时间
@@ -513,4 +2016,40 @@ public class CacheClient {
         setWithLogicalExpire(keyPrefix+id,r,expireSeconds,TimeUnit.SECONDS);
     }
 
+    /**
+     * 通过批量查询数据库预热redis，并把逻辑过期时间均匀分散到一个时间窗口内
+     * 第i个id的逻辑过期时间为 expireSeconds + spreadSeconds * i / n，避免预热的key在同一时刻过期
+     * @param keyPrefix key缓存前缀
+     * @param ids id集合
+     * @param expireSeconds 逻辑过期时间
+     * @param spreadSeconds 过期时间分散的窗口
+     * @param dbFallBack 数据库批量查询逻辑
+     * @param <R>
+     * @param <ID>
+     */
+    public <R,ID> void saveAll2Redis(String keyPrefix, Collection<ID> ids, Long expireSeconds, Long spreadSeconds,
+                                     Function<Collection<ID>,Map<ID,R>> dbFallBack){
+        //1.一次从数据库获取信息
+        Map<ID,R> loaded = dbFallBack.apply(ids);
+        if (loaded == null || loaded.isEmpty()){
+            return;
+        }
+
+        //2.逻辑过期时间在窗口内均匀分散，封装后通过管道写入redis
+        CacheCodec codec = codecOf(keyPrefix);
+        long now = System.currentTimeMillis();
+        long expireMillis = TimeUnit.SECONDS.toMillis(expireSeconds);
+        long spreadMillis = TimeUnit.SECONDS.toMillis(spreadSeconds);
+        int n = loaded.size();
+        int i = 0;
+        Map<String,byte[]> writes = new LinkedHashMap<>();
+        Map<String,String[]> tags = new HashMap<>();
+        for (Map.Entry<ID,R> entry : loaded.entrySet()) {
+            long expireAtMillis = now + expireMillis + spreadMillis * i++ / n;
+            writes.put(keyPrefix + entry.getKey(), RedisDataEnvelope.encode(entry.getValue(), expireAtMillis, codec));
+            putTags(tags, keyPrefix + entry.getKey(), entry.getValue());
+        }
+        pipelineSet(writes, tags, -1L);
+    }
+
 }
@@ -0,0 +1,183 @@
+package com.wzy.codedatabase.redis.cache;
+
+import com.wzy.codedatabase.redis.cache.codec.CacheCodec;
+import com.wzy.codedatabase.redis.cache.codec.Compression;
+import com.wzy.codedatabase.redis.cache.limit.DbLimiter;
+import com.wzy.codedatabase.redis.cache.lock.RebuildLock;
+import com.wzy.codedatabase.redis.cache.codec.JsonCacheCodec;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.function.Function;
+
+/**
+ * 按key前缀配置的缓存策略
+ * 通过CachePolicyRegistry按前缀注册，CacheClient在读写时按key最长前缀匹配取得对应策略，未注册的前缀使用默认策略。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 10:00
+ */
+@Data
+@Accessors(chain = true)
+public class CachePolicy {
+
+    /**
+     * 策略对应的key前缀（注册时填充）
+     */
+    private String keyPrefix = "";
+
+    /**
+     * 是否开启本地一级缓存（L1）
+     */
+    private boolean nearCacheEnabled = false;
+
+    /**
+     * 本地缓存最大条目数
+     */
+    private int nearCacheMaxEntries = 10_000;
+
+    /**
+     * 本地缓存最大总权重（按缓存值序列化后的字符数估算）
+     */
+    private long nearCacheMaxWeight = 16L * 1024 * 1024;
+
+    /**
+     * 本地缓存过期时间（毫秒），实际过期时间不会超过redis中的过期时间
+     */
+    private long nearCacheTtlMillis = 5_000L;
+
+    /**
+     * 是否开启热点key探测：探测到的热点key放入本地短时缓存，与本地缓存一样由多个调用方共享同一对象，调用方不应修改
+     */
+    private boolean hotKeyEnabled = false;
+
+    /**
+     * 缓存穿透防护使用的布隆过滤器名称，为null时使用缓存空值的方式；
+     * 配置后布隆过滤器判定一定不存在的id直接返回null，不访问redis和数据库
+     */
+    private String bloomFilterName;
+
+    /**
+     * 缓存值的编解码器，默认json；读取时按数据的格式标记解码，切换编码后旧数据仍可读取
+     */
+    private CacheCodec codec = JsonCacheCodec.INSTANCE;
+
+    /**
+     * 该前缀同时执行的缓存重建任务数上限，小于等于0表示只受重建线程数限制
+     */
+    private int rebuildConcurrency = 0;
+
+    /**
+     * 读取策略，CacheClient.query()按此分派
+     */
+    private CacheStrategy strategy = CacheStrategy.MUTEX;
+
+    /**
+     * 概率提前刷新策略的系数beta，大于1更倾向于提前刷新，小于1更倾向于接近过期时才刷新
+     */
+    private double earlyRefreshBeta = 1.0D;
+
+    /**
+     * 过期时间抖动方式，同时作用于真实过期时间和逻辑过期时间
+     */
+    private TtlJitter.Mode ttlJitterMode = TtlJitter.Mode.NONE;
+
+    /**
+     * 最大抖动占过期时间的比例
+     */
+    private double ttlJitterRatio = 0.1D;
+
+    /**
+     * 最大抖动毫秒数，小于等于0表示只按比例限制
+     */
+    private long ttlJitterMaxMillis = 0L;
+
+    /**
+     * 缓存值压缩算法，NONE表示不压缩；未压缩的旧数据始终可以读取
+     */
+    private Compression compression = Compression.NONE;
+
+    /**
+     * 编码后不小于该字节数才压缩
+     */
+    private int compressionThreshold = 4096;
+
+    /**
+     * 缓存重建锁的类型，默认Redisson；LEASE为单次往返的租约锁
+     */
+    private RebuildLock.Type rebuildLock = RebuildLock.Type.REDISSON;
+
+    /**
+     * 缓存重建锁的租约时间（毫秒），应大于重建耗时
+     */
+    private long lockLeaseMillis = 10_000L;
+
+    /**
+     * 是否开启查询数据库（dbFallBack）的自适应并发限制
+     */
+    private boolean dbLimitEnabled = false;
+
+    /**
+     * 数据库并发限制的初始值、最小值和最大值
+     */
+    private int dbLimitInitial = 20;
+    private int dbLimitMin = 2;
+    private int dbLimitMax = 200;
+
+    /**
+     * 查询耗时超过基准耗时（近似无排队时的耗时）的该倍数时认为数据库已过载，减小并发上限
+     */
+    private double dbLimitLatencyTolerance = 2.0D;
+
+    /**
+     * 达到数据库并发上限时的处理方式
+     */
+    private DbLimiter.Overload dbLimitOverload = DbLimiter.Overload.SERVE_STALE;
+
+    /**
+     * 等待数据库并发许可的最长时间（毫秒）
+     */
+    private long dbLimitWaitMillis = 100L;
+
+    /**
+     * 提前刷新（CacheClient.registerRefreshAhead()注册后生效）：在逻辑过期前该毫秒数到其一半之间刷新
+     */
+    private long refreshAheadMillis = 5_000L;
+
+    /**
+     * 提前刷新：一个过期周期内访问次数不足该值的key视为冷key，不再刷新
+     */
+    private int refreshAheadMinAccesses = 2;
+
+    /**
+     * 按缓存数据解析标签（见CacheTagManager），为null表示不按数据登记标签。
+     * 配置后所有写入（set、查询时从数据库重建、批量重建和预热）都会重新登记这些标签并延长索引集合的过期时间；
+     * 只通过set(..., tags)显式登记的标签在重建后不会保留，需要按标签失效的前缀应配置该项。打包存储的前缀不支持标签
+     */
+    private Function<Object, String[]> tagResolver;
+
+    /**
+     * 是否开启小对象打包存储：条目按id散列存入packedBuckets个hash，而不是每个条目一个字符串key（见PackedStore）
+     */
+    private boolean packed = false;
+
+    /**
+     * 打包存储的预计条目数，开启packed时必须配置（注册时校验），hash个数按此计算
+     */
+    private long packedExpectedEntries = 0L;
+
+    /**
+     * 打包存储每个hash的目标条目数，应低于redis的hash-max-listpack-entries（7.0起默认128，以前的hash-max-ziplist-entries默认512），
+     * 为散列不均留出余量
+     */
+    private int packedEntriesPerBucket = 100;
+
+    /**
+     * 打包存储的hash个数 = 预计条目数 / 每个hash的目标条目数（向上取整）；修改后条目的散列位置改变，原有打包数据失效
+     * @return hash个数
+     */
+    public int packedBucketCount(){
+        long perBucket = Math.max(1, packedEntriesPerBucket);
+        return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, (packedExpectedEntries + perBucket - 1) / perBucket));
+    }
+}
@@ -0,0 +1,116 @@
+package com.wzy.codedatabase.redis.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存策略注册表
+ * 按key前缀保存CachePolicy，查询时先精确匹配前缀，再按最长前缀匹配完整的key。
+ * 最长前缀匹配通过前缀字典树完成，耗时只与key长度有关，与注册的前缀个数无关（每次读写会多次解析策略）；
+ * 注册时重建字典树并整体替换，查询无锁。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 10:00
+ */
+@Component
+public class CachePolicyRegistry {
+
+    /**
+     * 默认策略：不开启任何附加能力，行为与原有CacheClient一致
+     */
+    private final CachePolicy defaultPolicy = new CachePolicy();
+
+    private final Map<String, CachePolicy> policies = new ConcurrentHashMap<>();
+
+    /**
+     * 已注册前缀的字典树，只在注册时整体替换
+     */
+    private volatile PrefixNode trie = new PrefixNode();
+
+    /**
+     * 注册某个key前缀的缓存策略
+     * @param keyPrefix 缓存key前缀
+     * @param policy 策略
+     */
+    public synchronized void register(String keyPrefix, CachePolicy policy){
+        if (policy.isPacked() && policy.getTagResolver() != null){
+            throw new IllegalArgumentException("打包存储的前缀不支持标签：" + keyPrefix);
+        }
+        if (policy.isPacked() && policy.getPackedExpectedEntries() <= 0){
+            throw new IllegalArgumentException("打包存储须配置预计条目数packedExpectedEntries：" + keyPrefix);
+        }
+        policy.setKeyPrefix(keyPrefix);
+        policies.put(keyPrefix, policy);
+        PrefixNode root = new PrefixNode();
+        for (Map.Entry<String, CachePolicy> entry : policies.entrySet()) {
+            root.insert(entry.getKey(), entry.getValue());
+        }
+        trie = root;
+    }
+
+    /**
+     * 获取key前缀或完整key对应的策略
+     * @param keyOrPrefix key前缀或完整的key
+     * @return 策略，未注册时返回默认策略
+     */
+    public CachePolicy resolve(String keyOrPrefix){
+        //1.前缀精确匹配（调用方通常传入的就是keyPrefix）
+        CachePolicy policy = policies.get(keyOrPrefix);
+        if (policy != null){
+            return policy;
+        }
+        //2.沿字典树按最长前缀匹配完整的key
+        CachePolicy best = trie.longestMatch(keyOrPrefix);
+        return best == null ? defaultPolicy : best;
+    }
+
+    /**
+     * @return 所有已注册的策略（只读）
+     */
+    public Map<String, CachePolicy> policies(){
+        return Collections.unmodifiableMap(policies);
+    }
+
+    /**
+     * 前缀字典树的节点，构建完成后只读
+     */
+    private static final class PrefixNode {
+
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+
+        /**
+         * 以该节点结尾的前缀的策略，没有前缀在此结尾时为null
+         */
+        private CachePolicy policy;
+
+        void insert(String prefix, CachePolicy policy){
+            PrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new PrefixNode());
+            }
+            node.policy = policy;
+        }
+
+        /**
+         * @return key的最长已注册前缀的策略，没有匹配时返回null
+         */
+        CachePolicy longestMatch(String key){
+            PrefixNode node = this;
+            CachePolicy best = node.policy;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.get(key.charAt(i));
+                if (node == null){
+                    break;
+                }
+                if (node.policy != null){
+                    best = node.policy;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.wzy.codedatabase.redis.cache;
+
+import com.wzy.codedatabase.redis.cache.codec.CacheCodecs;
+import com.wzy.codedatabase.redis.cache.codec.CacheDecodeException;
+import com.wzy.codedatabase.redis.cache.codec.CompressingCacheCodec;
+import com.wzy.codedatabase.redis.cache.limit.DbLimiter;
+import com.wzy.codedatabase.redis.cache.metrics.CacheMetrics;
+import com.wzy.codedatabase.redis.cache.metrics.CompressionStats;
+import com.wzy.codedatabase.redis.cache.near.NearCache;
+import com.wzy.codedatabase.redis.cache.near.NearCacheManager;
+import com.wzy.codedatabase.redis.cache.tag.CacheTagManager;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * 缓存区域：一个key前缀的句柄，通过CacheClient.region()获取
+ * 前缀在创建时编码为utf-8字节，key直接写入精确长度的字节数组：数字id逐位写入，不经过中间字符串；
+ * 字符串id为ascii时逐字符写入，否则借助线程复用的编码缓冲区。redis命令直接使用byte[] key，不再经过key的序列化器。
+ * 本地一级缓存只在前缀开启时使用（此时才构造字符串key）；热点key探测依赖字符串key，不经过区域的读路径。
+ * 区域在创建时读取前缀的策略，修改策略（registerPolicy）应在获取区域之前。
+ * 前缀配置了tagResolver时，写入与标签登记通过同一个管道完成（与CacheClient的写入一致）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 23:00
+ */
+public final class CacheRegion {
+
+    /**
+     * 空值标记（与CacheClient一致）
+     */
+    private static final byte[] NULL_MARKER = new byte[0];
+
+    private static final String[] NO_TAGS = new String[0];
+
+    private static final ThreadLocal<CharsetEncoder> ENCODERS = ThreadLocal.withInitial(StandardCharsets.UTF_8::newEncoder);
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(256));
+
+    private final String keyPrefix;
+    private final byte[] prefix;
+    private final CachePolicy policy;
+    private final RedisTemplate<String, byte[]> template;
+    private final NearCacheManager nearCacheManager;
+    private final NearCache near;
+    private final CacheMetrics metrics;
+    private final CompressionStats compressionStats;
+    /**
+     * 查询数据库的并发限制，前缀未开启时为null
+     */
+    private final DbLimiter dbLimiter;
+    private final CacheTagManager cacheTagManager;
+
+    CacheRegion(String keyPrefix, CachePolicy policy, RedisTemplate<String, byte[]> template,
+                NearCacheManager nearCacheManager, CacheMetrics metrics, CompressionStats compressionStats,
+                DbLimiter dbLimiter, CacheTagManager cacheTagManager) {
+        this.keyPrefix = keyPrefix;
+        this.prefix = keyPrefix.getBytes(StandardCharsets.UTF_8);
+        this.policy = policy;
+        this.template = template;
+        this.nearCacheManager = nearCacheManager;
+        this.near = nearCacheManager.cacheFor(keyPrefix);
+        this.metrics = metrics;
+        this.compressionStats = compressionStats;
+        this.dbLimiter = dbLimiter;
+        this.cacheTagManager = cacheTagManager;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * 数字id的key：前缀字节 + id的十进制字节，只分配结果数组
+     * @param id
+     * @return key的字节
+     */
+    public byte[] key(long id){
+        if (id == Long.MIN_VALUE){
+            return key(Long.toString(id));
+        }
+        int length = stringSize(id);
+        byte[] key = new byte[prefix.length + length];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        writeLong(id, key, key.length);
+        return key;
+    }
+
+    /**
+     * 任意id的key：整数类型走数字路径，字符串为ascii时逐字符写入，否则通过线程复用的缓冲区编码
+     * @param id
+     * @return key的字节
+     */
+    public byte[] key(Object id){
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte){
+            return key(((Number) id).longValue());
+        }
+        String s = id instanceof String ? (String) id : String.valueOf(id);
+        int n = s.length();
+        byte[] key = new byte[prefix.length + n];
+        System.arraycopy(prefix, 0, key, 0, prefix.length);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80){
+                return encodeUtf8(s);
+            }
+            key[prefix.length + i] = (byte) c;
+        }
+        return key;
+    }
+
+    /**
+     * 读取原始字节
+     * @param id
+     * @return 字节；不存在返回null；空值标记返回空数组
+     */
+    public byte[] getRaw(long id){
+        byte[] key = key(id);
+        long start = System.nanoTime();
+        byte[] raw = template.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+        metrics.redis(start);
+        count(raw);
+        return raw;
+    }
+
+    /**
+     * 读取并解码（先查本地一级缓存）
+     * @param id
+     * @param type 数据类型
+     * @param <R> 数据类型参数
+     * @return 数据，不存在或空值返回null
+     */
+    public <R> R get(long id, Class<R> type){
+        Object local = nearGet(id);
+        if (local != null){
+            return local == NearCache.NULL_VALUE ? null : type.cast(local);
+        }
+        byte[] raw = getRaw(id);
+        return decodeAndCache(id, raw, type);
+    }
+
+    /**
+     * 批量读取：一次MGET，key全部为byte[]
+     * @param ids id数组
+     * @param type 数据类型
+     * @param <R> 数据类型参数
+     * @return id到数据的映射，不存在和空值的id不在结果中
+     */
+    public <R> Map<Long,R> getAll(long[] ids, Class<R> type){
+        Map<Long,R> result = new HashMap<>(ids.length * 2);
+        byte[][] keys = new byte[ids.length][];
+        for (int i = 0; i < ids.length; i++) {
+            keys[i] = key(ids[i]);
+        }
+        long start = System.nanoTime();
+        List<byte[]> raws = template.execute((RedisCallback<List<byte[]>>) connection -> connection.mGet(keys));
+        metrics.redis(start);
+        for (int i = 0; i < ids.length; i++) {
+            byte[] raw = raws == null ? null : raws.get(i);
+            count(raw);
+            R r = decodeAndCache(ids[i], raw, type);
+            if (r != null){
+                result.put(ids[i], r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 写入数据并设置过期时间（按前缀策略编码、压缩、加抖动，按tagResolver登记标签），使所有节点的本地缓存失效
+     * @param id
+     * @param value 数据，null写入空值标记
+     * @param ttlMillis 过期时间（毫秒）
+     */
+    public void set(long id, Object value, long ttlMillis){
+        byte[] key = key(id);
+        byte[] raw = value == null ? NULL_MARKER
+                : CompressingCacheCodec.wrap(policy, compressionStats).encode(value);
+        long ttl = TtlJitter.apply(policy, key, ttlMillis);
+        String[] tags = tagsOf(value);
+        if (tags.length > 0){
+            //写入和标签登记通过同一个管道
+            cacheTagManager.executePipelined(connection -> {
+                connection.pSetEx(key, ttl, raw);
+                cacheTagManager.tag(connection, key, ttl, tags);
+                return null;
+            });
+        } else {
+            template.execute((RedisCallback<Object>) connection -> connection.pSetEx(key, ttl, raw));
+        }
+        nearCacheManager.invalidate(keyPrefix + id);
+    }
+
+    /**
+     * 按前缀的tagResolver解析数据的标签，未配置或空值时为空数组
+     */
+    private String[] tagsOf(Object value){
+        Function<Object, String[]> resolver = policy.getTagResolver();
+        if (resolver == null || value == null){
+            return NO_TAGS;
+        }
+        String[] tags = resolver.apply(value);
+        return tags == null ? NO_TAGS : tags;
+    }
+
+    /**
+     * 删除，并使所有节点的本地缓存失效
+     * @param id
+     */
+    public void delete(long id){
+        byte[] key = key(id);
+        template.execute((RedisCallback<Long>) connection -> connection.del(key));
+        nearCacheManager.invalidate(keyPrefix + id);
+    }
+
+    /**
+     * 读数据：从缓存和数据库（缓存穿透策略，缓存空值）
+     * @param id
+     * @param type 数据类型
+     * @param dbFallBack 数据库查询逻辑
+     * @param ttlMillis 过期时间（毫秒）
+     * @param <R> 数据类型参数
+     * @return 数据
+     */
+    public <R> R queryWithPassThrough(long id, Class<R> type, LongFunction<R> dbFallBack, long ttlMillis){
+        //1.本地缓存
+        Object local = nearGet(id);
+        if (local != null){
+            return local == NearCache.NULL_VALUE ? null : type.cast(local);
+        }
+        //2.redis
+        byte[] raw = getRaw(id);
+        if (raw != null){
+            R cached = decodeAndCache(id, raw, type);
+            //空值标记或解码成功直接返回，无法解码按未命中处理
+            if (cached != null || raw.length == 0){
+                return cached;
+            }
+        }
+        //3.数据库，写回数据或空值
+        long start = dbLimiter == null ? System.nanoTime() : dbLimiter.acquire(false);
+        R r;
+        boolean success = false;
+        try {
+            r = dbFallBack.apply(id);
+            success = true;
+        } finally {
+            metrics.db(start);
+            if (dbLimiter != null){
+                dbLimiter.release(start, success);
+            }
+        }
+        set(id, r, ttlMillis);
+        if (near != null){
+            near.put(keyPrefix + id, r == null ? NearCache.NULL_VALUE : r, 1, ttlMillis);
+        }
+        return r;
+    }
+
+    private Object nearGet(long id){
+        if (near == null){
+            return null;
+        }
+        Object local = near.get(keyPrefix + id);
+        if (local != null){
+            metrics.localHit();
+        }
+        return local;
+    }
+
+    /**
+     * 解码并放入本地缓存
+     * @return 数据，不存在、空值或无法解码返回null
+     */
+    private <R> R decodeAndCache(long id, byte[] raw, Class<R> type){
+        if (raw == null){
+            return null;
+        }
+        if (raw.length == 0){
+            if (near != null){
+                near.put(keyPrefix + id, NearCache.NULL_VALUE, 1, Long.MAX_VALUE);
+            }
+            return null;
+        }
+        long start = System.nanoTime();
+        R r;
+        try {
+            r = CacheCodecs.decode(raw, type);
+        } catch (CacheDecodeException e) {
+            //无法解码（类结构不兼容、类型不在白名单中等）按未命中处理
+            return null;
+        }
+        metrics.decode(start);
+        if (near != null){
+            near.put(keyPrefix + id, r, raw.length, Long.MAX_VALUE);
+        }
+        return r;
+    }
+
+    private void count(byte[] raw){
+        if (raw == null){
+            metrics.miss();
+        } else if (raw.length == 0){
+            metrics.nullHit();
+        } else {
+            metrics.hit();
+        }
+    }
+
+    /**
+     * 非ascii字符串id：编码到线程复用的缓冲区，再复制为精确长度的key
+     */
+    private byte[] encodeUtf8(String id){
+        CharsetEncoder encoder = ENCODERS.get();
+        ByteBuffer buffer = BUFFERS.get();
+        int max = prefix.length + (int) Math.ceil(id.length() * (double) encoder.maxBytesPerChar());
+        if (buffer.capacity() < max){
+            buffer = ByteBuffer.allocate(max);
+            BUFFERS.set(buffer);
+        }
+        buffer.clear();
+        buffer.put(prefix);
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(id), buffer, true);
+        if (result.isError()){
+            return (keyPrefix + id).getBytes(StandardCharsets.UTF_8);
+        }
+        encoder.flush(buffer);
+        byte[] key = new byte[buffer.position()];
+        System.arraycopy(buffer.array(), 0, key, 0, key.length);
+        return key;
+    }
+
+    /**
+     * 十进制位数（含负号）
+     */
+    static int stringSize(long x){
+        int sign = 0;
+        if (x < 0){
+            sign = 1;
+            x = -x;
+        }
+        long p = 10;
+        for (int i = 1; i < 19; i++) {
+            if (x < p){
+                return i + sign;
+            }
+            p = 10 * p;
+        }
+        return 19 + sign;
+    }
+
+    /**
+     * 把x的十进制字节从end往前写入buf
+     */
+    static void writeLong(long x, byte[] buf, int end){
+        boolean negative = x < 0;
+        if (negative){
+            x = -x;
+        }
+        int pos = end;
+        do {
+            buf[--pos] = (byte) ('0' + (int) (x % 10));
+            x /= 10;
+        } while (x != 0);
+        if (negative){
+            buf[--pos] = '-';
+        }
+    }
+}
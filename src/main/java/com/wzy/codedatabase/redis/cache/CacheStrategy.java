@@ -0,0 +1,26 @@
+package com.wzy.codedatabase.redis.cache;
+
+/**
+ * 缓存读取策略，通过CachePolicy按前缀选择，由CacheClient.query()分派
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 16:00
+ */
+public enum CacheStrategy {
+    /**
+     * 缓存空值，解决缓存穿透（queryWithPassThrough）
+     */
+    PASS_THROUGH,
+    /**
+     * 互斥锁 + 缓存空值，解决缓存击穿和穿透（queryWithMutex）
+     */
+    MUTEX,
+    /**
+     * 逻辑过期，过期后返回旧数据并异步重建（queryWithLogicalExpire）
+     */
+    LOGICAL_EXPIRE,
+    /**
+     * 概率提前刷新（XFetch），在过期前由单个读请求按概率提前重建（queryWithEarlyRefresh）
+     */
+    EARLY_REFRESH
+}
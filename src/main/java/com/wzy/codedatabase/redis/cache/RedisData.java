@@ -7,6 +7,7 @@ import java.time.LocalDateTime;
 /**
  * Redis存储的数据结构
  * 带逻辑过期时间的Redis缓存
+ * 现在写入使用紧凑格式RedisDataEnvelope，该结构仅用于读取迁移前写入的旧json数据
  */
 @Data
 public class RedisData {
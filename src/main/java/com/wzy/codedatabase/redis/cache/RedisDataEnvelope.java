@@ -0,0 +1,212 @@
+package com.wzy.codedatabase.redis.cache;
+
+import com.wzy.codedatabase.redis.cache.codec.CacheCodec;
+import com.wzy.codedatabase.redis.cache.codec.CacheCodecs;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 带逻辑过期时间的紧凑存储格式（RedisData的二进制封装）
+ * 格式：1字节标记(0x1F) + 1字节版本 + 1字节数据编码标记 + 8字节逻辑过期时间(epoch毫秒，大端)
+ *      + 4字节最近一次重建耗时(毫秒，大端，版本2起) + 数据编码后的字节
+ * 判断是否过期只读取固定头部，数据部分在真正需要时才解码，且只解码一次。
+ * 读取时兼容旧的json格式RedisData（整体解析一次）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 14:00
+ */
+public final class RedisDataEnvelope {
+
+    /**
+     * 封装格式标记，与CacheCodec的格式标记共用首字节取值空间（保留值）
+     */
+    public static final byte MAGIC = 0x1F;
+
+    public static final byte VERSION = 2;
+
+    /**
+     * 版本1（不含重建耗时）的头部长度
+     */
+    private static final int HEADER_LENGTH_V1 = 11;
+
+    public static final int HEADER_LENGTH = 15;
+
+    private final byte[] raw;
+    private final int headerLength;
+    private final long expireAtMillis;
+    private final int rebuildCostMillis;
+
+    /**
+     * 旧格式解析得到的RedisData，新格式为null
+     */
+    private final RedisData legacy;
+
+    private boolean decoded;
+    private Object data;
+
+    private RedisDataEnvelope(byte[] raw, int headerLength, long expireAtMillis, int rebuildCostMillis, RedisData legacy) {
+        this.raw = raw;
+        this.headerLength = headerLength;
+        this.expireAtMillis = expireAtMillis;
+        this.rebuildCostMillis = rebuildCostMillis;
+        this.legacy = legacy;
+    }
+
+    /**
+     * 编码
+     * @param data 数据，可以为null
+     * @param expireAtMillis 逻辑过期时间（epoch毫秒）
+     * @param codec 数据的编解码器
+     * @return 字节数组
+     */
+    public static byte[] encode(Object data, long expireAtMillis, CacheCodec codec){
+        return encode(data, expireAtMillis, 0, codec);
+    }
+
+    /**
+     * 编码（记录重建耗时，用于提前刷新策略）
+     * @param data 数据，可以为null
+     * @param expireAtMillis 逻辑过期时间（epoch毫秒）
+     * @param rebuildCostMillis 本次从数据库重建的耗时（毫秒）
+     * @param codec 数据的编解码器
+     * @return 字节数组
+     */
+    public static byte[] encode(Object data, long expireAtMillis, int rebuildCostMillis, CacheCodec codec){
+        byte[] payload = data == null ? new byte[0] : codec.encode(data);
+        byte[] bytes = new byte[HEADER_LENGTH + payload.length];
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        //数据编码标记取数据实际的格式（压缩编解码器在未达到阈值时写入的是内层编码）
+        bytes[2] = payload.length == 0 ? codec.tag() : CacheCodecs.forPayload(payload).tag();
+        for (int i = 0; i < 8; i++) {
+            bytes[3 + i] = (byte) (expireAtMillis >>> (56 - 8 * i));
+        }
+        for (int i = 0; i < 4; i++) {
+            bytes[11 + i] = (byte) (rebuildCostMillis >>> (24 - 8 * i));
+        }
+        System.arraycopy(payload, 0, bytes, HEADER_LENGTH, payload.length);
+        return bytes;
+    }
+
+    /**
+     * 读取（不解码数据部分）
+     * @param raw redis中的非空字节
+     * @return 封装对象
+     * @throws IllegalStateException 不是封装格式（例如通过set()写入的普通数据）
+     */
+    public static RedisDataEnvelope read(byte[] raw){
+        RedisDataEnvelope envelope = tryRead(raw);
+        if (envelope == null){
+            throw new IllegalStateException("不是逻辑过期格式的数据，请通过setWithLogicalExpire()/setWithEarlyRefresh()写入");
+        }
+        return envelope;
+    }
+
+    /**
+     * 读取（不解码数据部分），不是封装格式时返回null
+     * @param raw redis中的非空字节
+     * @return 封装对象，不是封装格式时为null
+     */
+    public static RedisDataEnvelope tryRead(byte[] raw){
+        if (raw.length >= HEADER_LENGTH_V1 && raw[0] == MAGIC){
+            int headerLength;
+            if (raw[1] == 1){
+                headerLength = HEADER_LENGTH_V1;
+            } else if (raw[1] == VERSION && raw.length >= HEADER_LENGTH){
+                headerLength = HEADER_LENGTH;
+            } else {
+                throw new IllegalStateException("不支持的逻辑过期数据版本：" + raw[1]);
+            }
+            long expireAt = 0;
+            for (int i = 0; i < 8; i++) {
+                expireAt = (expireAt << 8) | (raw[3 + i] & 0xFF);
+            }
+            int cost = 0;
+            for (int i = HEADER_LENGTH_V1; i < headerLength; i++) {
+                cost = (cost << 8) | (raw[i] & 0xFF);
+            }
+            return new RedisDataEnvelope(raw, headerLength, expireAt, cost, null);
+        }
+        //旧格式：整体解码，解码失败或没有过期时间说明是普通数据
+        RedisData redisData;
+        try {
+            redisData = CacheCodecs.decode(raw, RedisData.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (redisData == null || redisData.getExpireTime() == null){
+            return null;
+        }
+        long expireAt = redisData.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return new RedisDataEnvelope(raw, 0, expireAt, 0, redisData);
+    }
+
+    /**
+     * @return 逻辑过期时间（epoch毫秒）
+     */
+    public long getExpireAtMillis() {
+        return expireAtMillis;
+    }
+
+    /**
+     * @return 最近一次从数据库重建的耗时（毫秒），旧数据为0
+     */
+    public int getRebuildCostMillis() {
+        return rebuildCostMillis;
+    }
+
+    /**
+     * @return 距逻辑过期的剩余毫秒数，已过期时小于等于0
+     */
+    public long millisUntilExpire(){
+        return expireAtMillis - System.currentTimeMillis();
+    }
+
+    /**
+     * @return 是否已逻辑过期
+     */
+    public boolean isExpired(){
+        return millisUntilExpire() <= 0;
+    }
+
+    /**
+     * 解码数据（只解码一次）
+     * @param type 数据类型
+     * @param <T> 数据类型参数
+     * @return 数据
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getData(Class<T> type){
+        if (!decoded){
+            data = legacy != null ? CacheCodecs.convert(legacy.getData(), type) : decodePayload(type, false);
+            decoded = true;
+        }
+        return (T) data;
+    }
+
+    /**
+     * 解码列表数据（只解码一次）
+     * @param type 元素类型
+     * @param <T> 元素类型参数
+     * @return 列表
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getDataList(Class<T> type){
+        if (!decoded){
+            data = legacy != null ? CacheCodecs.convertList(legacy.getData(), type) : decodePayload(type, true);
+            decoded = true;
+        }
+        return (List<T>) data;
+    }
+
+    private Object decodePayload(Class<?> type, boolean list){
+        if (raw.length == headerLength){
+            return null;
+        }
+        CacheCodec codec = CacheCodecs.byTag(raw[2]);
+        byte[] payload = Arrays.copyOfRange(raw, headerLength, raw.length);
+        return list ? codec.decodeList(payload, type) : codec.decode(payload, type);
+    }
+}
@@ -0,0 +1,80 @@
+package com.wzy.codedatabase.redis.cache;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 过期时间抖动，防止批量写入的key在同一时刻过期（缓存雪崩）
+ * 抖动只会延长过期时间，取值范围[ttl, ttl + ttl * ratio]，并且不超过配置的最大抖动毫秒数。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 17:00
+ */
+public final class TtlJitter {
+
+    /**
+     * 抖动方式
+     */
+    public enum Mode {
+        /**
+         * 不抖动
+         */
+        NONE,
+        /**
+         * 随机抖动，同一个key每次写入的过期时间不同
+         */
+        RANDOM,
+        /**
+         * 按key哈希抖动，同一个key每次写入的偏移量固定，不同key均匀分散
+         */
+        HASH
+    }
+
+    private TtlJitter() {
+    }
+
+    /**
+     * 按策略对过期时间加抖动
+     * @param policy 缓存策略
+     * @param key 缓存key
+     * @param ttlMillis 原过期时间（毫秒）
+     * @return 加抖动后的过期时间（毫秒）
+     */
+    public static long apply(CachePolicy policy, String key, long ttlMillis){
+        return apply(policy, key, null, ttlMillis);
+    }
+
+    /**
+     * 按策略对过期时间加抖动（key为utf-8编码的字节，与字符串key的结果一致）
+     * @param policy 缓存策略
+     * @param key 缓存key的字节
+     * @param ttlMillis 原过期时间（毫秒）
+     * @return 加抖动后的过期时间（毫秒）
+     */
+    public static long apply(CachePolicy policy, byte[] key, long ttlMillis){
+        return apply(policy, null, key, ttlMillis);
+    }
+
+    private static long apply(CachePolicy policy, String key, byte[] keyBytes, long ttlMillis){
+        Mode mode = policy.getTtlJitterMode();
+        if (mode == null || mode == Mode.NONE || ttlMillis <= 0){
+            return ttlMillis;
+        }
+        long spread = (long) (ttlMillis * policy.getTtlJitterRatio());
+        if (policy.getTtlJitterMaxMillis() > 0){
+            spread = Math.min(spread, policy.getTtlJitterMaxMillis());
+        }
+        if (spread <= 0){
+            return ttlMillis;
+        }
+        long offset;
+        if (mode == Mode.RANDOM){
+            offset = ThreadLocalRandom.current().nextLong(spread + 1);
+        } else {
+            long hash = key != null ? MurmurHash.hash64(key) : MurmurHash.hash64(keyBytes);
+            offset = (hash & Long.MAX_VALUE) % (spread + 1);
+        }
+        return ttlMillis + offset;
+    }
+}
@@ -0,0 +1,131 @@
+package com.wzy.codedatabase.redis.cache.async;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceExceptionConverter;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 基于Lettuce异步命令的redis访问，供CacheClient的异步接口使用
+ * 使用连接工厂共享的原生连接（与RedisTemplate相同的连接和配置），命令发出后立即返回future，不占用调用线程。
+ * 返回的future在Lettuce的io线程中完成，调用方应把耗时的后续阶段切换到自己的执行器。
+ * 异常与RedisTemplate一致，转换为spring的DataAccessException。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 13:00
+ */
+@Component
+public class AsyncRedis {
+
+    private static final LettuceExceptionConverter EXCEPTION_CONVERTER = new LettuceExceptionConverter();
+
+    @Resource
+    private RedisConnectionFactory redisConnectionFactory;
+
+    private RedisConnection connection;
+
+    private RedisClusterAsyncCommands<byte[], byte[]> commands;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init(){
+        connection = redisConnectionFactory.getConnection();
+        Object nativeConnection = connection.getNativeConnection();
+        if (!(nativeConnection instanceof RedisClusterAsyncCommands)){
+            connection.close();
+            throw new IllegalStateException("缓存异步接口需要Lettuce连接，当前为：" + nativeConnection.getClass().getName());
+        }
+        commands = (RedisClusterAsyncCommands<byte[], byte[]>) nativeConnection;
+    }
+
+    @PreDestroy
+    public void close(){
+        if (connection != null){
+            connection.close();
+        }
+    }
+
+    public CompletableFuture<byte[]> get(byte[] key){
+        return translate(commands.get(key));
+    }
+
+    /**
+     * SET，ttlMillis大于0时带PX
+     */
+    public CompletableFuture<Void> set(byte[] key, byte[] value, long ttlMillis){
+        SetArgs args = ttlMillis > 0 ? SetArgs.Builder.px(ttlMillis) : new SetArgs();
+        return translate(commands.set(key, value, args)).thenApply(ok -> null);
+    }
+
+    /**
+     * SET NX PX
+     * @return 是否设置成功
+     */
+    public CompletableFuture<Boolean> setIfAbsent(byte[] key, byte[] value, long ttlMillis){
+        return translate(commands.set(key, value, SetArgs.Builder.nx().px(ttlMillis)))
+                .thenApply("OK"::equals);
+    }
+
+    public CompletableFuture<byte[]> hget(byte[] key, byte[] field){
+        return translate(commands.hget(key, field));
+    }
+
+    /**
+     * 执行返回整数的lua脚本
+     */
+    public CompletableFuture<Long> eval(String script, byte[][] keys, byte[]... args){
+        return translate(commands.<Long>eval(script, ScriptOutputType.INTEGER, keys, args));
+    }
+
+    /**
+     * 通过EVALSHA执行返回整数的lua脚本，脚本还没有缓存（首次执行、redis重启或SCRIPT FLUSH之后）时改用EVAL，同时缓存脚本
+     */
+    public CompletableFuture<Long> evalSha(RedisScript<Long> script, byte[][] keys, byte[]... args){
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        commands.<Long>evalsha(script.getSha1(), ScriptOutputType.INTEGER, keys, args).whenComplete((value, e) -> {
+            if (e != null && AsyncSupport.unwrap(e) instanceof RedisNoScriptException){
+                eval(script.getScriptAsString(), keys, args).whenComplete((v, ex) -> AsyncSupport.complete(result, v, ex));
+            } else {
+                complete(result, value, e);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Long> publish(String channel, String message){
+        return translate(commands.publish(channel.getBytes(StandardCharsets.UTF_8), message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static <T> CompletableFuture<T> translate(RedisFuture<T> future){
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, e) -> complete(result, value, e));
+        return result;
+    }
+
+    /**
+     * 完成future，异常转换为spring的DataAccessException
+     */
+    private static <T> void complete(CompletableFuture<T> result, T value, Throwable e){
+        if (e == null){
+            result.complete(value);
+            return;
+        }
+        Throwable cause = AsyncSupport.unwrap(e);
+        DataAccessException translated = cause instanceof Exception
+                ? EXCEPTION_CONVERTER.convert((Exception) cause) : null;
+        result.completeExceptionally(translated != null ? translated : cause);
+    }
+}
@@ -0,0 +1,172 @@
+package com.wzy.codedatabase.redis.cache.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 异步接口的公共工具：续接线程池、定时器（超时、延迟）和异常处理
+ * 异步方法中调用用户逻辑（解码、数据库查询）的阶段都切换到调用方指定的执行器，不在redis的io线程上执行。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 13:00
+ */
+public final class AsyncSupport {
+
+    /**
+     * 异步接口默认的续接线程池（解码、调用数据库查询逻辑），线程数为cpu核数
+     */
+    public static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), daemonFactory("cache-async-"));
+
+    /**
+     * 超时和延迟任务的定时器，只执行很短的回调
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            daemonFactory("cache-async-timer-"));
+
+    private AsyncSupport() {
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonFactory(String namePrefix){
+        AtomicInteger sequence = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, namePrefix + sequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 延迟执行（回调在定时器线程中执行，应很短）
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit){
+        return TIMER.schedule(task, delay, unit);
+    }
+
+    /**
+     * 在future完成或超时后完成，超时时以value完成（不取消原future）
+     */
+    public static <T> CompletableFuture<T> completeOnTimeout(CompletableFuture<T> future, T value, long timeoutMillis){
+        if (future.isDone()){
+            return future;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = schedule(() -> result.complete(value), timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((v, e) -> {
+            timeout.cancel(false);
+            complete(result, v, e);
+        });
+        return result;
+    }
+
+    /**
+     * 在future完成或超时后完成，超时时以exception失败（不取消原future）
+     */
+    public static <T> CompletableFuture<T> failOnTimeout(CompletableFuture<T> future, long timeoutMillis,
+                                                         Supplier<? extends Throwable> exception){
+        if (future.isDone()){
+            return future;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = schedule(() -> result.completeExceptionally(exception.get()),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((v, e) -> {
+            timeout.cancel(false);
+            complete(result, v, e);
+        });
+        return result;
+    }
+
+    /**
+     * 以value或异常e完成target
+     */
+    public static <T> void complete(CompletableFuture<T> target, T value, Throwable e){
+        if (e == null){
+            target.complete(value);
+        } else {
+            target.completeExceptionally(unwrap(e));
+        }
+    }
+
+    public static <T> CompletableFuture<T> failed(Throwable e){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    /**
+     * 调用返回future的逻辑，逻辑本身抛出的异常转为失败的future
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> call(Supplier<? extends CompletableFuture<? extends T>> supplier){
+        try {
+            CompletableFuture<T> future = (CompletableFuture<T>) supplier.get();
+            return future != null ? future : CompletableFuture.completedFuture(null);
+        } catch (Throwable e) {
+            return failed(e);
+        }
+    }
+
+    /**
+     * 去掉CompletableFuture包装的异常
+     */
+    public static Throwable unwrap(Throwable e){
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null){
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * 在handle()等回调中重新抛出异常，保持原始异常
+     */
+    public static CompletionException rethrow(Throwable e){
+        return e instanceof CompletionException ? (CompletionException) e : new CompletionException(unwrap(e));
+    }
+
+    /**
+     * 等待future完成（不响应中断，中断标记保留），异常按原始类型抛出
+     * @param future future
+     * @param <T> 结果类型
+     * @return 结果
+     */
+    public static <T> T join(CompletableFuture<T> future){
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw propagate(e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * 已完成的future的结果，异常按原始类型抛出
+     */
+    static <T> T resultOf(CompletableFuture<T> future){
+        return join(future);
+    }
+
+    private static RuntimeException propagate(Throwable e){
+        e = unwrap(e);
+        if (e instanceof RuntimeException){
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error){
+            throw (Error) e;
+        }
+        return new CompletionException(e);
+    }
+
+    /**
+     * 直接在完成future的线程中执行（只用于很短的回调）
+     */
+    public static final Executor DIRECT = Runnable::run;
+}
@@ -0,0 +1,91 @@
+package com.wzy.codedatabase.redis.cache.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * 调用线程执行的执行器：阻塞接口基于异步接口实现时使用
+ * 异步流程中切换到该执行器的阶段（解码、数据库查询）排队，由等待结果的调用线程依次执行，
+ * 因此阻塞接口的数据库查询仍在调用线程中执行（事务、ThreadLocal等不受影响），redis的io线程不执行用户逻辑。
+ * 调用线程拿到结果后执行器关闭，之后提交的阶段交给AsyncSupport.EXECUTOR执行。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 13:00
+ */
+public final class CallerRunsExecutor implements Executor {
+
+    private static final Runnable WAKE_UP = () -> { };
+
+    private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    private boolean closed;
+
+    private CallerRunsExecutor() {
+    }
+
+    /**
+     * 以调用线程作为执行器运行异步流程，并等待结果
+     * @param call 异步流程，参数为执行器
+     * @param <T> 结果类型
+     * @return 结果，异常按原始类型抛出
+     */
+    public static <T> T join(Function<Executor, CompletableFuture<T>> call){
+        CallerRunsExecutor executor = new CallerRunsExecutor();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(executor);
+        } catch (RuntimeException | Error e) {
+            executor.close();
+            throw e;
+        }
+        return executor.runUntil(future);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this){
+            if (!closed){
+                tasks.add(task);
+                return;
+            }
+        }
+        AsyncSupport.EXECUTOR.execute(task);
+    }
+
+    private <T> T runUntil(CompletableFuture<T> future){
+        future.whenComplete((v, e) -> tasks.add(WAKE_UP));
+        boolean interrupted = false;
+        try {
+            //1.执行排队的阶段，直到结果完成（不响应中断，结束后恢复中断标记）
+            while (!future.isDone()){
+                Runnable task;
+                try {
+                    task = tasks.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                }
+                task.run();
+            }
+            //2.关闭，并执行结果完成前已排队的阶段（如释放锁）
+            close();
+        } finally {
+            if (interrupted){
+                Thread.currentThread().interrupt();
+            }
+        }
+        return AsyncSupport.resultOf(future);
+    }
+
+    private void close(){
+        synchronized (this){
+            closed = true;
+        }
+        Runnable task;
+        while ((task = tasks.poll()) != null){
+            task.run();
+        }
+    }
+}
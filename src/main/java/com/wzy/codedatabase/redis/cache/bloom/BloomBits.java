@@ -0,0 +1,125 @@
+package com.wzy.codedatabase.redis.cache.bloom;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 布隆过滤器某一版本的位图参数及本地副本
+ * 本地位序：第i位在words[i/64]的第(i%64)位；redis位图位序：第i位在第i/8个字节的高位起第(i%8)位，加载时按字转换。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 12:00
+ */
+public class BloomBits extends BloomParams {
+
+    /**
+     * redis位图最多2^32位
+     */
+    public static final long MAX_BITS = 1L << 32;
+
+    final AtomicLongArray words;
+
+    /**
+     * 上次同步时redis中的新增计数（meta的adds字段），用于判断是否丢失了新增消息
+     */
+    volatile long syncedAdds;
+
+    /**
+     * 上次同步以来收到的新增消息数
+     */
+    final AtomicLong received = new AtomicLong();
+
+    BloomBits(long version, long numBits, int numHashes) {
+        super(version, numBits, numHashes);
+        this.words = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+    }
+
+    /**
+     * 根据预计元素数量和误判率计算位数
+     */
+    static long optimalNumBits(long expectedInsertions, double fpp){
+        long bits = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        return Math.max(64L, Math.min(bits, MAX_BITS));
+    }
+
+    /**
+     * 根据预计元素数量和位数计算哈希函数个数
+     */
+    static int optimalNumHashes(long expectedInsertions, long numBits){
+        return Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+    }
+
+    boolean get(long index){
+        return (words.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    void set(long index){
+        int i = (int) (index >>> 6);
+        long mask = 1L << index;
+        long old;
+        while (((old = words.get(i)) & mask) == 0 && !words.compareAndSet(i, old, old | mask)){
+            //自旋直到置位成功
+        }
+    }
+
+    /**
+     * 本地副本是否可能包含该元素
+     */
+    boolean mightContain(Object id){
+        for (long index : indexes(id)) {
+            if (!get(index)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 置位元素对应的所有位
+     */
+    void add(Object id){
+        for (long index : indexes(id)) {
+            set(index);
+        }
+    }
+
+    /**
+     * 把redis位图字节合并（按位或）到本地副本：按64位字转换，每个字最多一次CAS，已置位的字跳过；
+     * 合并不会清除任何位，因此加载期间并发置位的元素不会丢失
+     */
+    void merge(byte[] bitmap){
+        if (bitmap == null){
+            return;
+        }
+        int limit = (int) Math.min(bitmap.length, (numBits + 7) >>> 3);
+        for (int w = 0; (w << 3) < limit; w++) {
+            long word = 0L;
+            int base = w << 3;
+            for (int k = 0; k < 8 && base + k < limit; k++) {
+                //redis字节的高位是低下标，反转后放到字中第k个字节
+                long b = (Integer.reverse(bitmap[base + k] & 0xFF) >>> 24) & 0xFFL;
+                word |= b << (k << 3);
+            }
+            if (word != 0L && (words.get(w) & word) != word){
+                final long bits = word;
+                words.accumulateAndGet(w, bits, (a, x) -> a | x);
+            }
+        }
+    }
+
+    /**
+     * 转为redis位图字节（用于重建时整体写入）
+     */
+    byte[] toRedisBitmap(){
+        byte[] bitmap = new byte[(int) ((numBits + 7) >>> 3)];
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            while (word != 0){
+                long i = ((long) w << 6) + Long.numberOfTrailingZeros(word);
+                bitmap[(int) (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+                word &= word - 1;
+            }
+        }
+        return bitmap;
+    }
+}
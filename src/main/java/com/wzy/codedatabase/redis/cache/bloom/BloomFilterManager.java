@@ -0,0 +1,399 @@
+package com.wzy.codedatabase.redis.cache.bloom;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands.BitOperation;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于redis位图的布隆过滤器，用于缓存穿透防护
+ * 位图保存在redis中（bloom:{name}:{version}），参数保存在bloom:{name}:meta；每个节点持有一份本地副本，
+ * 判断时只查本地副本不访问redis。本地副本通过发布订阅增量同步新增元素，并定时检查兜底：
+ * 只有版本变化或新增消息有丢失（按meta中的新增计数判断）时才重新下载位图，且按位或合并到本地副本。
+ * 重建（包括扩容）写入新版本的位图，完成后切换版本，不停服。新增元素由lua脚本写入：脚本在同一次往返中
+ * 校验meta中的当前版本和重建中的新版本，与调用方的参数一致才置位（重建期间同时写入新旧两个版本），
+ * 不一致时调用方刷新参数后重试，因此其他节点还没收到重建通知时新增的元素也不会漏写到新版本。
+ * 注意：业务新增数据时需要调用add()，否则新数据会被判定为不存在。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 12:00
+ */
+@Slf4j
+@Component
+public class BloomFilterManager implements MessageListener {
+
+    /**
+     * 布隆过滤器同步频道，消息格式：add|name|id 或 reload|name
+     */
+    public static final String BLOOM_CHANNEL = "cache:bloom";
+
+    private static final String KEY_PREFIX = "bloom:";
+
+    /**
+     * 重建时分块写入redis的块大小（字节）
+     */
+    private static final int CHUNK_BYTES = 1024 * 1024;
+
+    /**
+     * 本地副本同步检查间隔（秒）
+     */
+    private static final long SYNC_INTERVAL_SECONDS = 60L;
+
+    /**
+     * 新增元素时参数不一致（重建开始或切换版本）的最多重试次数
+     */
+    private static final int MAX_ADD_ATTEMPTS = 3;
+
+    /**
+     * 新增元素：KEYS[1]为meta，KEYS[2]、KEYS[3]为当前版本和新版本的位图；
+     * ARGV[1]为调用方认为的当前版本，ARGV[2]为调用方认为的新版本参数（没有为空串），ARGV[3]为当前版本的下标个数n，
+     * 之后n个为当前版本的下标，其余为新版本的下标。参数一致时置位并返回新增计数，不一致时返回-1
+     */
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "local meta = redis.call('hmget', KEYS[1], 'version', 'next') " +
+            "if meta[1] ~= ARGV[1] or (meta[2] or '') ~= ARGV[2] then return -1 end " +
+            "local n = tonumber(ARGV[3]) " +
+            "for i = 4, n + 3 do redis.call('setbit', KEYS[2], ARGV[i], 1) end " +
+            "for i = n + 4, #ARGV do redis.call('setbit', KEYS[3], ARGV[i], 1) end " +
+            "return redis.call('hincrby', KEYS[1], 'adds', 1)",
+            Long.class);
+
+    /**
+     * 切换版本：写入新版本参数并删除next字段（原子执行，新增脚本不会看到中间状态）
+     */
+    private static final DefaultRedisScript<Long> SWITCH_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('hmset', KEYS[1], 'version', ARGV[1], 'bits', ARGV[2], 'hashes', ARGV[3]) " +
+            "return redis.call('hdel', KEYS[1], 'next')",
+            Long.class);
+
+    /**
+     * 各过滤器当前版本的本地副本
+     */
+    private final Map<String, BloomBits> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 正在重建的过滤器的新版本参数（新增元素需要双写），只保存参数，不分配位图
+     */
+    private final Map<String, BloomParams> rebuilding = new ConcurrentHashMap<>();
+
+    /**
+     * 正在加载新版本位图的过滤器，加载期间收到的新增元素在替换本地副本后补上
+     */
+    private final Map<String, Queue<String>> pendingAdds = new ConcurrentHashMap<>();
+
+    /**
+     * 各过滤器的同步锁，同一过滤器同时只有一个线程从redis加载
+     */
+    private final Map<String, Object> syncLocks = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "bloom-filter-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer cacheMessageListenerContainer;
+
+    @PostConstruct
+    public void init(){
+        cacheMessageListenerContainer.addMessageListener(this, new ChannelTopic(BLOOM_CHANNEL));
+        syncExecutor.scheduleWithFixedDelay(this::syncAll, SYNC_INTERVAL_SECONDS, SYNC_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        syncExecutor.shutdownNow();
+    }
+
+    /**
+     * 创建布隆过滤器：redis中已存在时直接加载，否则按参数创建空过滤器
+     * @param name 过滤器名称
+     * @param expectedInsertions 预计元素数量
+     * @param fpp 误判率
+     */
+    public void create(String name, long expectedInsertions, double fpp){
+        long numBits = BloomBits.optimalNumBits(expectedInsertions, fpp);
+        int numHashes = BloomBits.optimalNumHashes(expectedInsertions, numBits);
+        Map<String, String> meta = new HashMap<>();
+        meta.put("version", "1");
+        meta.put("bits", String.valueOf(numBits));
+        meta.put("hashes", String.valueOf(numHashes));
+        meta.put("seq", "1");
+        //已存在则不覆盖
+        if (Boolean.TRUE.equals(stringRedisTemplate.opsForHash().putIfAbsent(metaKey(name), "version", "1"))){
+            stringRedisTemplate.opsForHash().putAll(metaKey(name), meta);
+        }
+        reload(name);
+    }
+
+    /**
+     * 判断元素是否可能存在（只查本地副本）
+     * @param name 过滤器名称
+     * @param id 元素
+     * @return false表示一定不存在；过滤器未加载时返回true（放行）
+     */
+    public boolean mightContain(String name, Object id){
+        BloomBits bits = filters.get(name);
+        return bits == null || bits.mightContain(id);
+    }
+
+    /**
+     * 新增元素：通过lua脚本写入redis位图（重建期间同时写入新版本，版本校验与写入在同一次往返中），
+     * 更新本地副本并广播给其他节点
+     * @param name 过滤器名称
+     * @param id 元素
+     */
+    public void add(String name, Object id){
+        for (int attempt = 0; attempt < MAX_ADD_ATTEMPTS; attempt++) {
+            BloomBits bits = filters.get(name);
+            if (bits == null){
+                reload(name);
+                bits = filters.get(name);
+                if (bits == null){
+                    throw new IllegalStateException("布隆过滤器不存在：" + name);
+                }
+            }
+            BloomParams next = rebuilding.get(name);
+            long[] indexes = bits.indexes(id);
+            long[] nextIndexes = next == null ? new long[0] : next.indexes(id);
+            List<String> keys = Arrays.asList(metaKey(name), bitsKey(name, bits.version),
+                    bitsKey(name, next == null ? bits.version : next.version));
+            String[] args = new String[3 + indexes.length + nextIndexes.length];
+            args[0] = String.valueOf(bits.version);
+            args[1] = next == null ? "" : next.spec();
+            args[2] = String.valueOf(indexes.length);
+            for (int i = 0; i < indexes.length; i++) {
+                args[3 + i] = String.valueOf(indexes[i]);
+            }
+            for (int i = 0; i < nextIndexes.length; i++) {
+                args[3 + indexes.length + i] = String.valueOf(nextIndexes[i]);
+            }
+            Long adds = stringRedisTemplate.execute(ADD_SCRIPT, keys, (Object[]) args);
+            if (adds != null && adds >= 0){
+                bits.add(id);
+                stringRedisTemplate.convertAndSend(BLOOM_CHANNEL, "add|" + name + "|" + id);
+                return;
+            }
+            //参数已变化（其他节点开始重建或已切换版本），刷新参数后重试
+            sync(name, false);
+        }
+        throw new IllegalStateException("布隆过滤器参数持续变化，新增失败：" + name);
+    }
+
+    /**
+     * 从数据库批量重建（也用于扩容），期间过滤器正常可用
+     * @param name 过滤器名称
+     * @param expectedInsertions 新的预计元素数量
+     * @param fpp 误判率
+     * @param ids 数据库中全部存在的id（可以是流式游标，在登记新版本之后才开始遍历）
+     */
+    public void rebuild(String name, long expectedInsertions, double fpp, Iterable<?> ids){
+        long numBits = BloomBits.optimalNumBits(expectedInsertions, fpp);
+        int numHashes = BloomBits.optimalNumHashes(expectedInsertions, numBits);
+        long version = stringRedisTemplate.opsForHash().increment(metaKey(name), "seq", 1L);
+        BloomBits next = new BloomBits(version, numBits, numHashes);
+
+        //1.登记新版本：此后所有节点的新增脚本都会双写（参数不一致的节点刷新后重试），再通知各节点刷新参数
+        stringRedisTemplate.opsForHash().put(metaKey(name), "next", next.spec());
+        rebuilding.put(name, next);
+        stringRedisTemplate.convertAndSend(BLOOM_CHANNEL, "reload|" + name);
+
+        //2.在本地构建新位图
+        for (Object id : ids) {
+            next.add(id);
+        }
+
+        //3.分块写入临时key，再与双写期间的新增元素合并
+        String bitsKey = bitsKey(name, version);
+        byte[] tmpKey = (bitsKey + ":build").getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = next.toRedisBitmap();
+        for (int offset = 0; offset < bitmap.length; offset += CHUNK_BYTES) {
+            byte[] chunk = Arrays.copyOfRange(bitmap, offset, Math.min(bitmap.length, offset + CHUNK_BYTES));
+            final long chunkOffset = offset;
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.setRange(tmpKey, chunk, chunkOffset);
+                return null;
+            });
+        }
+        byte[] destKey = bitsKey.getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.bitOp(BitOperation.OR, destKey, destKey, tmpKey);
+            connection.unlink(tmpKey);
+            return null;
+        });
+
+        //4.原子切换版本，本地副本直接使用已构建的位图（合并双写期间的新增元素），通知所有节点重新加载，删除旧版本
+        BloomBits old = filters.get(name);
+        stringRedisTemplate.execute(SWITCH_SCRIPT, Collections.singletonList(metaKey(name)),
+                String.valueOf(version), String.valueOf(numBits), String.valueOf(numHashes));
+        synchronized (syncLock(name)) {
+            rebuilding.remove(name);
+            loadVersion(name, next);
+        }
+        stringRedisTemplate.convertAndSend(BLOOM_CHANNEL, "reload|" + name);
+        if (old != null && old.version != version){
+            stringRedisTemplate.unlink(bitsKey(name, old.version));
+        }
+        log.info("布隆过滤器{}重建完成，版本{}，位数{}，哈希函数{}个", name, version, numBits, numHashes);
+    }
+
+    /**
+     * 从redis重新加载过滤器参数和位图（版本未变化时位图按位或合并到本地副本）
+     * @param name 过滤器名称
+     */
+    public void reload(String name){
+        sync(name, true);
+    }
+
+    /**
+     * 从redis同步过滤器
+     * @param name 过滤器名称
+     * @param mergeBitmap 版本未变化时是否下载位图合并到本地副本；false时只刷新参数（版本变化时总是加载新版本位图）
+     */
+    private void sync(String name, boolean mergeBitmap){
+        synchronized (syncLock(name)) {
+            Map<Object, Object> meta = stringRedisTemplate.opsForHash().entries(metaKey(name));
+            if (meta.isEmpty() || meta.get("bits") == null){
+                return;
+            }
+            long version = Long.parseLong(String.valueOf(meta.get("version")));
+            long numBits = Long.parseLong(String.valueOf(meta.get("bits")));
+            int numHashes = Integer.parseInt(String.valueOf(meta.get("hashes")));
+            //1.重建中的新版本参数
+            Object next = meta.get("next");
+            if (next != null){
+                rebuilding.put(name, BloomParams.parse(String.valueOf(next)));
+            } else {
+                rebuilding.remove(name);
+            }
+            //2.版本未变化：合并位图到现有副本（不替换对象，并发收到的新增元素不会丢失）
+            BloomBits current = filters.get(name);
+            if (current != null && current.version == version){
+                if (mergeBitmap){
+                    current.syncedAdds = addsOf(name);
+                    current.received.set(0L);
+                    current.merge(getBitmap(name, version));
+                }
+                return;
+            }
+            //3.版本变化：加载新版本
+            loadVersion(name, new BloomBits(version, numBits, numHashes));
+        }
+    }
+
+    /**
+     * 把redis中某个版本的位图合并到bits后替换本地副本，加载期间收到的新增元素在替换后补上（调用方持有同步锁）
+     */
+    private void loadVersion(String name, BloomBits bits){
+        Queue<String> pending = new ConcurrentLinkedQueue<>();
+        pendingAdds.put(name, pending);
+        try {
+            //先读新增计数再读位图，位图至少包含计数内的新增元素
+            bits.syncedAdds = addsOf(name);
+            bits.merge(getBitmap(name, bits.version));
+            filters.put(name, bits);
+        } finally {
+            pendingAdds.remove(name, pending);
+        }
+        for (String id : pending) {
+            bits.add(id);
+        }
+    }
+
+    /**
+     * 定时检查：只读取meta中的版本和新增计数，版本变化或上次检查以来收到的新增消息少于redis中的新增次数（消息丢失）时才下载位图
+     */
+    private void syncAll(){
+        for (Map.Entry<String, BloomBits> entry : filters.entrySet()) {
+            String name = entry.getKey();
+            BloomBits bits = entry.getValue();
+            try {
+                List<Object> meta = stringRedisTemplate.opsForHash().multiGet(metaKey(name), Arrays.asList("version", "adds"));
+                long version = meta.get(0) == null ? bits.version : Long.parseLong(String.valueOf(meta.get(0)));
+                long adds = meta.get(1) == null ? 0L : Long.parseLong(String.valueOf(meta.get(1)));
+                long received = bits.received.getAndSet(0L);
+                long expected = adds - bits.syncedAdds;
+                bits.syncedAdds = adds;
+                if (version != bits.version){
+                    sync(name, true);
+                } else if (received < expected){
+                    log.debug("布隆过滤器{}丢失了{}条新增消息，合并redis位图", name, expected - received);
+                    sync(name, true);
+                }
+            } catch (Exception e) {
+                log.warn("布隆过滤器{}同步失败", name, e);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        List<String> parts = StrUtil.split(new String(message.getBody(), StandardCharsets.UTF_8), '|', 3);
+        if (parts.size() < 2){
+            return;
+        }
+        String name = parts.get(1);
+        if ("reload".equals(parts.get(0))){
+            syncExecutor.execute(() -> sync(name, false));
+        } else if ("add".equals(parts.get(0)) && parts.size() == 3){
+            BloomBits bits = filters.get(name);
+            if (bits != null){
+                bits.add(parts.get(2));
+                bits.received.incrementAndGet();
+            }
+            Queue<String> pending = pendingAdds.get(name);
+            if (pending != null){
+                pending.add(parts.get(2));
+            }
+        }
+    }
+
+    private Object syncLock(String name){
+        return syncLocks.computeIfAbsent(name, k -> new Object());
+    }
+
+    private long addsOf(String name){
+        Object adds = stringRedisTemplate.opsForHash().get(metaKey(name), "adds");
+        return adds == null ? 0L : Long.parseLong(String.valueOf(adds));
+    }
+
+    private byte[] getBitmap(String name, long version){
+        byte[] key = bitsKey(name, version).getBytes(StandardCharsets.UTF_8);
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+    }
+
+    private static String metaKey(String name){
+        return KEY_PREFIX + name + ":meta";
+    }
+
+    private static String bitsKey(String name, long version){
+        return KEY_PREFIX + name + ":" + version;
+    }
+}
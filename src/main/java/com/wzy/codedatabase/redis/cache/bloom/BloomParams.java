@@ -0,0 +1,56 @@
+package com.wzy.codedatabase.redis.cache.bloom;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 布隆过滤器某一版本的参数（版本号、位数、哈希函数个数），不包含位图
+ * 重建期间新版本只需要参数来计算位下标，不需要本地位图。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 12:00
+ */
+class BloomParams {
+
+    final long version;
+    final long numBits;
+    final int numHashes;
+
+    BloomParams(long version, long numBits, int numHashes) {
+        this.version = version;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * 计算元素对应的numHashes个位下标（murmur3 128位哈希 + 双重哈希）
+     */
+    long[] indexes(Object id){
+        long[] hash = MurmurHash.hash128(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+        long[] indexes = new long[numHashes];
+        long combined = hash[0];
+        for (int i = 0; i < numHashes; i++) {
+            indexes[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += hash[1];
+        }
+        return indexes;
+    }
+
+    /**
+     * @return 参数的字符串形式 version:bits:hashes（保存在meta的next字段）
+     */
+    String spec(){
+        return version + ":" + numBits + ":" + numHashes;
+    }
+
+    /**
+     * 解析spec()的字符串形式
+     */
+    static BloomParams parse(String spec){
+        List<String> parts = StrUtil.split(spec, ':');
+        return new BloomParams(Long.parseLong(parts.get(0)), Long.parseLong(parts.get(1)), Integer.parseInt(parts.get(2)));
+    }
+}
@@ -0,0 +1,46 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+import java.util.List;
+
+/**
+ * 缓存值编解码SPI
+ * 非json的编码需要在字节首位写入自己的格式标记tag()，读取时按首字节选择编解码器，因此同一前缀切换编码后旧数据仍可读取。
+ * 自定义实现通过CacheCodecs.register()注册，并在CachePolicy中按前缀配置。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 13:00
+ */
+public interface CacheCodec {
+
+    /**
+     * 格式标记，写在编码结果的第一个字节。
+     * json编码不写标记（返回0）；其他编码取值1~30（31保留给逻辑过期封装格式）且不能是\t、\n、\r，保证不会与json文本的首字符冲突
+     * @return 格式标记
+     */
+    byte tag();
+
+    /**
+     * 编码
+     * @param value 对象
+     * @return 字节数组（非json编码包含首字节的格式标记）
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码单个对象
+     * @param raw 字节数组（非json编码包含首字节的格式标记）
+     * @param type 对象类型
+     * @param <T> 对象类型参数
+     * @return 对象
+     */
+    <T> T decode(byte[] raw, Class<T> type);
+
+    /**
+     * 解码列表
+     * @param raw 字节数组（非json编码包含首字节的格式标记）
+     * @param type 元素类型
+     * @param <T> 元素类型参数
+     * @return 列表
+     */
+    <T> List<T> decodeList(byte[] raw, Class<T> type);
+}
@@ -0,0 +1,111 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.util.List;
+
+/**
+ * 编解码器注册表
+ * 读取时按首字节的格式标记选择编解码器，没有标记的按json处理（兼容旧数据）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 13:00
+ */
+public final class CacheCodecs {
+
+    private static final CacheCodec[] CODECS = new CacheCodec[32];
+
+    /**
+     * 保留的标记：逻辑过期数据的封装格式（见RedisDataEnvelope）
+     */
+    private static final byte RESERVED_TAG = 0x1F;
+
+    static {
+        register(KryoCacheCodec.INSTANCE);
+        register(CompressingCacheCodec.DECODER);
+    }
+
+    private CacheCodecs() {
+    }
+
+    /**
+     * 注册编解码器
+     * @param codec 编解码器，格式标记取值1~30且不能是\t、\n、\r
+     */
+    public static synchronized void register(CacheCodec codec){
+        byte tag = codec.tag();
+        if (tag <= 0 || tag >= RESERVED_TAG || tag == '\t' || tag == '\n' || tag == '\r'){
+            throw new IllegalArgumentException("非法的编解码格式标记：" + tag);
+        }
+        CODECS[tag] = codec;
+    }
+
+    /**
+     * 根据字节数组的格式标记选择编解码器
+     * @param raw 非空字节数组
+     * @return 编解码器
+     */
+    public static CacheCodec forPayload(byte[] raw){
+        int first = raw[0];
+        if (first > 0 && first < CODECS.length && CODECS[first] != null){
+            return CODECS[first];
+        }
+        return JsonCacheCodec.INSTANCE;
+    }
+
+    /**
+     * 根据格式标记获取编解码器
+     * @param tag 格式标记，0表示json
+     * @return 编解码器
+     */
+    public static CacheCodec byTag(byte tag){
+        if (tag > 0 && tag < CODECS.length && CODECS[tag] != null){
+            return CODECS[tag];
+        }
+        if (tag == 0){
+            return JsonCacheCodec.INSTANCE;
+        }
+        throw new IllegalStateException("未注册的编解码格式标记：" + tag);
+    }
+
+    public static <T> T decode(byte[] raw, Class<T> type){
+        return forPayload(raw).decode(raw, type);
+    }
+
+    public static <T> List<T> decodeList(byte[] raw, Class<T> type){
+        return forPayload(raw).decodeList(raw, type);
+    }
+
+    /**
+     * 把RedisData中的data转换为指定类型：json解码得到的是JSONObject，二进制解码得到的就是对象本身
+     */
+    public static <T> T convert(Object data, Class<T> type){
+        if (data == null){
+            return null;
+        }
+        if (data instanceof JSONObject){
+            return JSONUtil.toBean((JSONObject) data, type);
+        }
+        if (type.isInstance(data)){
+            return type.cast(data);
+        }
+        return Convert.convert(type, data);
+    }
+
+    /**
+     * 把RedisData中的data转换为指定元素类型的列表
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> convertList(Object data, Class<T> type){
+        if (data == null){
+            return null;
+        }
+        if (data instanceof JSONArray){
+            return JSONUtil.toList((JSONArray) data, type);
+        }
+        return (List<T>) data;
+    }
+}
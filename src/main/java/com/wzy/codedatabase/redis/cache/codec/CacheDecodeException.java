@@ -0,0 +1,21 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+/**
+ * 缓存数据无法解码（类结构不兼容、类型不在白名单中、类型不匹配等）
+ * 读取流程捕获该异常后按未命中处理，重新加载的数据会覆盖无法解码的旧数据。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 13:00
+ */
+public class CacheDecodeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CacheDecodeException(String message) {
+        super(message);
+    }
+
+    public CacheDecodeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
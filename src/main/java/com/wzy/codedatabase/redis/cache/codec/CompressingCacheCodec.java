@@ -0,0 +1,167 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.metrics.CompressionStats;
+import com.wzy.codedatabase.redis.cache.metrics.LatencyHistogram;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 按阈值压缩的编解码器（包装前缀配置的编解码器）
+ * 编码结果超过阈值且压缩后更小时写入压缩格式，否则原样写入内层编码，因此未压缩的旧数据无需迁移。
+ * 压缩格式：1字节标记(0x02) + 1字节算法标记 + 4字节原始长度(大端) + 压缩后的内层编码（内层编码自带格式标记）
+ * 读取时由CacheCodecs按首字节分派到注册的DECODER，解压后再按内层编码的格式标记解码。
+ * Deflater/Inflater持有本地内存，按线程复用。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 21:00
+ */
+public class CompressingCacheCodec implements CacheCodec {
+
+    public static final byte TAG = 0x02;
+
+    private static final int HEADER_LENGTH = 6;
+
+    /**
+     * 注册到CacheCodecs的解码器，不能用于编码
+     */
+    public static final CompressingCacheCodec DECODER = new CompressingCacheCodec(null, Compression.DEFLATE, 0, null);
+
+    /**
+     * 解压耗时（所有前缀），各前缀的解码耗时（包含解压）见CacheMetrics
+     */
+    public static final LatencyHistogram DECOMPRESS_LATENCY = new LatencyHistogram();
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+
+    private final CacheCodec inner;
+    private final Compression compression;
+    private final int threshold;
+    private final CompressionStats stats;
+
+    public CompressingCacheCodec(CacheCodec inner, Compression compression, int threshold, CompressionStats stats) {
+        this.inner = inner;
+        this.compression = compression;
+        this.threshold = threshold;
+        this.stats = stats;
+    }
+
+    /**
+     * 按前缀策略取写入使用的编解码器：开启压缩时包装为压缩编解码器
+     * @param policy 前缀策略
+     * @param stats 该前缀的压缩统计
+     * @return 编解码器
+     */
+    public static CacheCodec wrap(CachePolicy policy, CompressionStats stats){
+        if (policy.getCompression() == null || policy.getCompression() == Compression.NONE){
+            return policy.getCodec();
+        }
+        return new CompressingCacheCodec(policy.getCodec(), policy.getCompression(), policy.getCompressionThreshold(), stats);
+    }
+
+    @Override
+    public byte tag() {
+        return TAG;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (inner == null){
+            throw new UnsupportedOperationException("DECODER不能用于编码");
+        }
+        byte[] raw = inner.encode(value);
+        if (raw.length < threshold){
+            return raw;
+        }
+        long start = System.nanoTime();
+        byte[] compressed = deflate(raw);
+        if (compressed == null){
+            stats.incompressible(raw.length, start);
+            return raw;
+        }
+        stats.compressed(raw.length, compressed.length, start);
+        return compressed;
+    }
+
+    @Override
+    public <T> T decode(byte[] raw, Class<T> type) {
+        return CacheCodecs.decode(inflate(raw), type);
+    }
+
+    @Override
+    public <T> List<T> decodeList(byte[] raw, Class<T> type) {
+        return CacheCodecs.decodeList(inflate(raw), type);
+    }
+
+    /**
+     * 压缩
+     * @return 压缩格式的字节，压缩后不比原来小时返回null
+     */
+    private byte[] deflate(byte[] raw){
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[raw.length];
+        buffer[0] = TAG;
+        buffer[1] = compression.id();
+        for (int i = 0; i < 4; i++) {
+            buffer[2 + i] = (byte) (raw.length >>> (24 - 8 * i));
+        }
+        int length = HEADER_LENGTH;
+        while (!deflater.finished() && length < buffer.length){
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        if (!deflater.finished()){
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * 解压
+     * @return 内层编码的字节
+     */
+    private static byte[] inflate(byte[] raw){
+        long start = System.nanoTime();
+        if (raw.length < HEADER_LENGTH || raw[0] != TAG){
+            throw new IllegalStateException("不是压缩格式的数据");
+        }
+        Compression compression = Compression.byId(raw[1]);
+        if (compression != Compression.DEFLATE){
+            throw new IllegalStateException("不支持的压缩算法：" + compression);
+        }
+        int length = 0;
+        for (int i = 0; i < 4; i++) {
+            length = (length << 8) | (raw[2 + i] & 0xFF);
+        }
+        byte[] bytes = new byte[length];
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(raw, HEADER_LENGTH, raw.length - HEADER_LENGTH);
+        try {
+            int n = 0;
+            while (n < length && !inflater.finished()){
+                int read = inflater.inflate(bytes, n, length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    break;
+                }
+                n += read;
+            }
+            if (n != length){
+                throw new IllegalStateException("压缩数据不完整：" + n + "/" + length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩数据格式错误", e);
+        }
+        DECOMPRESS_LATENCY.record(System.nanoTime() - start);
+        return bytes;
+    }
+}
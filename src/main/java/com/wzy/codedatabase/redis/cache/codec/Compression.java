@@ -0,0 +1,40 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+/**
+ * 缓存值的压缩算法
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 21:00
+ */
+public enum Compression {
+    /**
+     * 不压缩
+     */
+    NONE(0),
+    /**
+     * java.util.zip的Deflate（BEST_SPEED），不引入额外依赖
+     */
+    DEFLATE(1);
+
+    /**
+     * 写入压缩格式头部的算法标记
+     */
+    private final byte id;
+
+    Compression(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte id() {
+        return id;
+    }
+
+    public static Compression byId(byte id){
+        for (Compression compression : values()) {
+            if (compression.id == id){
+                return compression;
+            }
+        }
+        throw new IllegalStateException("不支持的压缩算法标记：" + id);
+    }
+}
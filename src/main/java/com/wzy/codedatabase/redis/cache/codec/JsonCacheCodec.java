@@ -0,0 +1,37 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * json编解码（hutool），与原有StringRedisTemplate写入的数据完全兼容
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 13:00
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    public static final JsonCacheCodec INSTANCE = new JsonCacheCodec();
+
+    @Override
+    public byte tag() {
+        return 0;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(byte[] raw, Class<T> type) {
+        return JSONUtil.toBean(new String(raw, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public <T> List<T> decodeList(byte[] raw, Class<T> type) {
+        return JSONUtil.toList(new String(raw, StandardCharsets.UTF_8), type);
+    }
+}
@@ -0,0 +1,223 @@
+package com.wzy.codedatabase.redis.cache.codec;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.SerializerFactory;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CompatibleFieldSerializer;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import com.esotericsoftware.kryo.util.Pool;
+import com.wzy.codedatabase.redis.cache.RedisData;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 基于Kryo的紧凑二进制编解码
+ * 不要求按id注册类（写入类名），但只有白名单中的类才能写入和读取：redis中的类名不可信，
+ * 任意类名都实例化会被利用构造反序列化攻击链。业务类型通过allow()/allowPackage()加入白名单。
+ * 对象按字段名序列化（CompatibleFieldSerializer），类增删字段后旧数据仍可读取；对象无需无参构造器；
+ * Kryo实例线程不安全，通过对象池复用。
+ * 格式：1字节标记 + Kryo(writeClassAndObject)
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 13:00
+ */
+public class KryoCacheCodec implements CacheCodec {
+
+    public static final byte TAG = 0x01;
+
+    private static final int BUFFER_SIZE = 512;
+
+    /**
+     * 默认白名单：常用的jdk类型（基本类型、包装类型、String等由Kryo按id注册，列出是为了允许它们的数组）
+     */
+    private static final String[] DEFAULT_ALLOWED = {
+            "java.lang.String", "java.lang.Boolean", "java.lang.Byte", "java.lang.Character", "java.lang.Short",
+            "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double", "java.lang.Object",
+            "java.math.BigDecimal", "java.math.BigInteger",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.HashMap", "java.util.LinkedHashMap",
+            "java.util.TreeMap", "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet",
+            "java.util.Date", "java.util.Arrays$ArrayList",
+            "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap", "java.util.Collections$EmptySet",
+            "java.util.Collections$SingletonList", "java.util.Collections$SingletonMap", "java.util.Collections$SingletonSet",
+            "java.sql.Date", "java.sql.Timestamp",
+            "java.time.Instant", "java.time.Duration", "java.time.LocalDate", "java.time.LocalTime",
+            "java.time.LocalDateTime", "java.time.ZonedDateTime", "java.time.OffsetDateTime",
+            RedisData.class.getName()
+    };
+
+    public static final KryoCacheCodec INSTANCE = new KryoCacheCodec();
+
+    /**
+     * 白名单：类名
+     */
+    private final Set<String> allowedClasses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 白名单：包名前缀（以.结尾）
+     */
+    private final List<String> allowedPackages = new CopyOnWriteArrayList<>();
+
+    private final Pool<Kryo> kryoPool = new Pool<Kryo>(true, false, 64) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo(new AllowlistClassResolver(), null);
+            kryo.setRegistrationRequired(false);
+            kryo.setReferences(false);
+            kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            //按字段名写入并分块，读取时跳过已删除的字段、新增的字段保持默认值
+            CompatibleFieldSerializer.CompatibleFieldSerializerConfig config = new CompatibleFieldSerializer.CompatibleFieldSerializerConfig();
+            config.setChunkedEncoding(true);
+            kryo.setDefaultSerializer(new SerializerFactory.CompatibleFieldSerializerFactory(config));
+            return kryo;
+        }
+    };
+
+    private final Pool<Output> outputPool = new Pool<Output>(true, false, 64) {
+        @Override
+        protected Output create() {
+            return new Output(BUFFER_SIZE, -1);
+        }
+    };
+
+    public KryoCacheCodec() {
+        allowedClasses.addAll(Arrays.asList(DEFAULT_ALLOWED));
+    }
+
+    /**
+     * 把类型加入白名单（缓存的业务类型及其字段中的非jdk类型都需要加入）
+     * @param types 类型
+     * @return this
+     */
+    public KryoCacheCodec allow(Class<?>... types){
+        for (Class<?> type : types) {
+            allowedClasses.add(type.getName());
+        }
+        return this;
+    }
+
+    /**
+     * 把包（含子包）下的所有类型加入白名单
+     * @param packageName 包名，例如com.wzy.codedatabase.entity
+     * @return this
+     */
+    public KryoCacheCodec allowPackage(String packageName){
+        allowedPackages.add(packageName.endsWith(".") ? packageName : packageName + ".");
+        return this;
+    }
+
+    @Override
+    public byte tag() {
+        return TAG;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Kryo kryo = kryoPool.obtain();
+        Output output = outputPool.obtain();
+        try {
+            output.reset();
+            output.writeByte(TAG);
+            kryo.writeClassAndObject(output, value);
+            return output.toBytes();
+        } finally {
+            outputPool.free(output);
+            kryoPool.free(kryo);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] raw, Class<T> type) {
+        Object value = read(raw);
+        if (value != null && !type.isInstance(value)){
+            throw new CacheDecodeException("缓存数据类型不匹配，期望：" + type.getName() + "，实际：" + value.getClass().getName());
+        }
+        return type.cast(value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> decodeList(byte[] raw, Class<T> type) {
+        Object value = read(raw);
+        if (value == null){
+            return null;
+        }
+        if (!(value instanceof List)){
+            throw new CacheDecodeException("缓存数据类型不匹配，期望：java.util.List，实际：" + value.getClass().getName());
+        }
+        for (Object element : (List<?>) value) {
+            if (element != null && !type.isInstance(element)){
+                throw new CacheDecodeException("缓存数据元素类型不匹配，期望：" + type.getName() + "，实际：" + element.getClass().getName());
+            }
+        }
+        return (List<T>) value;
+    }
+
+    private Object read(byte[] raw){
+        Kryo kryo = kryoPool.obtain();
+        try {
+            return kryo.readClassAndObject(new Input(raw, 1, raw.length - 1));
+        } catch (KryoException e) {
+            throw new CacheDecodeException("Kryo解码失败：" + e.getMessage(), e);
+        } finally {
+            kryoPool.free(kryo);
+        }
+    }
+
+    /**
+     * 类名是否在白名单中（数组按元素类型判断）
+     */
+    private boolean isAllowed(String className){
+        int dimensions = 0;
+        while (dimensions < className.length() && className.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions > 0){
+            //基本类型数组，例如[I；对象数组，例如[Ljava.lang.String;
+            if (className.charAt(dimensions) != 'L'){
+                return true;
+            }
+            className = className.substring(dimensions + 1, className.length() - 1);
+        }
+        if (allowedClasses.contains(className)){
+            return true;
+        }
+        for (String prefix : allowedPackages) {
+            if (className.startsWith(prefix)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按类名读写的类型只接受白名单：写入时尽早发现遗漏的登记，读取时在加载类之前拒绝
+     */
+    private final class AllowlistClassResolver extends DefaultClassResolver {
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        protected void writeName(Output output, Class type, Registration registration) {
+            if (!isAllowed(type.getName())){
+                throw new KryoException("类型不在白名单中，请通过KryoCacheCodec.allow()登记：" + type.getName());
+            }
+            super.writeName(output, type, registration);
+        }
+
+        @Override
+        protected Class<?> getTypeByName(String className) {
+            if (!isAllowed(className)){
+                throw new KryoException("类型不在白名单中，拒绝反序列化：" + className);
+            }
+            return super.getTypeByName(className);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.wzy.codedatabase.redis.cache.flight;
+
+import com.wzy.codedatabase.redis.cache.async.AsyncRedis;
+import com.wzy.codedatabase.redis.cache.async.AsyncSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 缓存重建完成通知
+ * 获取分布式锁失败的节点不再轮询，而是订阅重建完成消息：持有锁的节点写入缓存后向频道发布key，
+ * 其他节点上等待该key的线程被唤醒后重新读取redis。
+ * 使用方式：先register()登记等待，再读redis、抢锁，失败后await()，避免读和登记之间错过通知。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 11:00
+ */
+@Slf4j
+@Component
+public class RebuildNotifier implements MessageListener {
+
+    /**
+     * 重建完成通知频道
+     */
+    public static final String REBUILT_CHANNEL = "cache:rebuilt";
+
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    @Resource
+    private AsyncRedis asyncRedis;
+
+    @Resource
+    private RedisMessageListenerContainer cacheMessageListenerContainer;
+
+    @PostConstruct
+    public void init(){
+        cacheMessageListenerContainer.addMessageListener(this, new ChannelTopic(REBUILT_CHANNEL));
+    }
+
+    /**
+     * 登记等待某个key的重建完成
+     * @param key 缓存key
+     * @return 重建完成时完成的future
+     */
+    public CompletableFuture<Void> register(String key){
+        return waiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+    }
+
+    /**
+     * 等待重建完成通知，超时后返回（调用方应重新检查redis，持锁节点可能已宕机）
+     * @param key 缓存key
+     * @param signal register()返回的future
+     * @param timeoutMillis 最长等待时间
+     * @return 是否收到通知
+     */
+    public boolean await(String key, CompletableFuture<Void> signal, long timeoutMillis) throws InterruptedException {
+        try {
+            signal.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            waiters.remove(key, signal);
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 等待多个key的重建完成通知（批量读取），所有key共用一个超时时间，超时的key取消登记
+     * @param signals key到register()返回的future的映射
+     * @param timeoutMillis 最长等待时间
+     * @return 收到通知的key个数
+     */
+    public int awaitAll(Map<String, CompletableFuture<Void>> signals, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        int notified = 0;
+        for (Map.Entry<String, CompletableFuture<Void>> entry : signals.entrySet()) {
+            long remaining = Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            if (await(entry.getKey(), entry.getValue(), remaining)){
+                notified++;
+            }
+        }
+        return notified;
+    }
+
+    /**
+     * 异步等待重建完成通知，超时后以false完成（不占用线程）
+     * @param key 缓存key
+     * @param signal register()返回的future
+     * @param timeoutMillis 最长等待时间
+     * @return 是否收到通知
+     */
+    public CompletableFuture<Boolean> awaitAsync(String key, CompletableFuture<Void> signal, long timeoutMillis){
+        CompletableFuture<Boolean> notified = signal.handle((v, e) -> Boolean.TRUE);
+        return AsyncSupport.completeOnTimeout(notified, Boolean.FALSE, timeoutMillis).thenApply(flag -> {
+            if (!flag){
+                waiters.remove(key, signal);
+            }
+            return flag;
+        });
+    }
+
+    /**
+     * 取消登记（已经读到数据或自己完成了重建）
+     * @param key 缓存key
+     * @param signal register()返回的future
+     */
+    public void unregister(String key, CompletableFuture<Void> signal){
+        waiters.remove(key, signal);
+    }
+
+    /**
+     * 发布某个key重建完成
+     * @param key 缓存key
+     */
+    public void publish(String key){
+        publishAsync(key);
+    }
+
+    /**
+     * 异步发布某个key重建完成，发布失败只记录日志（等待方会在超时后重新检查redis）
+     * @param key 缓存key
+     * @return 发布完成的future
+     */
+    public CompletableFuture<Void> publishAsync(String key){
+        return asyncRedis.publish(REBUILT_CHANNEL, key).handle((receivers, e) -> {
+            if (e != null){
+                log.warn("发布重建完成通知失败：{}", key, e);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        CompletableFuture<Void> signal = waiters.remove(key);
+        if (signal != null){
+            signal.complete(null);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.wzy.codedatabase.redis.cache.flight;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 进程内的请求合并（single-flight）
+ * 同一个key同时只有一个线程（leader）执行加载逻辑，其余并发线程等待并共享leader的结果，
+ * 从而同一JVM内只有一个线程去竞争分布式锁、查询数据库。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 11:00
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 执行或加入同一个key正在进行的加载
+     * @param key 合并的键
+     * @param loader 加载逻辑
+     * @param <T> 结果类型
+     * @return 加载结果
+     * @throws InterruptedException 等待被中断
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Callable<T> loader) throws InterruptedException {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null){
+            //1.已有leader，等待共享结果
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        //2.成为leader，执行加载
+        try {
+            T result = loader.call();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            if (e instanceof InterruptedException){
+                throw (InterruptedException) e;
+            }
+            throw rethrow(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 异步执行或加入同一个key正在进行的加载，与execute()共用同一组正在进行的加载
+     * @param key 合并的键
+     * @param loader 返回future的加载逻辑，只在成为leader时调用
+     * @param <T> 结果类型
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> loader){
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null){
+            //1.已有leader，共享结果
+            return (CompletableFuture<T>) (CompletableFuture<?>) existing;
+        }
+        //2.成为leader，加载完成后移除再完成，之后到来的请求重新加载
+        CompletableFuture<T> load;
+        try {
+            load = loader.get();
+        } catch (Throwable e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            return (CompletableFuture<T>) (CompletableFuture<?>) future;
+        }
+        load.whenComplete((result, e) -> {
+            inFlight.remove(key, future);
+            if (e == null){
+                future.complete(result);
+            } else {
+                future.completeExceptionally(e instanceof java.util.concurrent.CompletionException && e.getCause() != null
+                        ? e.getCause() : e);
+            }
+        });
+        return (CompletableFuture<T>) (CompletableFuture<?>) future;
+    }
+
+    /**
+     * @return 当前正在加载的key数量
+     */
+    public int inFlightCount(){
+        return inFlight.size();
+    }
+
+    private static RuntimeException rethrow(Throwable e){
+        if (e instanceof RuntimeException){
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error){
+            throw (Error) e;
+        }
+        return new RuntimeException(e);
+    }
+}
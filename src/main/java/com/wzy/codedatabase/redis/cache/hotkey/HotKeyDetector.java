@@ -0,0 +1,293 @@
+package com.wzy.codedatabase.redis.cache.hotkey;
+
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import com.wzy.codedatabase.redis.cache.near.NearCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点key探测
+ * 每次读取时按采样率把key计入count-min sketch（4行），用两个窗口轮换近似滑动窗口：估计值 = (当前窗口 + 上一窗口) * 采样倍数。
+ * 估计值超过阈值的key被提升为热点，其值放入本地短时缓存，不再访问redis；窗口轮换时估计值低于阈值一半的热点被降级。
+ * 只对CachePolicy中开启了hotKeyEnabled的前缀生效（默认关闭）。
+ * 读路径只做随机数采样、字符串哈希和数组自增，不分配对象。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 18:00
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    /**
+     * sketch每行的宽度（2的幂）
+     */
+    private static final int WIDTH = 1 << 14;
+
+    private static final int MASK = WIDTH - 1;
+
+    /**
+     * 窗口长度（毫秒）
+     */
+    private static final long WINDOW_MILLIS = 1000L;
+
+    /**
+     * 全局开关，各前缀还需要在CachePolicy中开启hotKeyEnabled
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * 采样：每2^sampleShift次访问计数一次
+     */
+    private volatile int sampleShift = 3;
+
+
+    /**
+     * 热点阈值：两个窗口内的估计访问次数
+     */
+    private volatile long threshold = 2000L;
+
+    /**
+     * 热点key本地缓存的存活时间（毫秒）
+     */
+    private volatile long localTtlMillis = 1000L;
+
+    /**
+     * 两个轮换的计数窗口
+     */
+    private final AtomicIntegerArray[] windows = {
+            new AtomicIntegerArray(DEPTH * WIDTH), new AtomicIntegerArray(DEPTH * WIDTH)};
+
+    private volatile int current;
+
+    private final Map<String, Long> hotKeys = new ConcurrentHashMap<>();
+
+    private final NearCache localCache = new NearCache("hotkey:", 1_000, 64L * 1024 * 1024, Long.MAX_VALUE);
+
+    private final List<HotKeyListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    private final ScheduledExecutorService rotateExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hot-key-window");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void start(){
+        rotateExecutor.scheduleAtFixedRate(this::rotate, WINDOW_MILLIS, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop(){
+        rotateExecutor.shutdownNow();
+    }
+
+    /**
+     * 记录一次访问（按采样率），达到阈值时提升为热点
+     * @param key 缓存key
+     */
+    public void record(String key){
+        if (!enabled){
+            return;
+        }
+        int shift = sampleShift;
+        if (shift > 0 && (ThreadLocalRandom.current().nextInt() & ((1 << shift) - 1)) != 0){
+            return;
+        }
+        if (!cachePolicyRegistry.resolve(key).isHotKeyEnabled()){
+            return;
+        }
+        sampled.increment();
+        int h = spread(key.hashCode());
+        AtomicIntegerArray now = windows[current];
+        AtomicIntegerArray prev = windows[current ^ 1];
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int idx = i * WIDTH + (((h * SEEDS[i]) >>> 16) & MASK);
+            long count = (long) now.incrementAndGet(idx) + prev.get(idx);
+            min = Math.min(min, count);
+        }
+        long estimate = min << shift;
+        if (estimate >= threshold && !hotKeys.containsKey(key)){
+            promote(key, estimate);
+        }
+    }
+
+    /**
+     * @param key 缓存key
+     * @return 是否是热点key
+     */
+    public boolean isHot(String key){
+        return !hotKeys.isEmpty() && hotKeys.containsKey(key);
+    }
+
+    /**
+     * 读取热点key的本地缓存
+     * @param key 缓存key
+     * @return 缓存对象，非热点或未命中返回null
+     */
+    public Object getLocal(String key){
+        return isHot(key) ? localCache.get(key) : null;
+    }
+
+    /**
+     * 热点key写入本地缓存（非热点忽略）
+     * @param key 缓存key
+     * @param value 对象（空值传NearCache.NULL_VALUE）
+     * @param weight 权重
+     * @param maxTtlMillis 最长存活时间，与热点本地缓存存活时间取较小值
+     */
+    public void putLocal(String key, Object value, long weight, long maxTtlMillis){
+        if (isHot(key)){
+            localCache.put(key, value, weight, Math.min(localTtlMillis, maxTtlMillis));
+        }
+    }
+
+    /**
+     * 使热点key的本地缓存失效（由本地缓存的跨节点失效广播调用）
+     * @param key 缓存key
+     */
+    public void invalidate(String key){
+        if (!hotKeys.isEmpty()){
+            localCache.invalidate(key);
+        }
+    }
+
+    public void addListener(HotKeyListener listener){
+        listeners.add(listener);
+    }
+
+    private void promote(String key, long estimate){
+        if (hotKeys.putIfAbsent(key, estimate) != null){
+            return;
+        }
+        promotions.increment();
+        log.info("发现热点key：{}，估计访问次数：{}", key, estimate);
+        for (HotKeyListener listener : listeners) {
+            try {
+                listener.onPromoted(key, estimate);
+            } catch (Exception e) {
+                log.warn("热点key监听器执行失败", e);
+            }
+        }
+    }
+
+    /**
+     * 窗口轮换：清空最旧的窗口作为新的当前窗口，并降级访问量回落的热点key
+     */
+    private void rotate(){
+        try {
+            int next = current ^ 1;
+            AtomicIntegerArray window = windows[next];
+            for (int i = 0; i < window.length(); i++) {
+                window.set(i, 0);
+            }
+            current = next;
+            for (String key : hotKeys.keySet()) {
+                long estimate = estimate(key);
+                if (estimate < threshold / 2){
+                    demote(key, estimate);
+                } else {
+                    hotKeys.put(key, estimate);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("热点key窗口轮换失败", e);
+        }
+    }
+
+    private void demote(String key, long estimate){
+        if (hotKeys.remove(key) == null){
+            return;
+        }
+        localCache.invalidate(key);
+        demotions.increment();
+        log.info("热点key降级：{}，估计访问次数：{}", key, estimate);
+        for (HotKeyListener listener : listeners) {
+            try {
+                listener.onDemoted(key, estimate);
+            } catch (Exception e) {
+                log.warn("热点key监听器执行失败", e);
+            }
+        }
+    }
+
+    private long estimate(String key){
+        int h = spread(key.hashCode());
+        AtomicIntegerArray now = windows[current];
+        AtomicIntegerArray prev = windows[current ^ 1];
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            int idx = i * WIDTH + (((h * SEEDS[i]) >>> 16) & MASK);
+            min = Math.min(min, (long) now.get(idx) + prev.get(idx));
+        }
+        return min << sampleShift;
+    }
+
+    private static int spread(int h){
+        h ^= h >>> 16;
+        h *= 0x45D9F3B;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return 统计快照
+     */
+    public HotKeyStats stats(){
+        return new HotKeyStats(new HashMap<>(hotKeys), promotions.sum(), demotions.sum(), sampled.sum(), localCache.stats());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param key 缓存key
+     * @return 该key所属前缀是否开启了热点key探测
+     */
+    public boolean isEnabledFor(String key) {
+        return enabled && cachePolicyRegistry.resolve(key).isHotKeyEnabled();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setSampleShift(int sampleShift) {
+        this.sampleShift = sampleShift;
+    }
+
+    public void setThreshold(long threshold) {
+        this.threshold = threshold;
+    }
+
+    public void setLocalTtlMillis(long localTtlMillis) {
+        this.localTtlMillis = localTtlMillis;
+    }
+}
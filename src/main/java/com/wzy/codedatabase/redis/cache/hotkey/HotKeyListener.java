@@ -0,0 +1,24 @@
+package com.wzy.codedatabase.redis.cache.hotkey;
+
+/**
+ * 热点key事件监听
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 18:00
+ */
+public interface HotKeyListener {
+
+    /**
+     * key被判定为热点，已开启本地短时缓存
+     * @param key 缓存key
+     * @param estimate 滑动窗口内的估计访问次数
+     */
+    void onPromoted(String key, long estimate);
+
+    /**
+     * key访问量回落，已取消本地短时缓存
+     * @param key 缓存key
+     * @param estimate 滑动窗口内的估计访问次数
+     */
+    void onDemoted(String key, long estimate);
+}
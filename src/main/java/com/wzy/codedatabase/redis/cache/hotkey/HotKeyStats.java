@@ -0,0 +1,32 @@
+package com.wzy.codedatabase.redis.cache.hotkey;
+
+import com.wzy.codedatabase.redis.cache.near.NearCacheStats;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 热点key探测的统计快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 18:00
+ */
+@Data
+@AllArgsConstructor
+public class HotKeyStats {
+    /**
+     * 当前热点key及其估计访问次数
+     */
+    private Map<String, Long> hotKeys;
+    private long promotions;
+    private long demotions;
+    /**
+     * 被采样计数的访问次数
+     */
+    private long sampled;
+    /**
+     * 热点key本地短时缓存的统计
+     */
+    private NearCacheStats localCache;
+}
@@ -0,0 +1,39 @@
+package com.wzy.codedatabase.redis.cache.limit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 某个key前缀的数据库并发限制快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+@Data
+@AllArgsConstructor
+public class DbLimitSnapshot {
+    private String keyPrefix;
+    private DbLimiter.Overload overload;
+    /**
+     * 当前并发上限
+     */
+    private int limit;
+    /**
+     * 正在执行的数据库查询数
+     */
+    private int inFlight;
+    /**
+     * 基准查询耗时（毫秒），近似数据库无排队时的耗时，用于判断延迟是否升高
+     */
+    private double baselineMillis;
+    /**
+     * 经过等待后获得许可的次数
+     */
+    private long waited;
+    /**
+     * 被拒绝的次数：快速失败、返回旧数据、等待超时
+     */
+    private long rejectedFailFast;
+    private long rejectedStale;
+    private long rejectedTimeout;
+}
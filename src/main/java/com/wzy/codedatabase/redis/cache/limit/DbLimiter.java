@@ -0,0 +1,361 @@
+package com.wzy.codedatabase.redis.cache.limit;
+
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.async.AsyncSupport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 某个key前缀查询数据库（dbFallBack）的自适应并发限制
+ * 上限按AIMD调整，每SAMPLE_BATCH次查询调整一次：批平均耗时不超过基准耗时的latencyTolerance倍、且并发接近上限时，
+ * 每完成约limit次查询上限加1；批平均耗时超过容忍倍数或批内有查询抛出异常时上限乘以BACKOFF_RATIO。
+ * 基准耗时近似数据库无排队时的耗时（见BASELINE_WINDOW_NANOS）。上限在[dbLimitMin, dbLimitMax]之间。
+ * 达到上限时的处理方式见Overload；等待许可的时间不计入查询耗时。
+ * 异步等待者（acquireAsync）不占用线程，释放许可时优先交给异步等待者，再唤醒同步等待的线程。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+public class DbLimiter {
+
+    /**
+     * 乘性减小的比例
+     */
+    private static final double BACKOFF_RATIO = 0.9D;
+
+    /**
+     * 每批采样数：按批的平均耗时调整上限，单次查询的抖动不会触发调整
+     */
+    private static final int SAMPLE_BATCH = 10;
+
+    /**
+     * 基准耗时窗口：基准取最近两个窗口内批平均耗时的最小值，
+     * 持续排队不会把基准拉高，数据库本身变慢时基准最多两个窗口后跟上
+     */
+    private static final long BASELINE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 达到并发上限时的处理方式，在CachePolicy中按前缀配置
+     */
+    public enum Overload {
+        /**
+         * 调用方有逻辑过期的旧数据时直接返回旧数据，没有旧数据时等待
+         */
+        SERVE_STALE,
+        /**
+         * 等待许可，超过dbLimitWaitMillis后拒绝
+         */
+        WAIT,
+        /**
+         * 直接拒绝
+         */
+        FAIL_FAST
+    }
+
+    private final String keyPrefix;
+
+    private volatile CachePolicy policy;
+
+    /**
+     * 当前上限（小数部分用于加性增长），只在synchronized方法中修改
+     */
+    private volatile double limit;
+
+    /**
+     * 当前批的采样：耗时总和、采样数、最大并发、是否有失败（只在onSample中访问）
+     */
+    private long batchNanos;
+    private int batchCount;
+    private int batchRunning;
+    private boolean batchFailed;
+
+    /**
+     * 当前窗口和上一个窗口内批平均耗时的最小值（纳秒），0表示没有采样
+     */
+    private long windowMinNanos;
+    private long previousWindowMinNanos;
+    private long windowStartNanos = System.nanoTime();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 等待许可的线程数，为0时释放许可不加锁
+     */
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * 异步等待许可的请求，结果为开始查询的时间（纳秒）
+     */
+    private final ConcurrentLinkedQueue<CompletableFuture<Long>> asyncWaiters = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    final LongAdder waited = new LongAdder();
+    final LongAdder rejectedFailFast = new LongAdder();
+    final LongAdder rejectedStale = new LongAdder();
+    final LongAdder rejectedTimeout = new LongAdder();
+
+    DbLimiter(String keyPrefix, CachePolicy policy) {
+        this.keyPrefix = keyPrefix;
+        this.policy = policy;
+        this.limit = clamp(policy.getDbLimitInitial(), policy);
+    }
+
+    /**
+     * 按新的策略调整上限范围（重新注册策略时调用），已有的上限和统计保留
+     */
+    synchronized void configure(CachePolicy policy){
+        this.policy = policy;
+        this.limit = clamp(limit, policy);
+    }
+
+    CachePolicy policy(){
+        return policy;
+    }
+
+    /**
+     * 获取一次查询数据库的许可
+     * @param staleAvailable 调用方是否有逻辑过期的旧数据可以返回
+     * @return 开始查询的时间（纳秒），查询结束后传给release()
+     * @throws DbOverloadException 达到上限且按策略拒绝（等待时被中断也视为拒绝，并保留中断标记）
+     */
+    public long acquire(boolean staleAvailable){
+        //1.未达到上限，直接获取
+        if (tryAcquire()){
+            return System.nanoTime();
+        }
+        //2.达到上限，按策略处理
+        CachePolicy p = policy;
+        if (p.getDbLimitOverload() == Overload.FAIL_FAST){
+            rejectedFailFast.increment();
+            throw new DbOverloadException(keyPrefix, limit());
+        }
+        if (p.getDbLimitOverload() == Overload.SERVE_STALE && staleAvailable){
+            rejectedStale.increment();
+            throw new DbOverloadException(keyPrefix, limit());
+        }
+        //3.等待其他查询完成释放许可，超过等待时间后拒绝
+        long remaining = TimeUnit.MILLISECONDS.toNanos(p.getDbLimitWaitMillis());
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            while (!tryAcquire()){
+                if (remaining <= 0L){
+                    rejectedTimeout.increment();
+                    throw new DbOverloadException(keyPrefix, limit());
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedTimeout.increment();
+            throw new DbOverloadException(keyPrefix, limit());
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+        waited.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * 异步获取一次查询数据库的许可，策略与acquire()相同，等待许可时不占用线程
+     * @param staleAvailable 调用方是否有逻辑过期的旧数据可以返回
+     * @return 开始查询的时间（纳秒），查询结束后传给release()；按策略拒绝时以DbOverloadException失败
+     */
+    public CompletableFuture<Long> acquireAsync(boolean staleAvailable){
+        //1.未达到上限，直接获取
+        if (tryAcquire()){
+            return CompletableFuture.completedFuture(System.nanoTime());
+        }
+        //2.达到上限，按策略处理
+        CachePolicy p = policy;
+        if (p.getDbLimitOverload() == Overload.FAIL_FAST){
+            rejectedFailFast.increment();
+            return AsyncSupport.failed(new DbOverloadException(keyPrefix, limit()));
+        }
+        if (p.getDbLimitOverload() == Overload.SERVE_STALE && staleAvailable){
+            rejectedStale.increment();
+            return AsyncSupport.failed(new DbOverloadException(keyPrefix, limit()));
+        }
+        //3.排队等待释放许可，超过等待时间后拒绝
+        CompletableFuture<Long> waiter = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = AsyncSupport.schedule(() -> {
+            if (waiter.completeExceptionally(new DbOverloadException(keyPrefix, limit()))){
+                asyncWaiters.remove(waiter);
+                rejectedTimeout.increment();
+            }
+        }, p.getDbLimitWaitMillis(), TimeUnit.MILLISECONDS);
+        waiter.whenComplete((start, e) -> {
+            if (e == null){
+                timeout.cancel(false);
+                waited.increment();
+            }
+        });
+        asyncWaiters.add(waiter);
+        //4.入队前可能刚好有许可释放，再检查一次
+        handOffAsync();
+        return waiter;
+    }
+
+    /**
+     * 释放许可，并用本次查询耗时调整上限
+     * @param startNanos acquire()的返回值
+     * @param success 查询是否正常返回
+     */
+    public void release(long startNanos, boolean success){
+        long rtt = System.nanoTime() - startNanos;
+        int running = inFlight.getAndDecrement();
+        onSample(rtt, running, success);
+        if (!asyncWaiters.isEmpty()){
+            handOffAsync();
+        }
+        signalWaiters();
+    }
+
+    private void signalWaiters(){
+        if (waiters.get() > 0){
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 把空闲许可按顺序交给异步等待者；等待者已超时时归还许可
+     */
+    private void handOffAsync(){
+        CompletableFuture<Long> waiter;
+        while ((waiter = asyncWaiters.peek()) != null){
+            if (waiter.isDone()){
+                asyncWaiters.remove(waiter);
+                continue;
+            }
+            if (!tryAcquire()){
+                return;
+            }
+            if (!asyncWaiters.remove(waiter)){
+                inFlight.decrementAndGet();
+                continue;
+            }
+            //在续接线程池中完成，等待者的后续阶段（查询数据库）不在释放许可的线程中执行
+            CompletableFuture<Long> granted = waiter;
+            AsyncSupport.EXECUTOR.execute(() -> {
+                if (!granted.complete(System.nanoTime())){
+                    //已超时，归还许可
+                    inFlight.decrementAndGet();
+                    handOffAsync();
+                    signalWaiters();
+                }
+            });
+        }
+    }
+
+    private boolean tryAcquire(){
+        while (true){
+            int current = inFlight.get();
+            if (current >= (int) limit){
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 累计一次采样，满一批时按AIMD调整上限
+     * @param rtt 本次查询耗时（纳秒）
+     * @param running 本次查询结束前正在执行的查询数（包含本次）
+     * @param success 查询是否正常返回
+     */
+    private synchronized void onSample(long rtt, int running, boolean success){
+        //1.累计到当前批
+        batchNanos += rtt;
+        batchRunning = Math.max(batchRunning, running);
+        batchFailed |= !success;
+        if (++batchCount < SAMPLE_BATCH){
+            return;
+        }
+        long average = batchNanos / batchCount;
+        int maxRunning = batchRunning;
+        boolean failed = batchFailed;
+        batchNanos = 0L;
+        batchCount = 0;
+        batchRunning = 0;
+        batchFailed = false;
+
+        //2.更新基准耗时窗口
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= BASELINE_WINDOW_NANOS){
+            previousWindowMinNanos = windowMinNanos;
+            windowMinNanos = 0L;
+            windowStartNanos = now;
+        }
+        if (windowMinNanos == 0L || average < windowMinNanos){
+            windowMinNanos = average;
+        }
+
+        //3.失败或延迟升高，乘性减小；延迟正常且并发已接近上限（确实受上限约束），加性增大
+        CachePolicy p = policy;
+        if (failed || average > baselineNanos() * p.getDbLimitLatencyTolerance()){
+            limit = clamp(limit * BACKOFF_RATIO, p);
+        } else if (maxRunning * 2 >= (int) limit){
+            limit = clamp(limit + (double) SAMPLE_BATCH / limit, p);
+        }
+    }
+
+    /**
+     * @return 基准耗时（纳秒），近似数据库无排队时的查询耗时
+     */
+    private long baselineNanos(){
+        if (previousWindowMinNanos == 0L){
+            return windowMinNanos;
+        }
+        return Math.min(windowMinNanos, previousWindowMinNanos);
+    }
+
+    private static double clamp(double value, CachePolicy p){
+        int min = Math.max(1, p.getDbLimitMin());
+        return Math.min(Math.max(value, min), Math.max(min, p.getDbLimitMax()));
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * @return 当前并发上限
+     */
+    public int limit(){
+        return (int) limit;
+    }
+
+    /**
+     * @return 正在执行的查询数
+     */
+    public int inFlight(){
+        return inFlight.get();
+    }
+
+    public DbLimitSnapshot snapshot(){
+        double baselineMillis;
+        synchronized (this){
+            baselineMillis = baselineNanos() / 1_000_000D;
+        }
+        return new DbLimitSnapshot(keyPrefix, policy.getDbLimitOverload(), limit(), inFlight(), baselineMillis,
+                waited.sum(), rejectedFailFast.sum(), rejectedStale.sum(), rejectedTimeout.sum());
+    }
+}
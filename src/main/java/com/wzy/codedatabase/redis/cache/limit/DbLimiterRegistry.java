@@ -0,0 +1,97 @@
+package com.wzy.codedatabase.redis.cache.limit;
+
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库并发限制注册表，按key前缀（CachePolicy.dbLimitEnabled）维护DbLimiter
+ * 同时是micrometer的MeterBinder：cache.db.limit、cache.db.inflight、cache.db.waited、cache.db.rejected{reason}。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+@Component
+public class DbLimiterRegistry implements MeterBinder {
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    private final ConcurrentHashMap<String, DbLimiter> limiters = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * 获取key前缀或完整key对应的并发限制
+     * @param keyOrPrefix key前缀或完整的key
+     * @return 并发限制，前缀未开启时返回null
+     */
+    public DbLimiter of(String keyOrPrefix){
+        CachePolicy policy = cachePolicyRegistry.resolve(keyOrPrefix);
+        if (!policy.isDbLimitEnabled()){
+            return null;
+        }
+        DbLimiter limiter = limiters.get(policy.getKeyPrefix());
+        return limiter != null && limiter.policy() == policy ? limiter : create(policy);
+    }
+
+    private synchronized DbLimiter create(CachePolicy policy){
+        DbLimiter limiter = limiters.get(policy.getKeyPrefix());
+        if (limiter == null){
+            limiter = new DbLimiter(policy.getKeyPrefix(), policy);
+            limiters.put(policy.getKeyPrefix(), limiter);
+            MeterRegistry registry = meterRegistry;
+            if (registry != null){
+                bind(registry, limiter);
+            }
+        } else if (limiter.policy() != policy){
+            //策略重新注册，保留已有的上限和统计
+            limiter.configure(policy);
+        }
+        return limiter;
+    }
+
+    /**
+     * @return 各前缀的并发限制快照
+     */
+    public List<DbLimitSnapshot> snapshot(){
+        List<DbLimitSnapshot> list = new ArrayList<>();
+        for (DbLimiter limiter : limiters.values()) {
+            list.add(limiter.snapshot());
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        for (DbLimiter limiter : limiters.values()) {
+            bind(registry, limiter);
+        }
+    }
+
+    private static void bind(MeterRegistry registry, DbLimiter limiter){
+        Tags tags = Tags.of("prefix", limiter.getKeyPrefix());
+        Gauge.builder("cache.db.limit", limiter, DbLimiter::limit).tags(tags).register(registry);
+        Gauge.builder("cache.db.inflight", limiter, DbLimiter::inFlight).tags(tags).register(registry);
+        counter(registry, "cache.db.waited", tags, limiter.waited);
+        counter(registry, "cache.db.rejected", tags.and("reason", "fail_fast"), limiter.rejectedFailFast);
+        counter(registry, "cache.db.rejected", tags.and("reason", "stale"), limiter.rejectedStale);
+        counter(registry, "cache.db.rejected", tags.and("reason", "timeout"), limiter.rejectedTimeout);
+    }
+
+    private static void counter(MeterRegistry registry, String name, Tags tags, LongAdder adder){
+        FunctionCounter.builder(name, adder, LongAdder::doubleValue).tags(tags).register(registry);
+    }
+}
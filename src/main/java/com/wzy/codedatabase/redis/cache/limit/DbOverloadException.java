@@ -0,0 +1,25 @@
+package com.wzy.codedatabase.redis.cache.limit;
+
+/**
+ * 数据库并发达到上限，本次查询被拒绝（快速失败或等待超时）
+ * 调用方持有逻辑过期的旧数据时捕获该异常返回旧数据。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+public class DbOverloadException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DbOverloadException(String keyPrefix, int limit) {
+        super("数据库并发已达上限，key前缀：" + keyPrefix + "，当前上限：" + limit);
+    }
+
+    /**
+     * 拒绝是常规的流量控制手段，不需要异常栈
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
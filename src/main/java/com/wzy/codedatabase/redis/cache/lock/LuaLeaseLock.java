@@ -0,0 +1,87 @@
+package com.wzy.codedatabase.redis.cache.lock;
+
+import cn.hutool.core.util.BooleanUtil;
+import cn.hutool.core.util.IdUtil;
+import com.wzy.codedatabase.redis.cache.async.AsyncRedis;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单次往返的租约锁
+ * 获取：SET key token NX PX lease（一次往返）；释放：lua脚本比较令牌，相同才删除（一次往返）。
+ * 令牌为节点id + 自增序号，不可重入，没有看门狗续期：租约应大于重建耗时。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 22:00
+ */
+@Slf4j
+@Component
+public class LuaLeaseLock implements RebuildLock {
+
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private AsyncRedis asyncRedis;
+
+    @Override
+    public RebuildLease tryLock(String key, long leaseMillis) {
+        String token = nodeId + ':' + sequence.incrementAndGet();
+        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, token, leaseMillis, TimeUnit.MILLISECONDS);
+        if (!BooleanUtil.isTrue(flag)){
+            return null;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)){
+                Long deleted = stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(key), token);
+                if (deleted == null || deleted == 0L){
+                    log.warn("重建锁 {} 的租约已过期，可能已被其他节点获取", key);
+                }
+            }
+        };
+    }
+
+    @Override
+    public CompletableFuture<RebuildLease> tryLockAsync(String key, long leaseMillis) {
+        String token = nodeId + ':' + sequence.incrementAndGet();
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        byte[] rawToken = token.getBytes(StandardCharsets.UTF_8);
+        return asyncRedis.setIfAbsent(rawKey, rawToken, leaseMillis).thenApply(flag -> {
+            if (!flag){
+                return null;
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            return (RebuildLease) () -> {
+                if (released.compareAndSet(false, true)){
+                    asyncRedis.eval(UNLOCK_SCRIPT.getScriptAsString(), new byte[][]{rawKey}, rawToken)
+                            .whenComplete((deleted, e) -> {
+                                if (e != null){
+                                    log.warn("释放重建锁 {} 失败，等待租约到期", key, e);
+                                } else if (deleted == null || deleted == 0L){
+                                    log.warn("重建锁 {} 的租约已过期，可能已被其他节点获取", key);
+                                }
+                            });
+                }
+            };
+        });
+    }
+}
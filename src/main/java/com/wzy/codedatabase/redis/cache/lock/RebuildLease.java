@@ -0,0 +1,15 @@
+package com.wzy.codedatabase.redis.cache.lock;
+
+/**
+ * 已获取的重建锁凭证
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 22:00
+ */
+public interface RebuildLease {
+
+    /**
+     * 释放锁，只释放自己持有的锁（租约已过期被他人获取时不做任何事），可以在任意线程中调用，重复调用无副作用
+     */
+    void unlock();
+}
@@ -0,0 +1,72 @@
+package com.wzy.codedatabase.redis.cache.lock;
+
+import com.wzy.codedatabase.redis.cache.async.AsyncSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 缓存重建互斥锁SPI
+ * 获取成功返回锁凭证，释放只能通过凭证进行，因此不会释放不属于自己的锁；凭证可以在其他线程中释放（如重建线程）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 22:00
+ */
+public interface RebuildLock {
+
+    /**
+     * 尝试获取锁，不等待
+     * @param key 锁的名字
+     * @param leaseMillis 租约时间（毫秒），持有者宕机时锁在租约到期后自动释放
+     * @return 锁凭证，获取失败返回null
+     */
+    RebuildLease tryLock(String key, long leaseMillis) throws InterruptedException;
+
+    /**
+     * 异步尝试获取锁，不等待，不占用调用线程；凭证的unlock()同样不阻塞
+     * @param key 锁的名字
+     * @param leaseMillis 租约时间（毫秒）
+     * @return 锁凭证，获取失败时结果为null
+     */
+    CompletableFuture<RebuildLease> tryLockAsync(String key, long leaseMillis);
+
+    /**
+     * 批量尝试获取锁，不等待：所有获取命令一次发出（异步命令在同一连接上流水线发送），总耗时约为一次往返，
+     * 不随key个数增加；每个key单独加锁，集群模式下不要求key在同一个槽
+     * @param keys 锁的名字
+     * @param leaseMillis 租约时间（毫秒）
+     * @return 与keys顺序一致的锁凭证，获取失败的位置为null；有命令失败时释放已获取的锁并以该异常失败
+     */
+    default CompletableFuture<List<RebuildLease>> tryLockAllAsync(List<String> keys, long leaseMillis){
+        List<CompletableFuture<RebuildLease>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(tryLockAsync(key, leaseMillis));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((v, e) -> {
+            List<RebuildLease> leases = new ArrayList<>(futures.size());
+            for (CompletableFuture<RebuildLease> future : futures) {
+                leases.add(future.isCompletedExceptionally() ? null : future.join());
+            }
+            if (e != null){
+                leases.stream().filter(lease -> lease != null).forEach(RebuildLease::unlock);
+                throw AsyncSupport.rethrow(e);
+            }
+            return leases;
+        });
+    }
+
+    /**
+     * 锁的类型，在CachePolicy中按前缀选择
+     */
+    enum Type {
+        /**
+         * Redisson RLock（可重入、基于hash和发布订阅）
+         */
+        REDISSON,
+        /**
+         * 单次往返的租约锁：SET NX PX + 持有者令牌，释放时由lua脚本比较令牌后删除
+         */
+        LEASE
+    }
+}
@@ -0,0 +1,54 @@
+package com.wzy.codedatabase.redis.cache.lock;
+
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于Redisson RLock的重建锁（指定了租约时间，不启用看门狗）
+ * 凭证记录获取锁的线程id，通过unlockAsync(threadId)释放，可以在其他线程中释放。
+ * 异步获取时没有固定的线程，使用负数序号作为持有者id（不会与真实线程id冲突）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 22:00
+ */
+@Component
+public class RedissonRebuildLock implements RebuildLock {
+
+    private final AtomicLong asyncOwnerId = new AtomicLong();
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Override
+    public RebuildLease tryLock(String key, long leaseMillis) throws InterruptedException {
+        RLock lock = redissonClient.getLock(key);
+        if (!lock.tryLock(-1L, leaseMillis, TimeUnit.MILLISECONDS)){
+            return null;
+        }
+        return lease(lock, Thread.currentThread().getId());
+    }
+
+    @Override
+    public CompletableFuture<RebuildLease> tryLockAsync(String key, long leaseMillis) {
+        RLock lock = redissonClient.getLock(key);
+        long ownerId = asyncOwnerId.decrementAndGet();
+        return lock.tryLockAsync(-1L, leaseMillis, TimeUnit.MILLISECONDS, ownerId).toCompletableFuture()
+                .thenApply(flag -> flag ? lease(lock, ownerId) : null);
+    }
+
+    private static RebuildLease lease(RLock lock, long ownerId){
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)){
+                lock.unlockAsync(ownerId);
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import com.wzy.codedatabase.redis.cache.CacheStrategy;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某个key前缀在某个读取策略下的计数和延迟分解
+ * 延迟分为：redis读取（往返）、解码、等待互斥锁（获取锁和等待重建通知）、查询数据库。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 19:00
+ */
+public class CacheMetrics {
+
+    private final String keyPrefix;
+
+    private final CacheStrategy strategy;
+
+    /**
+     * 本地缓存（一级缓存或热点key缓存）命中
+     */
+    final LongAdder localHits = new LongAdder();
+    /**
+     * redis命中
+     */
+    final LongAdder hits = new LongAdder();
+    /**
+     * redis中命中空值标记
+     */
+    final LongAdder nullHits = new LongAdder();
+    /**
+     * redis未命中
+     */
+    final LongAdder misses = new LongAdder();
+    /**
+     * 布隆过滤器拦截
+     */
+    final LongAdder bloomRejected = new LongAdder();
+    /**
+     * 返回了逻辑过期的旧数据
+     */
+    final LongAdder staleServed = new LongAdder();
+    final LongAdder lockAcquired = new LongAdder();
+    final LongAdder lockLost = new LongAdder();
+    /**
+     * 查询数据库重建缓存的次数
+     */
+    final LongAdder rebuilds = new LongAdder();
+
+    final LatencyHistogram redisLatency = new LatencyHistogram();
+    final LatencyHistogram decodeLatency = new LatencyHistogram();
+    final LatencyHistogram lockWaitLatency = new LatencyHistogram();
+    final LatencyHistogram dbLatency = new LatencyHistogram();
+
+    CacheMetrics(String keyPrefix, CacheStrategy strategy) {
+        this.keyPrefix = keyPrefix;
+        this.strategy = strategy;
+    }
+
+    public void localHit(){
+        localHits.increment();
+    }
+
+    public void hit(){
+        hits.increment();
+    }
+
+    public void nullHit(){
+        nullHits.increment();
+    }
+
+    public void miss(){
+        misses.increment();
+    }
+
+    public void bloomRejected(){
+        bloomRejected.increment();
+    }
+
+    public void staleServed(){
+        staleServed.increment();
+    }
+
+    /**
+     * @param acquired 是否获取到锁
+     */
+    public void lock(boolean acquired){
+        (acquired ? lockAcquired : lockLost).increment();
+    }
+
+    /**
+     * 记录一次redis读取（GET或MGET）的耗时，命中情况单独统计
+     * @param startNanos 开始时间（System.nanoTime()）
+     */
+    public void redis(long startNanos){
+        redisLatency.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param startNanos 开始时间（System.nanoTime()）
+     */
+    public void decode(long startNanos){
+        decodeLatency.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @param startNanos 开始时间（System.nanoTime()）
+     */
+    public void lockWait(long startNanos){
+        lockWaitLatency.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 记录一次数据库查询（即一次重建）
+     * @param startNanos 开始时间（System.nanoTime()）
+     */
+    public void db(long startNanos){
+        dbLatency.record(System.nanoTime() - startNanos);
+        rebuilds.increment();
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public CacheStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return 快照
+     */
+    public CacheMetricsSnapshot snapshot(){
+        return new CacheMetricsSnapshot(keyPrefix, strategy,
+                localHits.sum(), hits.sum(), nullHits.sum(), misses.sum(), bloomRejected.sum(), staleServed.sum(),
+                lockAcquired.sum(), lockLost.sum(), rebuilds.sum(),
+                redisLatency.snapshot(), decodeLatency.snapshot(), lockWaitLatency.snapshot(), dbLatency.snapshot());
+    }
+}
@@ -0,0 +1,187 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import com.wzy.codedatabase.redis.cache.CacheStrategy;
+import com.wzy.codedatabase.redis.cache.codec.CompressingCacheCodec;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存统计注册表，按key前缀和读取策略维护CacheMetrics
+ * 通过snapshot()读取快照；同时是micrometer的MeterBinder（引入actuator后自动绑定），
+ * 绑定之后新出现的前缀也会立即注册：
+ * cache.requests{result}、cache.lock{result}、cache.rebuilds、
+ * cache.latency{stage}（计数与总耗时）、cache.latency.percentile{stage,quantile}；
+ * 压缩：cache.compression.writes{result}、cache.compression.bytes{type}、cache.compression.ratio、cache.compression.latency（以上按prefix）；
+ * 解压在读取时按数据格式进行，不区分前缀：cache.decompression.latency（同一名称的指标标签键必须一致）。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 19:00
+ */
+@Component
+public class CacheMetricsRegistry implements MeterBinder {
+
+    private static final CacheStrategy[] STRATEGIES = CacheStrategy.values();
+
+    private static final double[] QUANTILES = {0.5D, 0.9D, 0.99D, 0.999D};
+
+    /**
+     * key前缀 -> 按策略序号排列的统计
+     */
+    private final ConcurrentHashMap<String, CacheMetrics[]> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * key前缀 -> 压缩统计
+     */
+    private final ConcurrentHashMap<String, CompressionStats> compression = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * 获取key前缀在某个策略下的统计，已存在时不分配对象
+     * @param keyPrefix key前缀
+     * @param strategy 读取策略
+     * @return 统计
+     */
+    public CacheMetrics of(String keyPrefix, CacheStrategy strategy){
+        CacheMetrics[] byStrategy = metrics.get(keyPrefix);
+        if (byStrategy == null){
+            byStrategy = metrics.computeIfAbsent(keyPrefix, k -> new CacheMetrics[STRATEGIES.length]);
+        }
+        CacheMetrics m = byStrategy[strategy.ordinal()];
+        return m != null ? m : create(byStrategy, keyPrefix, strategy);
+    }
+
+    private synchronized CacheMetrics create(CacheMetrics[] byStrategy, String keyPrefix, CacheStrategy strategy){
+        CacheMetrics m = byStrategy[strategy.ordinal()];
+        if (m == null){
+            m = new CacheMetrics(keyPrefix, strategy);
+            byStrategy[strategy.ordinal()] = m;
+            MeterRegistry registry = meterRegistry;
+            if (registry != null){
+                bind(registry, m);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * 获取key前缀的压缩统计
+     * @param keyPrefix key前缀，null表示默认策略
+     * @return 压缩统计
+     */
+    public CompressionStats compression(String keyPrefix){
+        String prefix = keyPrefix == null ? "*" : keyPrefix;
+        CompressionStats stats = compression.get(prefix);
+        return stats != null ? stats : createCompression(prefix);
+    }
+
+    private synchronized CompressionStats createCompression(String keyPrefix){
+        CompressionStats stats = compression.get(keyPrefix);
+        if (stats == null){
+            stats = new CompressionStats(keyPrefix);
+            compression.put(keyPrefix, stats);
+            MeterRegistry registry = meterRegistry;
+            if (registry != null){
+                bind(registry, stats);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return 各前缀的压缩统计快照
+     */
+    public List<CompressionSnapshot> compressionSnapshot(){
+        List<CompressionSnapshot> list = new ArrayList<>();
+        for (CompressionStats stats : compression.values()) {
+            list.add(stats.snapshot());
+        }
+        return list;
+    }
+
+    /**
+     * @return 所有前缀和策略的统计快照
+     */
+    public List<CacheMetricsSnapshot> snapshot(){
+        List<CacheMetricsSnapshot> list = new ArrayList<>();
+        for (CacheMetrics[] byStrategy : metrics.values()) {
+            for (CacheMetrics m : byStrategy) {
+                if (m != null){
+                    list.add(m.snapshot());
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        for (CacheMetrics[] byStrategy : metrics.values()) {
+            for (CacheMetrics m : byStrategy) {
+                if (m != null){
+                    bind(registry, m);
+                }
+            }
+        }
+        for (CompressionStats stats : compression.values()) {
+            bind(registry, stats);
+        }
+        latency(registry, "cache.decompression.latency", Tags.empty(), CompressingCacheCodec.DECOMPRESS_LATENCY);
+    }
+
+    private static void bind(MeterRegistry registry, CacheMetrics m){
+        Tags tags = Tags.of("prefix", m.getKeyPrefix(), "strategy", m.getStrategy().name());
+        counter(registry, "cache.requests", tags.and("result", "local_hit"), m.localHits);
+        counter(registry, "cache.requests", tags.and("result", "hit"), m.hits);
+        counter(registry, "cache.requests", tags.and("result", "null_hit"), m.nullHits);
+        counter(registry, "cache.requests", tags.and("result", "miss"), m.misses);
+        counter(registry, "cache.requests", tags.and("result", "bloom_rejected"), m.bloomRejected);
+        counter(registry, "cache.requests", tags.and("result", "stale"), m.staleServed);
+        counter(registry, "cache.lock", tags.and("result", "acquired"), m.lockAcquired);
+        counter(registry, "cache.lock", tags.and("result", "lost"), m.lockLost);
+        counter(registry, "cache.rebuilds", tags, m.rebuilds);
+        latency(registry, "cache.latency", tags.and("stage", "redis"), m.redisLatency);
+        latency(registry, "cache.latency", tags.and("stage", "decode"), m.decodeLatency);
+        latency(registry, "cache.latency", tags.and("stage", "lock_wait"), m.lockWaitLatency);
+        latency(registry, "cache.latency", tags.and("stage", "db"), m.dbLatency);
+    }
+
+    private static void bind(MeterRegistry registry, CompressionStats stats){
+        Tags tags = Tags.of("prefix", stats.getKeyPrefix());
+        counter(registry, "cache.compression.writes", tags.and("result", "compressed"), stats.compressed);
+        counter(registry, "cache.compression.writes", tags.and("result", "incompressible"), stats.incompressible);
+        counter(registry, "cache.compression.bytes", tags.and("type", "raw"), stats.rawBytes);
+        counter(registry, "cache.compression.bytes", tags.and("type", "compressed"), stats.compressedBytes);
+        Gauge.builder("cache.compression.ratio", stats, CompressionStats::ratio).tags(tags).register(registry);
+        latency(registry, "cache.compression.latency", tags, stats.compressLatency);
+    }
+
+    private static void counter(MeterRegistry registry, String name, Tags tags, LongAdder adder){
+        FunctionCounter.builder(name, adder, LongAdder::doubleValue).tags(tags).register(registry);
+    }
+
+    /**
+     * 注册延迟直方图：name（计数与总耗时）和name.percentile{quantile}，其他组件的MeterBinder复用
+     */
+    public static void latency(MeterRegistry registry, String name, Tags tags, LatencyHistogram histogram){
+        FunctionTimer.builder(name, histogram, LatencyHistogram::count, LatencyHistogram::totalNanos,
+                TimeUnit.NANOSECONDS).tags(tags).register(registry);
+        for (double quantile : QUANTILES) {
+            TimeGauge.builder(name + ".percentile", histogram, TimeUnit.NANOSECONDS,
+                    h -> h.percentileNanos(quantile)).tags(tags.and("quantile", String.valueOf(quantile))).register(registry);
+        }
+    }
+}
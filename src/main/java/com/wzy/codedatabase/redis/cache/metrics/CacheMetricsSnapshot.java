@@ -0,0 +1,43 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import com.wzy.codedatabase.redis.cache.CacheStrategy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 某个key前缀在某个读取策略下的统计快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 19:00
+ */
+@Data
+@AllArgsConstructor
+public class CacheMetricsSnapshot {
+    private String keyPrefix;
+    private CacheStrategy strategy;
+    private long localHits;
+    private long hits;
+    private long nullHits;
+    private long misses;
+    private long bloomRejected;
+    private long staleServed;
+    private long lockAcquired;
+    private long lockLost;
+    private long rebuilds;
+    /**
+     * 延迟分解：redis读取、解码、等待互斥锁、查询数据库
+     */
+    private LatencySnapshot redis;
+    private LatencySnapshot decode;
+    private LatencySnapshot lockWait;
+    private LatencySnapshot db;
+
+    /**
+     * @return 命中率（本地缓存命中、redis命中和空值命中都算命中）
+     */
+    public double hitRate(){
+        long hit = localHits + hits + nullHits;
+        long total = hit + misses;
+        return total == 0 ? 0D : (double) hit / total;
+    }
+}
@@ -0,0 +1,25 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 某个key前缀的压缩统计快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 21:00
+ */
+@Data
+@AllArgsConstructor
+public class CompressionSnapshot {
+    private String keyPrefix;
+    private long compressed;
+    private long incompressible;
+    private long rawBytes;
+    private long compressedBytes;
+    /**
+     * 压缩率（压缩后/压缩前）
+     */
+    private double ratio;
+    private LatencySnapshot compress;
+}
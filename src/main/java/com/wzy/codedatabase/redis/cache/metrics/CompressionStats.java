@@ -0,0 +1,77 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 某个key前缀的压缩统计：压缩率和压缩耗时
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 21:00
+ */
+public class CompressionStats {
+
+    private final String keyPrefix;
+
+    /**
+     * 压缩写入的次数
+     */
+    final LongAdder compressed = new LongAdder();
+    /**
+     * 超过阈值但压缩后不更小、原样写入的次数
+     */
+    final LongAdder incompressible = new LongAdder();
+    /**
+     * 压缩写入的数据压缩前后的总字节数
+     */
+    final LongAdder rawBytes = new LongAdder();
+    final LongAdder compressedBytes = new LongAdder();
+
+    final LatencyHistogram compressLatency = new LatencyHistogram();
+
+    CompressionStats(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    /**
+     * 记录一次压缩写入
+     * @param rawLength 压缩前字节数
+     * @param compressedLength 压缩后字节数
+     * @param startNanos 开始时间（System.nanoTime()）
+     */
+    public void compressed(int rawLength, int compressedLength, long startNanos){
+        compressLatency.record(System.nanoTime() - startNanos);
+        compressed.increment();
+        rawBytes.add(rawLength);
+        compressedBytes.add(compressedLength);
+    }
+
+    /**
+     * 记录一次压缩无效（原样写入）
+     * @param rawLength 字节数
+     * @param startNanos 开始时间（System.nanoTime()）
+     */
+    public void incompressible(int rawLength, long startNanos){
+        compressLatency.record(System.nanoTime() - startNanos);
+        incompressible.increment();
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * @return 压缩率（压缩后/压缩前），没有压缩过返回1
+     */
+    public double ratio(){
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1D : (double) compressedBytes.sum() / raw;
+    }
+
+    /**
+     * @return 快照
+     */
+    public CompressionSnapshot snapshot(){
+        return new CompressionSnapshot(keyPrefix, compressed.sum(), incompressible.sum(), rawBytes.sum(),
+                compressedBytes.sum(), ratio(), compressLatency.snapshot());
+    }
+}
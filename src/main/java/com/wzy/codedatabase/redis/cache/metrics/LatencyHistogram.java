@@ -0,0 +1,122 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图（纳秒），按HdrHistogram的思路分桶：每个2的幂区间再等分为32个子桶，相对误差约3%。
+ * 桶是固定大小的数组，记录只做一次下标计算和原子自增，不分配对象，可以在生产环境常开。
+ * 超过2^40纳秒（约18分钟）的值记入最后一个桶。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 19:00
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private static final int MAX_EXP = 40;
+
+    private static final int BUCKET_COUNT = (MAX_EXP - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos){
+        if (nanos < 0){
+            nanos = 0;
+        }
+        buckets.incrementAndGet(indexOf(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)){
+            max = maxNanos.get();
+        }
+    }
+
+    public long count(){
+        return count.sum();
+    }
+
+    public long totalNanos(){
+        return totalNanos.sum();
+    }
+
+    /**
+     * 计算分位数
+     * @param quantile 分位（0~1）
+     * @return 分位数所在桶的上界（纳秒），没有记录时返回0
+     */
+    public long percentileNanos(double quantile){
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0){
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank){
+                return Math.min(upperBoundOf(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * @return 快照（毫秒）
+     */
+    public LatencySnapshot snapshot(){
+        long n = count();
+        return new LatencySnapshot(n,
+                n == 0 ? 0D : toMillis(totalNanos()) / n,
+                toMillis(maxNanos.get()),
+                toMillis(percentileNanos(0.5D)),
+                toMillis(percentileNanos(0.9D)),
+                toMillis(percentileNanos(0.99D)),
+                toMillis(percentileNanos(0.999D)));
+    }
+
+    private static double toMillis(long nanos){
+        return nanos / 1_000_000D;
+    }
+
+    private static int indexOf(long nanos){
+        if (nanos < SUB_COUNT){
+            return (int) nanos;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exp > MAX_EXP){
+            return BUCKET_COUNT - 1;
+        }
+        return (exp - SUB_BITS + 1) * SUB_COUNT + (int) ((nanos >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+    }
+
+    private static long upperBoundOf(int index){
+        if (index < SUB_COUNT){
+            return index;
+        }
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        long sub = index % SUB_COUNT;
+        long width = 1L << (exp - SUB_BITS);
+        return ((SUB_COUNT + sub) << (exp - SUB_BITS)) + width - 1;
+    }
+}
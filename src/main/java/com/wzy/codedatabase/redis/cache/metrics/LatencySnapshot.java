@@ -0,0 +1,22 @@
+package com.wzy.codedatabase.redis.cache.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 延迟直方图的快照（毫秒）
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 19:00
+ */
+@Data
+@AllArgsConstructor
+public class LatencySnapshot {
+    private long count;
+    private double meanMillis;
+    private double maxMillis;
+    private double p50Millis;
+    private double p90Millis;
+    private double p99Millis;
+    private double p999Millis;
+}
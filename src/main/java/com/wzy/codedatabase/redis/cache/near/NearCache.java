@@ -0,0 +1,151 @@
+package com.wzy.codedatabase.redis.cache.near;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内一级缓存（单个key前缀一份）
+ * 保存已经反序列化好的对象，命中时不访问redis也不解析json。
+ * 条目数和总权重均有上限，超过上限时先清理过期条目，再按迭代顺序近似淘汰。
+ * 注意：命中返回的是同一个对象实例，调用方不应修改返回值。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 10:00
+ */
+public class NearCache {
+
+    /**
+     * 缓存空值（对应redis中的空字符串标记）
+     */
+    public static final Object NULL_VALUE = new Object();
+
+    private final String keyPrefix;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public NearCache(String keyPrefix, int maxEntries, long maxWeight, long ttlMillis) {
+        this.keyPrefix = keyPrefix;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 读取本地缓存
+     * @param key 键
+     * @return 缓存对象；空值标记返回NULL_VALUE；未命中返回null
+     */
+    public Object get(String key){
+        Entry entry = map.get(key);
+        if (entry == null){
+            misses.increment();
+            return null;
+        }
+        if (entry.expireAt - System.currentTimeMillis() <= 0){
+            //已过期，移除
+            if (map.remove(key, entry)){
+                weight.addAndGet(-entry.weight);
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * 写入本地缓存
+     * @param key 键
+     * @param value 对象（空值传NULL_VALUE）
+     * @param entryWeight 条目权重
+     * @param maxTtlMillis 条目最长存活时间（通常为redis中的剩余过期时间），与配置的本地过期时间取较小值
+     */
+    public void put(String key, Object value, long entryWeight, long maxTtlMillis){
+        long ttl = Math.min(ttlMillis, maxTtlMillis);
+        if (ttl <= 0 || entryWeight > maxWeight){
+            return;
+        }
+        Entry old = map.put(key, new Entry(value, entryWeight, System.currentTimeMillis() + ttl));
+        weight.addAndGet(old == null ? entryWeight : entryWeight - old.weight);
+        if (map.size() > maxEntries || weight.get() > maxWeight){
+            evict();
+        }
+    }
+
+    /**
+     * 使本地缓存的某个键失效
+     * @param key 键
+     */
+    public void invalidate(String key){
+        Entry old = map.remove(key);
+        if (old != null){
+            weight.addAndGet(-old.weight);
+        }
+    }
+
+    /**
+     * 清空本地缓存
+     */
+    public void invalidateAll(){
+        for (String key : map.keySet()) {
+            invalidate(key);
+        }
+    }
+
+    /**
+     * 超过上限时淘汰：先清理过期条目，仍超限再按迭代顺序淘汰
+     */
+    private synchronized void evict(){
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+        while (it.hasNext()){
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().expireAt - now <= 0 && map.remove(e.getKey(), e.getValue())){
+                weight.addAndGet(-e.getValue().weight);
+                evictions.increment();
+            }
+        }
+        it = map.entrySet().iterator();
+        while ((map.size() > maxEntries || weight.get() > maxWeight) && it.hasNext()){
+            Map.Entry<String, Entry> e = it.next();
+            if (map.remove(e.getKey(), e.getValue())){
+                weight.addAndGet(-e.getValue().weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * @return 命中、未命中、淘汰次数及当前条目数、权重的快照
+     */
+    public NearCacheStats stats(){
+        return new NearCacheStats(keyPrefix, hits.sum(), misses.sum(), evictions.sum(), map.size(), weight.get());
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long weight;
+        final long expireAt;
+
+        Entry(Object value, long weight, long expireAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.wzy.codedatabase.redis.cache.near;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import com.wzy.codedatabase.redis.cache.async.AsyncRedis;
+import com.wzy.codedatabase.redis.cache.hotkey.HotKeyDetector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地一级缓存管理
+ * 按key前缀维护NearCache，并通过redis发布订阅在所有节点间广播失效消息。
+ * 消息格式：节点id|key[\nkey...]，收到自己发出的消息时忽略（本地已经先失效过了）。
+ * 热点key的本地短时缓存（HotKeyDetector）也通过同一条广播失效；两者都未开启的前缀不广播。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 10:00
+ */
+@Slf4j
+@Component
+public class NearCacheManager implements MessageListener {
+
+    /**
+     * 失效广播频道
+     */
+    public static final String INVALIDATE_CHANNEL = "cache:near:invalidate";
+
+    private static final char SEPARATOR = '|';
+
+    private static final char KEY_SEPARATOR = '\n';
+
+    /**
+     * 当前节点id
+     */
+    private final String nodeId = IdUtil.fastSimpleUUID();
+
+    private final ConcurrentHashMap<String, NearCache> caches = new ConcurrentHashMap<>();
+
+    @Resource
+    private AsyncRedis asyncRedis;
+
+    @Resource
+    private RedisMessageListenerContainer cacheMessageListenerContainer;
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+
+    @PostConstruct
+    public void init(){
+        cacheMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 获取key前缀或key对应的本地缓存
+     * @param keyOrPrefix key前缀或完整的key
+     * @return 本地缓存，该前缀未开启本地缓存时返回null
+     */
+    public NearCache cacheFor(String keyOrPrefix){
+        CachePolicy policy = cachePolicyRegistry.resolve(keyOrPrefix);
+        if (!policy.isNearCacheEnabled()){
+            return null;
+        }
+        return caches.computeIfAbsent(policy.getKeyPrefix(), prefix -> new NearCache(prefix,
+                policy.getNearCacheMaxEntries(), policy.getNearCacheMaxWeight(), policy.getNearCacheTtlMillis()));
+    }
+
+    /**
+     * 使所有节点上的该key失效：先失效本地，再广播给其他节点
+     * @param key 键
+     */
+    public void invalidate(String key){
+        NearCache cache = cacheFor(key);
+        if (cache == null && !hotKeyDetector.isEnabledFor(key)){
+            return;
+        }
+        if (cache != null){
+            cache.invalidate(key);
+        }
+        hotKeyDetector.invalidate(key);
+        broadcast(nodeId + SEPARATOR + key);
+    }
+
+    /**
+     * 批量失效，所有key合并为一条广播消息（key之间以换行分隔）
+     * @param keys 键集合
+     */
+    public void invalidate(Collection<String> keys){
+        StringBuilder body = new StringBuilder(nodeId).append(SEPARATOR);
+        boolean any = false;
+        for (String key : keys) {
+            NearCache cache = cacheFor(key);
+            if (cache == null && !hotKeyDetector.isEnabledFor(key)){
+                continue;
+            }
+            if (cache != null){
+                cache.invalidate(key);
+            }
+            hotKeyDetector.invalidate(key);
+            if (any){
+                body.append(KEY_SEPARATOR);
+            }
+            body.append(key);
+            any = true;
+        }
+        if (any){
+            broadcast(body.toString());
+        }
+    }
+
+    /**
+     * 异步广播失效消息，不等待发布结果（与写命令走同一条连接，按顺序发出）
+     */
+    private void broadcast(String body){
+        asyncRedis.publish(INVALIDATE_CHANNEL, body).whenComplete((receivers, e) -> {
+            if (e != null){
+                log.warn("广播本地缓存失效消息失败", e);
+            }
+        });
+    }
+
+    /**
+     * 接收其他节点的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int idx = body.indexOf(SEPARATOR);
+        if (idx < 0 || body.regionMatches(0, nodeId, 0, idx) && idx == nodeId.length()){
+            return;
+        }
+        for (String key : StrUtil.split(body.substring(idx + 1), KEY_SEPARATOR)) {
+            NearCache cache = cacheFor(key);
+            if (cache != null){
+                cache.invalidate(key);
+            }
+            hotKeyDetector.invalidate(key);
+        }
+    }
+
+    /**
+     * @return 各前缀本地缓存的统计快照
+     */
+    public List<NearCacheStats> stats(){
+        List<NearCacheStats> list = new ArrayList<>();
+        for (NearCache cache : caches.values()) {
+            list.add(cache.stats());
+        }
+        return list;
+    }
+}
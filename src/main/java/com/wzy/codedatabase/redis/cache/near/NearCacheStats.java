@@ -0,0 +1,29 @@
+package com.wzy.codedatabase.redis.cache.near;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 本地一级缓存的统计快照（按key前缀）
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 10:00
+ */
+@Data
+@AllArgsConstructor
+public class NearCacheStats {
+    private String keyPrefix;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private int size;
+    private long weight;
+
+    /**
+     * @return 命中率
+     */
+    public double hitRate(){
+        long total = hits + misses;
+        return total == 0 ? 0D : (double) hits / total;
+    }
+}
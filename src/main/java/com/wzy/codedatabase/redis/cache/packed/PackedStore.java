@@ -0,0 +1,390 @@
+package com.wzy.codedatabase.redis.cache.packed;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import com.wzy.codedatabase.redis.cache.async.AsyncRedis;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小对象打包存储：按前缀（CachePolicy.packed）把缓存条目按id散列到若干个hash中（个数由预计条目数计算，见CachePolicy.packedBucketCount()），
+ * hash的key为 前缀 + "#" + 桶号，field为id（key去掉前缀的部分），小hash使用紧凑的listpack（ziplist）编码，
+ * 省去每个字符串key的元数据开销。
+ * 每个field的值为：4字节过期时间（epoch秒，大端，0表示不过期） + 原来的字节（编码后的数据、空值标记或逻辑过期封装），
+ * 读取时过期的条目视为不存在，逻辑过期时间仍在RedisDataEnvelope中。
+ * hash的过期时间不短于其中过期时间最长的条目（有不过期条目的hash不过期），每次写入都会延长，所以已过期的条目由后台清理：
+ * 每轮每个前缀清理若干个hash（HSCAN分页，在脚本中判断过期后HDEL，不会删除刚写入的新值），各节点从随机位置开始轮转。
+ * 每个hash的条目数应不超过redis的hash-max-listpack-entries（7.0以前为hash-max-ziplist-entries），
+ * 且值的长度不超过hash-max-listpack-value，否则hash会转为普通的哈希表编码，失去节省内存的效果。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 12:00
+ */
+@Slf4j
+@Component
+public class PackedStore {
+
+    /**
+     * 值的头部长度：4字节过期时间（epoch秒）
+     */
+    private static final int HEADER_LENGTH = 4;
+
+    /**
+     * 写入条目并按需延长hash的过期时间：ttl小于等于0时hash不过期；新建的hash或剩余时间更短的hash设置为ttl
+     */
+    private static final DefaultRedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>(
+            "local created = redis.call('exists', KEYS[1]) == 0\n" +
+            "redis.call('hset', KEYS[1], ARGV[1], ARGV[2])\n" +
+            "local ttl = tonumber(ARGV[3])\n" +
+            "if ttl <= 0 then redis.call('persist', KEYS[1]) return 1 end\n" +
+            "local cur = redis.call('pttl', KEYS[1])\n" +
+            "if created or (cur >= 0 and cur < ttl) then redis.call('pexpire', KEYS[1], ttl) end\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 清理一页已过期的条目：ARGV[1]为游标，ARGV[2]为HSCAN的COUNT，ARGV[3]为当前时间（epoch秒），返回下一个游标
+     * HSCAN是随机命令，redis 5以前需要按效果复制才能在其后执行写命令
+     */
+    private static final DefaultRedisScript<byte[]> SWEEP_SCRIPT = new DefaultRedisScript<>(
+            "redis.replicate_commands()\n" +
+            "local res = redis.call('hscan', KEYS[1], ARGV[1], 'COUNT', ARGV[2])\n" +
+            "local now = tonumber(ARGV[3])\n" +
+            "local items = res[2]\n" +
+            "for i = 1, #items, 2 do\n" +
+            "  local v = items[i + 1]\n" +
+            "  if #v >= 4 then\n" +
+            "    local b1, b2, b3, b4 = string.byte(v, 1, 4)\n" +
+            "    local deadline = ((b1 * 256 + b2) * 256 + b3) * 256 + b4\n" +
+            "    if deadline ~= 0 and deadline <= now then redis.call('hdel', KEYS[1], items[i]) end\n" +
+            "  end\n" +
+            "end\n" +
+            "return res[1]",
+            byte[].class);
+
+    /**
+     * 清理间隔（毫秒）
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * 每轮每个前缀清理的hash个数
+     */
+    private static final int SWEEP_BUCKETS_PER_ROUND = 16;
+
+    /**
+     * 清理时每次HSCAN的COUNT
+     */
+    private static final byte[] SWEEP_SCAN_COUNT = "200".getBytes(StandardCharsets.UTF_8);
+
+    private static final String CURSOR_END = "0";
+
+    /**
+     * 各前缀下一轮开始清理的hash序号
+     */
+    private final Map<String, Integer> sweepPositions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweepExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "packed-store-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Resource
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    @Resource
+    private AsyncRedis asyncRedis;
+
+    /**
+     * 写入脚本是否已经加载到redis
+     */
+    private volatile boolean scriptLoaded;
+
+    @PostConstruct
+    public void init(){
+        sweepExecutor.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy(){
+        sweepExecutor.shutdownNow();
+    }
+
+    /**
+     * key对应的打包存储策略
+     * @param key 完整的key
+     * @return 策略，key所属前缀未开启打包存储时返回null
+     */
+    public CachePolicy policyOf(String key){
+        CachePolicy policy = cachePolicyRegistry.resolve(key);
+        if (!policy.isPacked() || key.length() <= policy.getKeyPrefix().length()){
+            return null;
+        }
+        return policy;
+    }
+
+    /**
+     * 读取单个条目（HGET）
+     * @param policy 策略（policyOf()的返回值）
+     * @param key 完整的key
+     * @return 原来的字节；不存在或已过期返回null
+     */
+    public byte[] get(CachePolicy policy, String key){
+        byte[] field = field(policy, key);
+        byte[] bucket = bucketKey(policy, field);
+        byte[] value = cacheRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hGet(bucket, field));
+        return unpack(value, System.currentTimeMillis());
+    }
+
+    /**
+     * 异步读取单个条目
+     * @param policy 策略（policyOf()的返回值）
+     * @param key 完整的key
+     * @return 原来的字节；不存在或已过期为null
+     */
+    public CompletableFuture<byte[]> getAsync(CachePolicy policy, String key){
+        byte[] field = field(policy, key);
+        return asyncRedis.hget(bucketKey(policy, field), field)
+                .thenApply(value -> unpack(value, System.currentTimeMillis()));
+    }
+
+    /**
+     * 批量读取，同一个桶的条目合并为一条HMGET，所有桶通过一次管道
+     * @param policy 策略（policyOf()的返回值）
+     * @param keys 完整的key，须属于同一个前缀
+     * @return 与keys顺序一致的字节列表，不存在或已过期的为null
+     */
+    public List<byte[]> multiGet(CachePolicy policy, List<String> keys){
+        //1.按桶分组，记录每个field在结果中的位置
+        Map<String, Bucket> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] field = field(policy, keys.get(i));
+            byte[] bucketKey = bucketKey(policy, field);
+            buckets.computeIfAbsent(new String(bucketKey, StandardCharsets.UTF_8), k -> new Bucket(bucketKey))
+                    .add(field, i);
+        }
+        //2.一次管道，每个桶一条HMGET
+        List<Bucket> bucketList = new ArrayList<>(buckets.values());
+        List<Object> replies = cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Bucket bucket : bucketList) {
+                connection.hMGet(bucket.key, bucket.fields.toArray(new byte[0][]));
+            }
+            return null;
+        });
+        //3.按位置填回结果
+        long now = System.currentTimeMillis();
+        byte[][] result = new byte[keys.size()][];
+        for (int b = 0; b < bucketList.size(); b++) {
+            Bucket bucket = bucketList.get(b);
+            List<?> values = (List<?>) replies.get(b);
+            for (int j = 0; j < bucket.positions.size(); j++) {
+                Object value = values == null ? null : values.get(j);
+                result[bucket.positions.get(j)] = unpack((byte[]) value, now);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * 写入单个条目
+     * @param policy 策略（policyOf()的返回值）
+     * @param key 完整的key
+     * @param raw 原来的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期
+     */
+    public void set(CachePolicy policy, String key, byte[] raw, long ttlMillis){
+        withScript(() -> cacheRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            write(connection, policy, key, raw, ttlMillis);
+            return null;
+        }));
+    }
+
+    /**
+     * 异步写入单个条目
+     * @param policy 策略（policyOf()的返回值）
+     * @param key 完整的key
+     * @param raw 原来的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期
+     */
+    public CompletableFuture<Void> setAsync(CachePolicy policy, String key, byte[] raw, long ttlMillis){
+        byte[] field = field(policy, key);
+        byte[] ttl = String.valueOf(ttlMillis).getBytes(StandardCharsets.UTF_8);
+        return asyncRedis.evalSha(PUT_SCRIPT, new byte[][]{bucketKey(policy, field)}, field, pack(raw, ttlMillis), ttl)
+                .thenApply(reply -> null);
+    }
+
+    /**
+     * 在已有的连接（管道）中写入单个条目（EVALSHA），连接须在withScript()中使用
+     * @param connection redis连接
+     * @param policy 策略（policyOf()的返回值）
+     * @param key 完整的key
+     * @param raw 原来的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期
+     */
+    public void write(RedisConnection connection, CachePolicy policy, String key, byte[] raw, long ttlMillis){
+        byte[] field = field(policy, key);
+        byte[] ttl = String.valueOf(ttlMillis).getBytes(StandardCharsets.UTF_8);
+        connection.evalSha(PUT_SCRIPT.getSha1(), ReturnType.INTEGER, 1, bucketKey(policy, field), field, pack(raw, ttlMillis), ttl);
+    }
+
+    /**
+     * 执行包含write()的操作（例如管道）：首次使用前加载写入脚本；redis返回NOSCRIPT（重启或SCRIPT FLUSH）时
+     * 重新加载并整体重试一次（写入是幂等的）
+     * @param action 操作
+     */
+    public void withScript(Runnable action){
+        loadScript(false);
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)){
+                throw e;
+            }
+            loadScript(true);
+            action.run();
+        }
+    }
+
+    /**
+     * 删除单个条目（HDEL，hash取空后由redis自动删除）
+     * @param policy 策略（policyOf()的返回值）
+     * @param key 完整的key
+     */
+    public void delete(CachePolicy policy, String key){
+        byte[] field = field(policy, key);
+        byte[] bucket = bucketKey(policy, field);
+        cacheRedisTemplate.execute((RedisCallback<Long>) connection -> connection.hDel(bucket, field));
+    }
+
+    /**
+     * 一轮清理：每个打包存储的前缀从上次的位置起清理若干个hash中已过期的条目
+     */
+    private void sweep(){
+        for (CachePolicy policy : cachePolicyRegistry.policies().values()) {
+            if (!policy.isPacked()){
+                continue;
+            }
+            int buckets = policy.packedBucketCount();
+            int start = sweepPositions.computeIfAbsent(policy.getKeyPrefix(),
+                    prefix -> ThreadLocalRandom.current().nextInt(buckets)) % buckets;
+            int rounds = Math.min(buckets, SWEEP_BUCKETS_PER_ROUND);
+            try {
+                for (int i = 0; i < rounds; i++) {
+                    sweepBucket(bucketKey(policy, (start + i) % buckets));
+                }
+            } catch (Exception e) {
+                log.warn("清理打包存储{}的过期条目失败", policy.getKeyPrefix(), e);
+            }
+            sweepPositions.put(policy.getKeyPrefix(), (start + rounds) % buckets);
+        }
+    }
+
+    private void sweepBucket(String bucketKey){
+        List<String> keys = Collections.singletonList(bucketKey);
+        String cursor = CURSOR_END;
+        do {
+            byte[] now = String.valueOf(System.currentTimeMillis() / 1000).getBytes(StandardCharsets.UTF_8);
+            byte[] next = cacheRedisTemplate.execute(SWEEP_SCRIPT, keys,
+                    cursor.getBytes(StandardCharsets.UTF_8), SWEEP_SCAN_COUNT, now);
+            cursor = next == null ? CURSOR_END : new String(next, StandardCharsets.UTF_8);
+        } while (!CURSOR_END.equals(cursor));
+    }
+
+    private void loadScript(boolean force){
+        if (scriptLoaded && !force){
+            return;
+        }
+        cacheRedisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.scriptLoad(PUT_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8)));
+        scriptLoaded = true;
+    }
+
+    private static boolean isNoScript(Throwable e){
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] field(CachePolicy policy, String key){
+        return key.substring(policy.getKeyPrefix().length()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bucketKey(CachePolicy policy, byte[] field){
+        int bucket = (MurmurHash.hash32(field) & Integer.MAX_VALUE) % policy.packedBucketCount();
+        return bucketKey(policy, bucket).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String bucketKey(CachePolicy policy, int bucket){
+        return policy.getKeyPrefix() + "#" + bucket;
+    }
+
+    private static byte[] pack(byte[] raw, long ttlMillis){
+        //过期时间向上取整到秒
+        long deadline = ttlMillis > 0 ? (System.currentTimeMillis() + ttlMillis + 999) / 1000 : 0L;
+        byte[] value = new byte[HEADER_LENGTH + raw.length];
+        for (int i = 0; i < HEADER_LENGTH; i++) {
+            value[i] = (byte) (deadline >>> (24 - 8 * i));
+        }
+        System.arraycopy(raw, 0, value, HEADER_LENGTH, raw.length);
+        return value;
+    }
+
+    private static byte[] unpack(byte[] value, long nowMillis){
+        if (value == null || value.length < HEADER_LENGTH){
+            return null;
+        }
+        long deadline = 0;
+        for (int i = 0; i < HEADER_LENGTH; i++) {
+            deadline = (deadline << 8) | (value[i] & 0xFF);
+        }
+        if (deadline != 0 && deadline * 1000 <= nowMillis){
+            return null;
+        }
+        return Arrays.copyOfRange(value, HEADER_LENGTH, value.length);
+    }
+
+    private static final class Bucket {
+        final byte[] key;
+        final List<byte[]> fields = new ArrayList<>();
+        final List<Integer> positions = new ArrayList<>();
+
+        Bucket(byte[] key) {
+            this.key = key;
+        }
+
+        void add(byte[] field, int position){
+            fields.add(field);
+            positions.add(position);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.wzy.codedatabase.redis.cache.rebuild;
+
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import com.wzy.codedatabase.redis.cache.async.AsyncSupport;
+import com.wzy.codedatabase.redis.cache.metrics.CacheMetricsRegistry;
+import com.wzy.codedatabase.redis.cache.metrics.LatencyHistogram;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 缓存重建调度器（替代原来的CACHE_REBUILD_EXECUTOR固定线程池）
+ * 1.有界队列：排队任务超过容量直接拒绝，由调用方释放锁并返回旧数据。
+ * 2.按key去重：同一个key排队或执行中时不会重复提交，只累加访问次数。
+ * 3.按访问次数优先：工作线程每次取出访问次数最多的任务，次数相同按提交顺序。
+ * 4.按前缀限制并发：CachePolicy.rebuildConcurrency大于0时，同一前缀同时执行的重建数不超过该值，避免占满数据库连接池。
+ * 5.重建异常会记录日志并计入失败次数，不再被CompletableFuture吞掉。
+ * 6.异步任务（submitAsync）由工作线程启动后即释放线程，任务的future完成时才结束；
+ *   同时执行的任务（含异步任务）总数不超过WORKER_THREADS。
+ * 7.同时是micrometer的MeterBinder：cache.rebuild.queue、cache.rebuild.running、cache.rebuild.tasks{result}、
+ *   cache.rebuild.latency（计数与总耗时）、cache.rebuild.latency.percentile{quantile}。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 15:00
+ */
+@Slf4j
+@Component
+public class CacheRebuildScheduler implements MeterBinder {
+
+    /**
+     * 工作线程数（与原线程池一致），也是同时执行的任务数上限
+     */
+    private static final int WORKER_THREADS = 10;
+
+    /**
+     * 排队容量
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * 排队中的任务（按提交顺序），由lock保护
+     */
+    private final LinkedHashMap<String, RebuildTask> queued = new LinkedHashMap<>();
+
+    /**
+     * 各前缀执行中的任务数，由lock保护
+     */
+    private final Map<String, Integer> runningPerPrefix = new HashMap<>();
+
+    /**
+     * 排队或执行中的所有key，用于无锁去重
+     */
+    private final ConcurrentHashMap<String, RebuildTask> pending = new ConcurrentHashMap<>();
+
+    private final Thread[] workers = new Thread[WORKER_THREADS];
+    private volatile boolean stopped;
+    private int running;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    @PostConstruct
+    public void start(){
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(this::work, "cache-rebuild-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    @PreDestroy
+    public void stop(){
+        stopped = true;
+        for (Thread worker : workers) {
+            if (worker != null){
+                worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * 某个key是否已在排队或执行中；是则累加其访问次数（提高优先级）
+     * @param key 缓存key
+     * @return 是否已在排队或执行中
+     */
+    public boolean touch(String key){
+        RebuildTask task = pending.get(key);
+        if (task == null){
+            return false;
+        }
+        task.hits.increment();
+        deduplicated.increment();
+        return true;
+    }
+
+    /**
+     * 提交单个key的重建任务
+     * @param keyPrefix 缓存key前缀（用于并发限制）
+     * @param key 缓存key（用于去重）
+     * @param rebuild 重建逻辑
+     * @return 是否提交成功；队列已满或key已在排队时返回false，调用方需要自行释放锁
+     */
+    public boolean submit(String keyPrefix, String key, Runnable rebuild){
+        return submit(keyPrefix, Collections.singletonList(key), rebuild);
+    }
+
+    /**
+     * 提交覆盖多个key的重建任务（批量重建），任意一个key已在排队或执行中时不提交
+     * @param keyPrefix 缓存key前缀（用于并发限制）
+     * @param keys 缓存key（用于去重）
+     * @param rebuild 重建逻辑
+     * @return 是否提交成功；队列已满或key已在排队时返回false，调用方需要自行释放锁
+     */
+    public boolean submit(String keyPrefix, Collection<String> keys, Runnable rebuild){
+        return enqueue(keyPrefix, keys, () -> {
+            rebuild.run();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * 提交单个key的异步重建任务，重建逻辑返回的future完成时任务结束，期间不占用工作线程
+     * @param keyPrefix 缓存key前缀（用于并发限制）
+     * @param key 缓存key（用于去重）
+     * @param rebuild 重建逻辑，应尽快返回
+     * @return 是否提交成功；队列已满或key已在排队时返回false，调用方需要自行释放锁
+     */
+    public boolean submitAsync(String keyPrefix, String key, Supplier<CompletableFuture<?>> rebuild){
+        return enqueue(keyPrefix, Collections.singletonList(key), rebuild);
+    }
+
+    private boolean enqueue(String keyPrefix, Collection<String> keys, Supplier<CompletableFuture<?>> rebuild){
+        RebuildTask task = new RebuildTask(keyPrefix, keys, rebuild);
+        lock.lock();
+        try {
+            if (stopped || queued.size() >= QUEUE_CAPACITY){
+                rejected.increment();
+                return false;
+            }
+            for (String key : keys) {
+                if (pending.containsKey(key)){
+                    touch(key);
+                    return false;
+                }
+            }
+            for (String key : keys) {
+                pending.put(key, task);
+            }
+            queued.put(task.id(), task);
+            submitted.increment();
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work(){
+        while (!stopped){
+            RebuildTask task;
+            lock.lock();
+            try {
+                while ((task = pollEligible()) == null){
+                    changed.await();
+                }
+                running++;
+                runningPerPrefix.merge(task.keyPrefix, 1, Integer::sum);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            long start = System.nanoTime();
+            RebuildTask current = task;
+            AsyncSupport.call(task.rebuild).whenComplete((v, e) -> finish(current, start, e));
+        }
+    }
+
+    /**
+     * 任务结束：记录结果，释放并发名额
+     */
+    private void finish(RebuildTask task, long start, Throwable e){
+        if (e == null){
+            completed.increment();
+        } else {
+            failed.increment();
+            log.error("缓存重建失败，key：{}", task.keys, AsyncSupport.unwrap(e));
+        }
+        latency.record(System.nanoTime() - start);
+        lock.lock();
+        try {
+            running--;
+            runningPerPrefix.merge(task.keyPrefix, -1, Integer::sum);
+            for (String key : task.keys) {
+                pending.remove(key, task);
+            }
+            //释放了前缀的并发名额，唤醒等待的工作线程
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取出访问次数最多、且所属前缀未达到并发上限的任务（需持有lock）
+     */
+    private RebuildTask pollEligible(){
+        if (running >= WORKER_THREADS){
+            return null;
+        }
+        RebuildTask best = null;
+        Map<String, Boolean> prefixAllowed = new HashMap<>();
+        for (RebuildTask task : queued.values()) {
+            Boolean allowed = prefixAllowed.get(task.keyPrefix);
+            if (allowed == null){
+                int cap = cachePolicyRegistry.resolve(task.keyPrefix).getRebuildConcurrency();
+                allowed = cap <= 0 || runningPerPrefix.getOrDefault(task.keyPrefix, 0) < cap;
+                prefixAllowed.put(task.keyPrefix, allowed);
+            }
+            if (allowed && (best == null || task.hits.sum() > best.hits.sum())){
+                best = task;
+            }
+        }
+        if (best != null){
+            queued.remove(best.id());
+        }
+        return best;
+    }
+
+    /**
+     * @return 统计快照
+     */
+    public RebuildStats stats(){
+        int depth;
+        int runningNow;
+        lock.lock();
+        try {
+            depth = queued.size();
+            runningNow = running;
+        } finally {
+            lock.unlock();
+        }
+        return new RebuildStats(depth, runningNow, submitted.sum(), completed.sum(), failed.sum(),
+                rejected.sum(), deduplicated.sum(), latency.snapshot());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.rebuild.queue", this, CacheRebuildScheduler::queueDepth).register(registry);
+        Gauge.builder("cache.rebuild.running", this, CacheRebuildScheduler::runningTasks).register(registry);
+        counter(registry, "submitted", submitted);
+        counter(registry, "completed", completed);
+        counter(registry, "failed", failed);
+        counter(registry, "rejected", rejected);
+        counter(registry, "deduplicated", deduplicated);
+        CacheMetricsRegistry.latency(registry, "cache.rebuild.latency", Tags.empty(), latency);
+    }
+
+    private static void counter(MeterRegistry registry, String result, LongAdder adder){
+        FunctionCounter.builder("cache.rebuild.tasks", adder, LongAdder::doubleValue)
+                .tags(Tags.of("result", result)).register(registry);
+    }
+
+    private double queueDepth(){
+        lock.lock();
+        try {
+            return queued.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double runningTasks(){
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class RebuildTask {
+        final String keyPrefix;
+        final Collection<String> keys;
+        final Supplier<CompletableFuture<?>> rebuild;
+        final LongAdder hits = new LongAdder();
+
+        RebuildTask(String keyPrefix, Collection<String> keys, Supplier<CompletableFuture<?>> rebuild) {
+            this.keyPrefix = keyPrefix;
+            this.keys = keys;
+            this.rebuild = rebuild;
+            this.hits.increment();
+        }
+
+        String id(){
+            Iterator<String> it = keys.iterator();
+            return it.hasNext() ? it.next() : keyPrefix;
+        }
+    }
+}
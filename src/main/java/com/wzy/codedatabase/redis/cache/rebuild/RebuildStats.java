@@ -0,0 +1,39 @@
+package com.wzy.codedatabase.redis.cache.rebuild;
+
+import com.wzy.codedatabase.redis.cache.metrics.LatencySnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 缓存重建调度器的统计快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 15:00
+ */
+@Data
+@AllArgsConstructor
+public class RebuildStats {
+    /**
+     * 排队中的任务数
+     */
+    private int queueDepth;
+    /**
+     * 执行中的任务数
+     */
+    private int running;
+    private long submitted;
+    private long completed;
+    private long failed;
+    /**
+     * 队列已满被拒绝的次数
+     */
+    private long rejected;
+    /**
+     * 同一key已在排队或执行中被合并的次数
+     */
+    private long deduplicated;
+    /**
+     * 重建耗时（含失败的任务）
+     */
+    private LatencySnapshot latency;
+}
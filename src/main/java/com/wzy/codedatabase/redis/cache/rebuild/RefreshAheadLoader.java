@@ -0,0 +1,19 @@
+package com.wzy.codedatabase.redis.cache.rebuild;
+
+/**
+ * 提前刷新逻辑，按key前缀注册到RefreshAheadScheduler（见CacheClient.registerRefreshAhead()）
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 11:00
+ */
+@FunctionalInterface
+public interface RefreshAheadLoader {
+
+    /**
+     * 刷新单个key：获取锁、双端检锁、查询数据库并写入新的逻辑过期时间
+     * @param key 缓存key
+     * @param id 数据id（最近一次访问时的id）
+     * @return 刷新后（或其他节点已刷新后）的逻辑过期时间；0表示未能刷新（锁被其他节点持有）；小于0表示缓存已不存在
+     */
+    long refresh(String key, Object id) throws InterruptedException;
+}
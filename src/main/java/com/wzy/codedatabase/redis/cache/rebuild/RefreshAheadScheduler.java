@@ -0,0 +1,261 @@
+package com.wzy.codedatabase.redis.cache.rebuild;
+
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import com.wzy.codedatabase.redis.cache.limit.DbOverloadException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 逻辑过期缓存的提前刷新调度器
+ * 逻辑过期策略只在请求到达时发现过期，过期后的第一个请求总是返回旧数据并竞争锁。
+ * 注册了刷新逻辑的前缀，读请求命中redis时登记key和逻辑过期时间，命中本地缓存时只累加访问次数；
+ * 后台线程每tickMillis扫描一次，在逻辑过期前CachePolicy.refreshAheadMillis到其一半之间（按key散列分散）提交刷新：
+ * 1.到期前的一个过期周期内访问次数不足refreshAheadMinAccesses的key视为冷key，移出跟踪（再次访问时重新登记）。
+ * 2.刷新任务提交给CacheRebuildScheduler执行（与被动重建按key去重），同时执行的刷新数不超过concurrency。
+ * 3.刷新逻辑获取分布式锁并双端检锁，多个节点跟踪同一个key时只有一个节点查询数据库。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 11:00
+ */
+@Slf4j
+@Component
+public class RefreshAheadScheduler {
+
+    /**
+     * 最多跟踪的key数
+     */
+    @Value("${cache.refresh-ahead.max-keys:100000}")
+    private int maxKeys;
+
+    /**
+     * 同时执行的刷新数上限
+     */
+    @Value("${cache.refresh-ahead.concurrency:4}")
+    private int concurrency;
+
+    /**
+     * 扫描间隔（毫秒），应明显小于refreshAheadMillis的一半
+     */
+    @Value("${cache.refresh-ahead.tick-millis:200}")
+    private long tickMillis;
+
+    @Resource
+    private CacheRebuildScheduler cacheRebuildScheduler;
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    /**
+     * key前缀 -> 刷新逻辑
+     */
+    private final Map<String, RefreshAheadLoader> loaders = new ConcurrentHashMap<>();
+
+    /**
+     * 正在跟踪的key
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder lockLost = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start(){
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-refresh-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop(){
+        ticker.shutdownNow();
+    }
+
+    /**
+     * 注册key前缀的刷新逻辑，之后该前缀被访问的key会被跟踪
+     * @param keyPrefix 缓存key前缀
+     * @param loader 刷新逻辑
+     */
+    public void register(String keyPrefix, RefreshAheadLoader loader){
+        loaders.put(keyPrefix, loader);
+    }
+
+    /**
+     * 取消key前缀的提前刷新，并移出该前缀正在跟踪的key
+     * @param keyPrefix 缓存key前缀
+     */
+    public void unregister(String keyPrefix){
+        loaders.remove(keyPrefix);
+        entries.values().removeIf(entry -> entry.keyPrefix.equals(keyPrefix));
+    }
+
+    /**
+     * 读请求命中redis：登记key（前缀已注册时）并累加访问次数
+     * @param keyPrefix 缓存key前缀
+     * @param key 缓存key
+     * @param id 数据id
+     * @param expireAtMillis 当前的逻辑过期时间
+     */
+    public void touch(String keyPrefix, String key, Object id, long expireAtMillis){
+        RefreshAheadLoader loader = loaders.get(keyPrefix);
+        if (loader == null){
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null){
+            if (entries.size() >= maxKeys){
+                untracked.increment();
+                return;
+            }
+            entry = entries.computeIfAbsent(key, k -> new Entry(keyPrefix, id, loader, expireAtMillis));
+        }
+        entry.accesses.increment();
+        if (expireAtMillis > entry.expireAtMillis){
+            entry.expireAtMillis = expireAtMillis;
+        }
+    }
+
+    /**
+     * 读请求命中本地缓存：key已在跟踪时累加访问次数
+     * @param key 缓存key
+     */
+    public void touch(String key){
+        if (entries.isEmpty()){
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null){
+            entry.accesses.increment();
+        }
+    }
+
+    private void tick(){
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.refreshing){
+                    continue;
+                }
+                //1.未到刷新时间
+                CachePolicy policy = cachePolicyRegistry.resolve(entry.keyPrefix);
+                long aheadMillis = policy.getRefreshAheadMillis();
+                if (now < refreshAt(e.getKey(), entry.expireAtMillis, aheadMillis)){
+                    continue;
+                }
+                //2.一个过期周期内访问次数不足，移出跟踪
+                long accesses = entry.accesses.sumThenReset();
+                if (accesses < policy.getRefreshAheadMinAccesses()){
+                    entries.remove(e.getKey(), entry);
+                    dropped.increment();
+                    continue;
+                }
+                //3.提交刷新，并发已满或提交失败时推迟到下一轮
+                if (!submit(e.getKey(), entry)){
+                    entry.accesses.add(accesses);
+                    deferred.increment();
+                }
+            }
+        } catch (Throwable e) {
+            log.error("缓存提前刷新扫描失败", e);
+        }
+    }
+
+    /**
+     * 刷新时间：逻辑过期前aheadMillis到aheadMillis/2之间，按key散列分散，避免同时过期的key同时刷新
+     */
+    private static long refreshAt(String key, long expireAtMillis, long aheadMillis){
+        long spread = Math.max(1L, aheadMillis / 2);
+        return expireAtMillis - aheadMillis + (key.hashCode() & Integer.MAX_VALUE) % spread;
+    }
+
+    private boolean submit(String key, Entry entry){
+        if (inFlight.incrementAndGet() > concurrency){
+            inFlight.decrementAndGet();
+            return false;
+        }
+        entry.refreshing = true;
+        boolean submitted = cacheRebuildScheduler.submit(entry.keyPrefix, key, () -> refresh(key, entry));
+        if (!submitted){
+            entry.refreshing = false;
+            inFlight.decrementAndGet();
+        }
+        return submitted;
+    }
+
+    private void refresh(String key, Entry entry){
+        try {
+            long expireAtMillis = entry.loader.refresh(key, entry.id);
+            if (expireAtMillis < 0L){
+                //缓存已被删除
+                entries.remove(key, entry);
+                removed.increment();
+            } else if (expireAtMillis == 0L){
+                //其他节点正在刷新，新的过期时间由之后的访问登记
+                lockLost.increment();
+            } else {
+                //本节点或其他节点已刷新
+                entry.expireAtMillis = Math.max(entry.expireAtMillis, expireAtMillis);
+                refreshed.increment();
+            }
+        } catch (DbOverloadException e) {
+            deferred.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            failed.increment();
+            log.error("缓存提前刷新失败，key：{}", key, e);
+        } finally {
+            entry.refreshing = false;
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return 统计快照
+     */
+    public RefreshAheadStats stats(){
+        return new RefreshAheadStats(entries.size(), inFlight.get(), refreshed.sum(),
+                lockLost.sum(), dropped.sum(), removed.sum(), deferred.sum(), failed.sum(), untracked.sum());
+    }
+
+    private static final class Entry {
+        final String keyPrefix;
+        final Object id;
+        final RefreshAheadLoader loader;
+        final LongAdder accesses = new LongAdder();
+        volatile long expireAtMillis;
+        volatile boolean refreshing;
+
+        Entry(String keyPrefix, Object id, RefreshAheadLoader loader, long expireAtMillis) {
+            this.keyPrefix = keyPrefix;
+            this.id = id;
+            this.loader = loader;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.wzy.codedatabase.redis.cache.rebuild;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 提前刷新调度器的统计快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 11:00
+ */
+@Data
+@AllArgsConstructor
+public class RefreshAheadStats {
+    /**
+     * 正在跟踪的key数
+     */
+    private int tracked;
+    /**
+     * 执行中的刷新数
+     */
+    private int inFlight;
+    /**
+     * 刷新成功（包括获取锁后发现其他节点已刷新）
+     */
+    private long refreshed;
+    /**
+     * 锁被其他节点持有
+     */
+    private long lockLost;
+    /**
+     * 到期前访问次数不足被移出跟踪的冷key
+     */
+    private long dropped;
+    /**
+     * 缓存已被删除而移出跟踪
+     */
+    private long removed;
+    /**
+     * 并发已满、重建队列已满或数据库并发达到上限，推迟到下一轮
+     */
+    private long deferred;
+    private long failed;
+    /**
+     * 跟踪的key数达到上限而未跟踪的访问次数
+     */
+    private long untracked;
+}
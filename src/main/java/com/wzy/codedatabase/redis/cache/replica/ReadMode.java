@@ -0,0 +1,26 @@
+package com.wzy.codedatabase.redis.cache.replica;
+
+/**
+ * 缓存读取的路由方式（写入和锁始终访问主节点）
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+public enum ReadMode {
+    /**
+     * 只读主节点（默认，与原来一致）
+     */
+    PRIMARY,
+    /**
+     * 优先主节点，主节点读取失败时改读从节点
+     */
+    PRIMARY_PREFERRED,
+    /**
+     * 读延迟最低的节点（主从节点都参与，按最近延迟的指数滑动平均）
+     */
+    NEAREST,
+    /**
+     * 在从节点之间轮询
+     */
+    ROUND_ROBIN
+}
@@ -0,0 +1,373 @@
+package com.wzy.codedatabase.redis.cache.replica;
+
+import cn.hutool.core.util.StrUtil;
+import com.wzy.codedatabase.redis.cache.async.AsyncSupport;
+import com.wzy.codedatabase.redis.cache.metrics.LatencyHistogram;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 缓存读取路由：按ReadMode把缓存读取（GET/MGET）发往主节点或从节点，并可开启对冲读取
+ * 对冲读取：首选节点在等待时间（该节点最近1秒读延迟的p95，不低于hedge-min-delay-millis）内没有返回时，
+ * 向另一个节点再发一次，取先成功返回的结果，用于削减分片抖动时的p99。
+ * 只在mode不为PRIMARY或开启对冲时启用，否则CacheClient照常通过RedisTemplate读取主节点。
+ * 配置示例（本地多进程：redis-server --port 6380 --replicaof 127.0.0.1 6379）：
+ * cache.read.mode=ROUND_ROBIN、cache.read.replicas=127.0.0.1:6380,127.0.0.1:6381、cache.read.hedge=true
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+@Slf4j
+@Component
+public class ReplicaReadRouter {
+
+    private static final long INITIAL_HEDGE_DELAY_MILLIS = 10L;
+
+    @Value("${cache.read.mode:PRIMARY}")
+    private ReadMode mode;
+
+    /**
+     * 从节点地址，host:port，以逗号分隔
+     */
+    @Value("${cache.read.replicas:}")
+    private String replicas;
+
+    @Value("${cache.read.hedge:false}")
+    private boolean hedge;
+
+    @Value("${cache.read.hedge-min-delay-millis:1}")
+    private long hedgeMinDelayMillis;
+
+    @Value("${cache.read.timeout-millis:1000}")
+    private long timeoutMillis;
+
+    @Value("${spring.redis.host:localhost}")
+    private String primaryHost;
+
+    @Value("${spring.redis.port:6379}")
+    private int primaryPort;
+
+    @Value("${spring.redis.password:}")
+    private String password;
+
+    @Value("${spring.redis.database:0}")
+    private int database;
+
+    private RedisClient client;
+
+    private Node primary;
+
+    private final List<Node> replicaNodes = new ArrayList<>();
+
+    /**
+     * 主节点和所有从节点
+     */
+    private final List<Node> nodes = new ArrayList<>();
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    private ScheduledExecutorService refreshExecutor;
+
+    private volatile boolean enabled;
+
+    @PostConstruct
+    public void start(){
+        if (mode == ReadMode.PRIMARY && !hedge){
+            return;
+        }
+        client = RedisClient.create();
+        primary = connect(primaryHost, primaryPort);
+        nodes.add(primary);
+        for (String address : StrUtil.split(replicas, ',', true, true)) {
+            int idx = address.lastIndexOf(':');
+            Node node = connect(address.substring(0, idx), Integer.parseInt(address.substring(idx + 1)));
+            replicaNodes.add(node);
+            nodes.add(node);
+        }
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cache-read-router");
+            t.setDaemon(true);
+            return t;
+        });
+        refreshExecutor.scheduleAtFixedRate(this::refreshHedgeDelays, 1, 1, TimeUnit.SECONDS);
+        enabled = true;
+        log.info("缓存读取路由已启用：{}，从节点{}个，对冲读取：{}", mode, replicaNodes.size(), hedge);
+    }
+
+    @PreDestroy
+    public void stop(){
+        enabled = false;
+        if (refreshExecutor != null){
+            refreshExecutor.shutdownNow();
+        }
+        for (Node node : nodes) {
+            node.connection.close();
+        }
+        if (client != null){
+            client.shutdown();
+        }
+    }
+
+    private Node connect(String host, int port){
+        RedisURI.Builder builder = RedisURI.Builder.redis(host, port).withDatabase(database);
+        if (StrUtil.isNotEmpty(password)){
+            builder.withPassword(password);
+        }
+        StatefulRedisConnection<byte[], byte[]> connection = client.connect(ByteArrayCodec.INSTANCE, builder.build());
+        //样本不足时的对冲等待时间
+        long initialDelayMillis = Math.max(hedgeMinDelayMillis, INITIAL_HEDGE_DELAY_MILLIS);
+        return new Node(host + ":" + port, connection, TimeUnit.MILLISECONDS.toNanos(initialDelayMillis));
+    }
+
+    /**
+     * @return 是否启用（未启用时由调用方直接读主节点）
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * GET
+     * @param key key的字节
+     * @return 值，不存在返回null
+     */
+    public byte[] get(byte[] key){
+        return AsyncSupport.join(getAsync(key));
+    }
+
+    /**
+     * 异步GET
+     * @param key key的字节
+     * @return 值，不存在为null
+     */
+    public CompletableFuture<byte[]> getAsync(byte[] key){
+        return readAsync(commands -> commands.get(key));
+    }
+
+    /**
+     * MGET
+     * @param keys key的字节
+     * @return 与keys顺序一致的值列表，不存在的为null
+     */
+    public List<byte[]> mget(byte[][] keys){
+        return AsyncSupport.join(mgetAsync(keys));
+    }
+
+    /**
+     * 异步MGET
+     * @param keys key的字节
+     * @return 与keys顺序一致的值列表，不存在的为null
+     */
+    public CompletableFuture<List<byte[]>> mgetAsync(byte[][] keys){
+        return readAsync(commands -> commands.mget(keys)).thenApply(values -> {
+            List<byte[]> list = new ArrayList<>(values.size());
+            for (KeyValue<byte[], byte[]> value : values) {
+                list.add(value.getValueOrElse(null));
+            }
+            return list;
+        });
+    }
+
+    /**
+     * 按路由方式读取，对冲等待由定时器触发，不占用线程
+     */
+    private <T> CompletableFuture<T> readAsync(Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<T>> command){
+        reads.increment();
+        Node first = select();
+        CompletableFuture<T> f1 = issue(first, command);
+        Node second = nodes.size() > 1 ? alternative(first) : null;
+        CompletableFuture<T> result = new CompletableFuture<>();
+        //1.首选节点返回前是否已经决定（对冲或以首选节点的结果结束）
+        AtomicBoolean decided = new AtomicBoolean();
+        ScheduledFuture<?> hedgeTask = null;
+        if (hedge && second != null){
+            //2.超过对冲等待时间，向另一个节点对冲读取，取先成功的结果
+            hedgeTask = AsyncSupport.schedule(() -> {
+                if (decided.compareAndSet(false, true)){
+                    hedged.increment();
+                    firstSuccessful(f1, issue(second, command)).whenComplete((value, e) ->
+                            completeRead(result, value, e, "缓存读取失败：" + first.name));
+                }
+            }, first.hedgeDelayNanos, TimeUnit.NANOSECONDS);
+        }
+        ScheduledFuture<?> pendingHedge = hedgeTask;
+        f1.whenComplete((value, e) -> {
+            if (!decided.compareAndSet(false, true)){
+                return;
+            }
+            if (pendingHedge != null){
+                pendingHedge.cancel(false);
+            }
+            if (e == null || second == null || mode == ReadMode.PRIMARY){
+                completeRead(result, value, e, "缓存读取失败：" + first.name);
+                return;
+            }
+            //3.首选节点失败，改读其他节点
+            failovers.increment();
+            issue(second, command).whenComplete((v, e2) -> completeRead(result, v, e2, "缓存读取失败：" + second.name));
+        });
+        return AsyncSupport.failOnTimeout(result, timeoutMillis,
+                () -> new RedisSystemException("缓存读取超时：" + first.name, null));
+    }
+
+    private static <T> void completeRead(CompletableFuture<T> result, T value, Throwable e, String message){
+        if (e == null){
+            result.complete(value);
+        } else {
+            result.completeExceptionally(new RedisSystemException(message, AsyncSupport.unwrap(e)));
+        }
+    }
+
+    private static <T> CompletableFuture<T> issue(Node node, Function<RedisAsyncCommands<byte[], byte[]>, RedisFuture<T>> command){
+        long start = System.nanoTime();
+        return command.apply(node.connection.async()).toCompletableFuture()
+                .whenComplete((value, e) -> node.record(System.nanoTime() - start));
+    }
+
+    /**
+     * 两个读取中先成功的结果，都失败时失败
+     */
+    private <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> f1, CompletableFuture<T> f2){
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        f1.whenComplete((value, e) -> {
+            if (e == null){
+                result.complete(value);
+            } else if (failed.incrementAndGet() == 2){
+                result.completeExceptionally(e);
+            }
+        });
+        f2.whenComplete((value, e) -> {
+            if (e == null){
+                if (result.complete(value)){
+                    hedgeWins.increment();
+                }
+            } else if (failed.incrementAndGet() == 2){
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 按路由方式选择首选节点
+     */
+    private Node select(){
+        switch (mode){
+            case ROUND_ROBIN:
+                if (replicaNodes.isEmpty()){
+                    return primary;
+                }
+                return replicaNodes.get((roundRobin.getAndIncrement() & Integer.MAX_VALUE) % replicaNodes.size());
+            case NEAREST:
+                return nearest(null);
+            case PRIMARY_PREFERRED:
+            case PRIMARY:
+            default:
+                return primary;
+        }
+    }
+
+    /**
+     * 对冲或失败转移的节点：除首选节点外延迟最低的节点
+     */
+    private Node alternative(Node first){
+        return nearest(first);
+    }
+
+    private Node nearest(Node exclude){
+        Node best = null;
+        for (Node node : nodes) {
+            if (node != exclude && (best == null || node.ewmaNanos < best.ewmaNanos)){
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 每秒按最近1秒的延迟分布计算各节点的对冲等待时间（p95）
+     */
+    private void refreshHedgeDelays(){
+        long minDelay = TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMillis);
+        for (Node node : nodes) {
+            LatencyHistogram window = node.window;
+            node.window = new LatencyHistogram();
+            if (window.count() >= 20){
+                node.hedgeDelayNanos = Math.max(minDelay, window.percentileNanos(0.95D));
+            }
+        }
+    }
+
+    /**
+     * @return 统计快照
+     */
+    public ReplicaReadStats stats(){
+        Map<String, Double> latency = new LinkedHashMap<>();
+        Map<String, Double> delay = new LinkedHashMap<>();
+        for (Node node : nodes) {
+            latency.put(node.name, node.ewmaNanos / 1_000_000D);
+            delay.put(node.name, node.hedgeDelayNanos / 1_000_000D);
+        }
+        return new ReplicaReadStats(mode, reads.sum(), hedged.sum(), hedgeWins.sum(), failovers.sum(), latency, delay);
+    }
+
+    /**
+     * 一个redis节点的连接和延迟统计
+     */
+    private static class Node {
+        private final String name;
+        private final StatefulRedisConnection<byte[], byte[]> connection;
+        /**
+         * 读延迟的指数滑动平均（纳秒）
+         */
+        private volatile double ewmaNanos;
+        /**
+         * 当前1秒窗口的延迟分布
+         */
+        private volatile LatencyHistogram window = new LatencyHistogram();
+        private volatile long hedgeDelayNanos;
+
+        Node(String name, StatefulRedisConnection<byte[], byte[]> connection, long hedgeDelayNanos) {
+            this.name = name;
+            this.connection = connection;
+            this.hedgeDelayNanos = hedgeDelayNanos;
+        }
+
+        void record(long nanos){
+            window.record(nanos);
+            double ewma = ewmaNanos;
+            ewmaNanos = ewma == 0D ? nanos : ewma + (nanos - ewma) * 0.1D;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.wzy.codedatabase.redis.cache.replica;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 读路由的统计快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 10:00
+ */
+@Data
+@AllArgsConstructor
+public class ReplicaReadStats {
+    private ReadMode mode;
+    private long reads;
+    /**
+     * 发出对冲读取的次数
+     */
+    private long hedged;
+    /**
+     * 对冲读取先返回的次数
+     */
+    private long hedgeWins;
+    /**
+     * 首选节点失败后改读其他节点的次数
+     */
+    private long failovers;
+    /**
+     * 各节点最近读延迟的滑动平均（毫秒）
+     */
+    private Map<String, Double> latencyMillis;
+    /**
+     * 各节点当前的对冲等待时间（毫秒）
+     */
+    private Map<String, Double> hedgeDelayMillis;
+}
@@ -0,0 +1,243 @@
+package com.wzy.codedatabase.redis.cache.tag;
+
+import com.wzy.codedatabase.redis.cache.async.AsyncRedis;
+import com.wzy.codedatabase.redis.cache.near.NearCacheManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 缓存标签：写入时把key登记到标签的索引集合（cache:tag:{tag}），按标签批量失效
+ * 索引集合的过期时间不短于其中最长的key（逻辑过期数据的集合不过期），已过期的key留在集合中无害，失效时一并删除。
+ * 按前缀配置CachePolicy.tagResolver后，查询重建的写入也会重新登记标签（同时延长集合的过期时间）。
+ * 失效时每页通过一个lua脚本SPOP取出并UNLINK（O(页大小)，不会长时间阻塞redis，UNLINK在后台线程释放内存），
+ * 取出和删除在同一个脚本中完成，进程在两者之间崩溃不会留下脱离索引的key；之后合并广播本地缓存失效，集合取空后自动删除。
+ * 失效过程中新写入的带标签key同样会被取出删除。
+ * 脚本通过EVALSHA执行，首次使用前加载，redis重启或SCRIPT FLUSH后重新加载。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 09:00
+ */
+@Slf4j
+@Component
+public class CacheTagManager {
+
+    /**
+     * 标签索引集合的key前缀
+     */
+    public static final String TAG_PREFIX = "cache:tag:";
+
+    /**
+     * 每次SPOP取出的key个数
+     */
+    private static final int PAGE_SIZE = 5000;
+
+    /**
+     * 每条UNLINK命令删除的key个数
+     */
+    private static final int UNLINK_BATCH = 500;
+
+    /**
+     * 登记key并按需延长集合的过期时间：ttl小于等于0时集合不过期；新建的集合或剩余时间更短的集合设置为ttl
+     */
+    private static final DefaultRedisScript<Long> TAG_SCRIPT = new DefaultRedisScript<>(
+            "local created = redis.call('exists', KEYS[1]) == 0\n" +
+            "redis.call('sadd', KEYS[1], ARGV[1])\n" +
+            "local ttl = tonumber(ARGV[2])\n" +
+            "if ttl <= 0 then redis.call('persist', KEYS[1]) return 1 end\n" +
+            "local cur = redis.call('pttl', KEYS[1])\n" +
+            "if created or (cur >= 0 and cur < ttl) then redis.call('pexpire', KEYS[1], ttl) end\n" +
+            "return 1",
+            Long.class);
+
+    /**
+     * 取出一页key并删除：ARGV[1]为页大小，ARGV[2]为每条UNLINK的key个数，返回取出的key
+     * SPOP是随机命令，redis 5以前需要按效果复制才能在其后执行写命令
+     */
+    private static final DefaultRedisScript<Object> INVALIDATE_PAGE_SCRIPT = new DefaultRedisScript<>(
+            "redis.replicate_commands()\n" +
+            "local keys = redis.call('spop', KEYS[1], ARGV[1])\n" +
+            "local batch = tonumber(ARGV[2])\n" +
+            "for i = 1, #keys, batch do redis.call('unlink', unpack(keys, i, math.min(i + batch - 1, #keys))) end\n" +
+            "return keys");
+
+    @Resource
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    @Resource
+    private AsyncRedis asyncRedis;
+
+    @Resource
+    private NearCacheManager nearCacheManager;
+
+    /**
+     * 脚本是否已经加载到redis
+     */
+    private volatile boolean scriptsLoaded;
+
+    /**
+     * 通过一次管道写入数据并登记标签，然后使所有节点的本地缓存失效
+     * @param key 缓存key
+     * @param raw 编码后的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期（逻辑过期数据）
+     * @param tags 标签
+     */
+    public void write(String key, byte[] raw, long ttlMillis, String... tags){
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        executePipelined(connection -> {
+            if (ttlMillis > 0){
+                connection.pSetEx(keyBytes, ttlMillis, raw);
+            } else {
+                connection.set(keyBytes, raw);
+            }
+            tag(connection, keyBytes, ttlMillis, tags);
+            return null;
+        });
+        nearCacheManager.invalidate(key);
+    }
+
+    /**
+     * 异步写入数据并登记标签，完成后使所有节点的本地缓存失效
+     * @param key 缓存key
+     * @param raw 编码后的字节
+     * @param ttlMillis 过期时间（毫秒），小于等于0表示不过期（逻辑过期数据）
+     * @param tags 标签
+     */
+    public CompletableFuture<Void> writeAsync(String key, byte[] raw, long ttlMillis, String... tags){
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] ttl = String.valueOf(ttlMillis).getBytes(StandardCharsets.UTF_8);
+        CompletableFuture<?>[] writes = new CompletableFuture<?>[tags.length + 1];
+        writes[0] = asyncRedis.set(keyBytes, raw, ttlMillis);
+        for (int i = 0; i < tags.length; i++) {
+            writes[i + 1] = asyncRedis.evalSha(TAG_SCRIPT, new byte[][]{tagKey(tags[i])}, keyBytes, ttl);
+        }
+        return CompletableFuture.allOf(writes).thenRun(() -> nearCacheManager.invalidate(key));
+    }
+
+    /**
+     * 给已有的key登记标签
+     * @param key 缓存key
+     * @param ttlMillis key的过期时间（毫秒），小于等于0表示不过期
+     * @param tags 标签
+     */
+    public void tag(String key, long ttlMillis, String... tags){
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        executePipelined(connection -> {
+            tag(connection, keyBytes, ttlMillis, tags);
+            return null;
+        });
+    }
+
+    /**
+     * 在管道中登记标签，管道须通过executePipelined()执行
+     * @param connection redis连接
+     * @param key 缓存key
+     * @param ttlMillis key的过期时间（毫秒），小于等于0表示不过期
+     * @param tags 标签
+     */
+    public void tag(RedisConnection connection, byte[] key, long ttlMillis, String... tags){
+        byte[] ttl = String.valueOf(ttlMillis).getBytes(StandardCharsets.UTF_8);
+        for (String tag : tags) {
+            connection.evalSha(TAG_SCRIPT.getSha1(), ReturnType.INTEGER, 1, tagKey(tag), key, ttl);
+        }
+    }
+
+    /**
+     * 执行包含标签登记的管道（管道中的写入和登记都是幂等的，脚本丢失时整体重试一次）
+     * @param action 管道中的命令
+     */
+    public void executePipelined(RedisCallback<Object> action){
+        withScripts(() -> cacheRedisTemplate.executePipelined(action));
+    }
+
+    /**
+     * 删除标签下的所有key，并使所有节点的本地缓存失效
+     * @param tag 标签
+     * @return 删除的key个数（包括已经过期的）
+     */
+    public long invalidate(String tag){
+        byte[] tagKey = tagKey(tag);
+        byte[] pageSize = String.valueOf(PAGE_SIZE).getBytes(StandardCharsets.UTF_8);
+        byte[] unlinkBatch = String.valueOf(UNLINK_BATCH).getBytes(StandardCharsets.UTF_8);
+        long total = 0;
+        while (true){
+            //1.取出一页key并删除（同一个脚本）
+            List<byte[]> page = withScripts(() -> cacheRedisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.evalSha(INVALIDATE_PAGE_SCRIPT.getSha1(), ReturnType.MULTI, 1, tagKey, pageSize, unlinkBatch)));
+            if (page == null || page.isEmpty()){
+                break;
+            }
+            //2.合并广播本地缓存失效
+            List<String> keys = new ArrayList<>(page.size());
+            for (byte[] key : page) {
+                keys.add(new String(key, StandardCharsets.UTF_8));
+            }
+            nearCacheManager.invalidate(keys);
+            total += page.size();
+        }
+        log.info("标签 {} 失效，删除{}个key", tag, total);
+        return total;
+    }
+
+    /**
+     * 批量删除多个标签
+     * @param tags 标签
+     * @return 删除的key个数
+     */
+    public long invalidateAll(String... tags){
+        return Arrays.stream(tags).mapToLong(this::invalidate).sum();
+    }
+
+    /**
+     * 首次使用前加载脚本后执行；redis返回NOSCRIPT（重启或SCRIPT FLUSH）时重新加载并重试一次
+     */
+    private <T> T withScripts(Supplier<T> action){
+        loadScripts(false);
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)){
+                throw e;
+            }
+            loadScripts(true);
+            return action.get();
+        }
+    }
+
+    private void loadScripts(boolean force){
+        if (scriptsLoaded && !force){
+            return;
+        }
+        cacheRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.scriptLoad(TAG_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            connection.scriptLoad(INVALIDATE_PAGE_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        scriptsLoaded = true;
+    }
+
+    private static boolean isNoScript(Throwable e){
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] tagKey(String tag){
+        return (TAG_PREFIX + tag).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,453 @@
+package com.wzy.codedatabase.redis.cache.warmup;
+
+import cn.hutool.core.convert.Convert;
+import com.wzy.codedatabase.redis.cache.CachePolicy;
+import com.wzy.codedatabase.redis.cache.CachePolicyRegistry;
+import com.wzy.codedatabase.redis.cache.RedisDataEnvelope;
+import com.wzy.codedatabase.redis.cache.TtlJitter;
+import com.wzy.codedatabase.redis.cache.codec.CacheCodec;
+import com.wzy.codedatabase.redis.cache.codec.CompressingCacheCodec;
+import com.wzy.codedatabase.redis.cache.metrics.CacheMetricsRegistry;
+import com.wzy.codedatabase.redis.cache.near.NearCacheManager;
+import com.wzy.codedatabase.redis.cache.packed.PackedStore;
+import com.wzy.codedatabase.redis.cache.tag.CacheTagManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 批量预热（流式）
+ * 调用线程按批从数据库读取，每批切分为若干块交给编码线程并行编码，每块通过一次管道写入redis。
+ * 在途的块数（parallelism * 2）和已编码未写入的字节数（maxInFlightBytes，编码前按平均大小预占）都有上限，数据库读取快于redis写入时调用线程阻塞，内存不会无限增长。
+ * 每批的所有块都写入后推进检查点（批之间按顺序推进），检查点保存在redis中，中断后再次调用从检查点继续；全部完成后删除检查点。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 20:00
+ */
+@Slf4j
+@Component
+public class CacheWarmer {
+
+    /**
+     * 检查点的key前缀，后接缓存key前缀
+     */
+    private static final String CHECKPOINT_PREFIX = "cache:warmup:checkpoint:";
+
+    @Resource
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    @Resource
+    private NearCacheManager nearCacheManager;
+
+    /**
+     * 打包存储的前缀写入hash（见PackedStore）
+     */
+    @Resource
+    private PackedStore packedStore;
+
+    @Resource
+    private CacheMetricsRegistry cacheMetricsRegistry;
+
+    /**
+     * 前缀配置了tagResolver时登记标签
+     */
+    @Resource
+    private CacheTagManager cacheTagManager;
+
+    /**
+     * 通过游标式批量读取预热（可断点续传）
+     * @param keyPrefix 缓存key前缀
+     * @param idType id类型，用于解析检查点
+     * @param idOf 从数据中取id
+     * @param loader 批量读取逻辑
+     * @param options 参数
+     * @param <ID> id类型参数
+     * @param <R> 数据类型参数
+     * @return 最终进度
+     */
+    public <ID,R> WarmUpProgress warmUp(String keyPrefix, Class<ID> idType, Function<R,ID> idOf,
+                                        WarmUpLoader<ID,R> loader, WarmUpOptions options){
+        ID start = options.isResume() ? checkpoint(keyPrefix, idType) : null;
+        if (start != null){
+            log.info("缓存预热 {} 从检查点 {} 继续", keyPrefix, start);
+        }
+        Iterator<List<R>> batches = new Iterator<List<R>>() {
+            private ID afterId = start;
+            private List<R> next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done){
+                    next = loader.next(afterId, options.getBatchSize());
+                    if (next == null || next.isEmpty()){
+                        next = null;
+                        done = true;
+                    } else {
+                        afterId = idOf.apply(next.get(next.size() - 1));
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public List<R> next() {
+                if (!hasNext()){
+                    throw new NoSuchElementException();
+                }
+                List<R> batch = next;
+                next = null;
+                return batch;
+            }
+        };
+        return run(keyPrefix, batches, idOf, options);
+    }
+
+    /**
+     * 通过数据流预热（例如数据库的流式查询），流按id升序时检查点同样有效：
+     * 中断后通过checkpoint()取得检查点，从检查点之后重新打开数据流即可继续
+     * @param keyPrefix 缓存key前缀
+     * @param entities 数据流
+     * @param idOf 从数据中取id
+     * @param options 参数
+     * @param <ID> id类型参数
+     * @param <R> 数据类型参数
+     * @return 最终进度
+     */
+    public <ID,R> WarmUpProgress warmUp(String keyPrefix, Stream<R> entities, Function<R,ID> idOf, WarmUpOptions options){
+        Iterator<R> it = entities.iterator();
+        Iterator<List<R>> batches = new Iterator<List<R>>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public List<R> next() {
+                List<R> batch = new ArrayList<>(options.getBatchSize());
+                while (batch.size() < options.getBatchSize() && it.hasNext()){
+                    batch.add(it.next());
+                }
+                return batch;
+            }
+        };
+        try {
+            return run(keyPrefix, batches, idOf, options);
+        } finally {
+            entities.close();
+        }
+    }
+
+    /**
+     * 读取上次中断的检查点
+     * @param keyPrefix 缓存key前缀
+     * @param idType id类型
+     * @param <ID> id类型参数
+     * @return 检查点，没有返回null
+     */
+    public <ID> ID checkpoint(String keyPrefix, Class<ID> idType){
+        String value = stringRedisTemplate.opsForValue().get(CHECKPOINT_PREFIX + keyPrefix);
+        return value == null ? null : Convert.convert(idType, value);
+    }
+
+    /**
+     * 删除检查点，下次预热从头开始
+     * @param keyPrefix 缓存key前缀
+     */
+    public void clearCheckpoint(String keyPrefix){
+        stringRedisTemplate.delete(CHECKPOINT_PREFIX + keyPrefix);
+    }
+
+    private <ID,R> WarmUpProgress run(String keyPrefix, Iterator<List<R>> batches, Function<R,ID> idOf, WarmUpOptions options){
+        Job job = new Job(keyPrefix, options);
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(options.getParallelism(), r -> {
+            Thread t = new Thread(r, "cache-warmup-" + threadNo.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            while (job.error == null && batches.hasNext()){
+                //1.调用线程读取一批
+                List<R> batch = batches.next();
+                if (batch.isEmpty()){
+                    continue;
+                }
+                job.loaded.add(batch.size());
+                int chunkSize = options.getChunkSize();
+                int chunks = (batch.size() + chunkSize - 1) / chunkSize;
+                Batch b = job.open(String.valueOf(idOf.apply(batch.get(batch.size() - 1))), chunks);
+
+                //2.切分为块，并行编码、管道写入（在途块数有上限）
+                for (int from = 0; from < batch.size() && job.error == null; from += chunkSize) {
+                    List<R> chunk = batch.subList(from, Math.min(batch.size(), from + chunkSize));
+                    job.chunkPermits.acquire();
+                    executor.execute(() -> {
+                        try {
+                            writeChunk(job, chunk, idOf);
+                            b.pending.decrementAndGet();
+                            job.advance();
+                        } catch (Throwable e) {
+                            job.fail(e);
+                        } finally {
+                            job.chunkPermits.release();
+                        }
+                    });
+                }
+
+                //3.保存检查点，按间隔汇报进度
+                saveCheckpoint(job);
+                job.report(false);
+            }
+            //4.等待在途的块写完
+            job.chunkPermits.acquire(job.maxChunks);
+            job.chunkPermits.release(job.maxChunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail(e);
+        } catch (RuntimeException e) {
+            job.fail(e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        saveCheckpoint(job);
+        if (job.error == null){
+            clearCheckpoint(keyPrefix);
+        }
+        return job.report(true);
+    }
+
+    /**
+     * 编码一块数据，并通过一次管道写入redis
+     */
+    private <ID,R> void writeChunk(Job job, List<R> chunk, Function<R,ID> idOf) throws InterruptedException {
+        WarmUpOptions options = job.options;
+        CachePolicy policy = cachePolicyRegistry.resolve(job.keyPrefix);
+        CacheCodec codec = CompressingCacheCodec.wrap(policy, cacheMetricsRegistry.compression(policy.getKeyPrefix()));
+        long now = System.currentTimeMillis();
+        long expireMillis = TimeUnit.SECONDS.toMillis(options.getExpireSeconds());
+        long spreadMillis = TimeUnit.SECONDS.toMillis(options.getSpreadSeconds());
+
+        //1.编码前按已写入数据的平均大小预估本块占用的内存，先占用额度（单位KB），限制的是编码产生的内存而不只是在途管道
+        int permits = job.estimateKilobytes(chunk.size());
+        job.bytePermits.acquire(permits);
+        try {
+            //2.编码
+            List<String> keys = new ArrayList<>(chunk.size());
+            List<byte[]> values = new ArrayList<>(chunk.size());
+            long[] ttls = new long[chunk.size()];
+            String[][] tags = policy.getTagResolver() == null ? null : new String[chunk.size()][];
+            long bytes = 0;
+            for (R r : chunk) {
+                if (r == null){
+                    continue;
+                }
+                String key = job.keyPrefix + idOf.apply(r);
+                long ttl = expireMillis + (spreadMillis > 0 ? ThreadLocalRandom.current().nextLong(spreadMillis + 1) : 0L);
+                byte[] raw;
+                if (options.isLogicalExpire()){
+                    raw = RedisDataEnvelope.encode(r, now + ttl, codec);
+                } else {
+                    raw = codec.encode(r);
+                    ttl = TtlJitter.apply(policy, key, ttl);
+                }
+                ttls[keys.size()] = ttl;
+                if (tags != null){
+                    tags[keys.size()] = policy.getTagResolver().apply(r);
+                }
+                keys.add(key);
+                values.add(raw);
+                bytes += raw.length;
+            }
+            if (keys.isEmpty()){
+                return;
+            }
+
+            //3.按实际大小修正额度：多占的归还；超出预估的部分只在有余量时补占，不阻塞等待（各块都持有额度时互相等待会死锁）
+            int actual = job.kilobytes(bytes);
+            if (actual < permits){
+                job.bytePermits.release(permits - actual);
+                permits = actual;
+            } else if (actual > permits && job.bytePermits.tryAcquire(actual - permits)){
+                permits = actual;
+            }
+            writePipelined(job, keys, values, ttls, tags);
+            nearCacheManager.invalidate(keys);
+            job.written.add(keys.size());
+            job.writtenBytes.add(bytes);
+        } finally {
+            job.bytePermits.release(permits);
+        }
+    }
+
+    /**
+     * 通过一次管道写入一块已编码的数据（同时登记标签）
+     * @param tags 与keys位置一致的标签，前缀没有配置tagResolver时为null
+     */
+    private void writePipelined(Job job, List<String> keys, List<byte[]> values, long[] ttls, String[][] tags){
+        WarmUpOptions options = job.options;
+        CachePolicy packed = packedStore.policyOf(keys.get(0));
+        RedisCallback<Object> action = connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                long ttl = options.isLogicalExpire() ? -1L : ttls[i];
+                if (packed != null){
+                    packedStore.write(connection, packed, keys.get(i), values.get(i), ttl);
+                } else if (options.isLogicalExpire()){
+                    connection.set(key, values.get(i));
+                } else {
+                    connection.pSetEx(key, ttl, values.get(i));
+                }
+                if (tags != null && tags[i] != null && tags[i].length > 0){
+                    cacheTagManager.tag(connection, key, ttl, tags[i]);
+                }
+            }
+            return null;
+        };
+        Runnable pipeline = tags == null ? () -> cacheRedisTemplate.executePipelined(action)
+                : () -> cacheTagManager.executePipelined(action);
+        if (packed != null){
+            //打包存储通过EVALSHA写入，脚本丢失时整体重试
+            packedStore.withScript(pipeline);
+        } else {
+            pipeline.run();
+        }
+    }
+
+    private void saveCheckpoint(Job job){
+        String checkpoint = job.checkpoint;
+        if (checkpoint != null && !checkpoint.equals(job.savedCheckpoint)){
+            stringRedisTemplate.opsForValue().set(CHECKPOINT_PREFIX + job.keyPrefix, checkpoint);
+            job.savedCheckpoint = checkpoint;
+        }
+    }
+
+    /**
+     * 一批数据：最后一条的id和未写完的块数
+     */
+    private static class Batch {
+        private final String lastId;
+        private final AtomicInteger pending;
+
+        Batch(String lastId, int chunks) {
+            this.lastId = lastId;
+            this.pending = new AtomicInteger(chunks);
+        }
+    }
+
+    /**
+     * 一次预热的状态
+     */
+    private static class Job {
+        private final String keyPrefix;
+        private final WarmUpOptions options;
+        private final int maxChunks;
+        private final int maxKilobytes;
+        private final Semaphore chunkPermits;
+        private final Semaphore bytePermits;
+        private final LongAdder loaded = new LongAdder();
+        private final LongAdder written = new LongAdder();
+        private final LongAdder writtenBytes = new LongAdder();
+        private final long startMillis = System.currentTimeMillis();
+        /**
+         * 还没有全部写入的批，按读取顺序排列
+         */
+        private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+        private volatile String checkpoint;
+        private String savedCheckpoint;
+        private volatile Throwable error;
+        private long lastReportMillis = startMillis;
+
+        Job(String keyPrefix, WarmUpOptions options) {
+            this.keyPrefix = keyPrefix;
+            this.options = options;
+            this.maxChunks = Math.max(1, options.getParallelism() * 2);
+            this.maxKilobytes = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, options.getMaxInFlightBytes() / 1024));
+            this.chunkPermits = new Semaphore(maxChunks);
+            this.bytePermits = new Semaphore(maxKilobytes);
+        }
+
+        /**
+         * 字节数换算为额度（KB），不超过总额度
+         */
+        int kilobytes(long bytes){
+            return (int) Math.min(maxKilobytes, Math.max(1L, bytes / 1024));
+        }
+
+        /**
+         * 预估一块数据编码后占用的额度：按已写入数据的平均大小估算，还没有写入时按总额度平分给在途的块
+         */
+        int estimateKilobytes(int entries){
+            long n = written.sum();
+            if (n == 0){
+                return kilobytes(maxKilobytes * 1024L / maxChunks);
+            }
+            return kilobytes(writtenBytes.sum() / n * entries);
+        }
+
+        synchronized Batch open(String lastId, int chunks){
+            Batch b = new Batch(lastId, chunks);
+            batches.addLast(b);
+            return b;
+        }
+
+        /**
+         * 检查点推进到连续写完的最后一批
+         */
+        synchronized void advance(){
+            while (!batches.isEmpty() && batches.peekFirst().pending.get() == 0){
+                checkpoint = batches.pollFirst().lastId;
+            }
+        }
+
+        void fail(Throwable e){
+            if (error == null){
+                error = e;
+                log.error("缓存预热 {} 失败，检查点：{}", keyPrefix, checkpoint, e);
+            }
+        }
+
+        WarmUpProgress report(boolean finished){
+            long now = System.currentTimeMillis();
+            if (!finished && now - lastReportMillis < options.getProgressIntervalMillis()){
+                return null;
+            }
+            lastReportMillis = now;
+            WarmUpProgress progress = new WarmUpProgress(keyPrefix, loaded.sum(), written.sum(), writtenBytes.sum(),
+                    checkpoint, now - startMillis, finished && error == null, error == null ? null : String.valueOf(error));
+            log.info("缓存预热 {}：已读取{}条，已写入{}条，{}条/秒，{}MB/秒，检查点：{}", keyPrefix, progress.getLoaded(),
+                    progress.getWritten(), String.format("%.0f", progress.entriesPerSecond()),
+                    String.format("%.2f", progress.megabytesPerSecond()), progress.getCheckpoint());
+            if (options.getProgressListener() != null){
+                options.getProgressListener().accept(progress);
+            }
+            return progress;
+        }
+    }
+}
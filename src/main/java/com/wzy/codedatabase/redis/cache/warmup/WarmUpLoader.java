@@ -0,0 +1,23 @@
+package com.wzy.codedatabase.redis.cache.warmup;
+
+import java.util.List;
+
+/**
+ * 预热数据的游标式批量读取（按id升序分页，例如 where id > afterId order by id limit n）
+ * @param <ID> id类型参数
+ * @param <R> 数据类型参数
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 20:00
+ */
+@FunctionalInterface
+public interface WarmUpLoader<ID,R> {
+
+    /**
+     * 读取id大于afterId的下一批数据
+     * @param afterId 上一批最后一条数据的id，第一批为null（或断点续传的检查点）
+     * @param limit 最多读取的条数
+     * @return 按id升序排列的数据，为空表示已经读取完毕
+     */
+    List<R> next(ID afterId, int limit);
+}
@@ -0,0 +1,68 @@
+package com.wzy.codedatabase.redis.cache.warmup;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.function.Consumer;
+
+/**
+ * 批量预热的参数
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 20:00
+ */
+@Data
+@Accessors(chain = true)
+public class WarmUpOptions {
+
+    /**
+     * 每次从数据库读取的条数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 每次管道写入redis的条数
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 并行编码写入的线程数
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 已编码但还没有写入redis的数据最多占用的内存（字节）
+     * 每块在编码前按已写入数据的平均大小预占，单块实际大小超出预估且没有余量时会短暂超出该值（超出部分不超过预估误差）
+     */
+    private long maxInFlightBytes = 64L * 1024 * 1024;
+
+    /**
+     * 过期时间（秒）
+     */
+    private long expireSeconds = 30 * 60L;
+
+    /**
+     * 过期时间在该窗口（秒）内随机分散，避免预热的key同时过期
+     */
+    private long spreadSeconds = 0L;
+
+    /**
+     * true：写入逻辑过期数据（与saveShop2Redis一致）；false：写入普通数据并设置真实过期时间
+     */
+    private boolean logicalExpire = true;
+
+    /**
+     * 是否从上次中断的检查点继续
+     */
+    private boolean resume = true;
+
+    /**
+     * 进度回调的间隔（毫秒）
+     */
+    private long progressIntervalMillis = 5000L;
+
+    /**
+     * 进度回调，可以为null（进度始终会打印日志）
+     */
+    private Consumer<WarmUpProgress> progressListener;
+}
@@ -0,0 +1,52 @@
+package com.wzy.codedatabase.redis.cache.warmup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 批量预热的进度快照
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/18 20:00
+ */
+@Data
+@AllArgsConstructor
+public class WarmUpProgress {
+    private String keyPrefix;
+    /**
+     * 已从数据库读取的条数
+     */
+    private long loaded;
+    /**
+     * 已写入redis的条数
+     */
+    private long written;
+    /**
+     * 已写入redis的字节数
+     */
+    private long writtenBytes;
+    /**
+     * 检查点：该id及之前的数据都已写入redis
+     */
+    private String checkpoint;
+    private long elapsedMillis;
+    private boolean finished;
+    /**
+     * 失败原因，成功为null
+     */
+    private String error;
+
+    /**
+     * @return 吞吐量（条/秒）
+     */
+    public double entriesPerSecond(){
+        return elapsedMillis == 0 ? 0D : written * 1000D / elapsedMillis;
+    }
+
+    /**
+     * @return 吞吐量（MB/秒）
+     */
+    public double megabytesPerSecond(){
+        return elapsedMillis == 0 ? 0D : writtenBytes * 1000D / elapsedMillis / (1024 * 1024);
+    }
+}
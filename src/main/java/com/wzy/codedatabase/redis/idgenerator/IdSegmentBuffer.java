@@ -0,0 +1,161 @@
+package com.wzy.codedatabase.redis.idgenerator;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某个业务前缀的号段双缓冲（RedisIdWorker的号段模式）
+ * 当前号段用原子计数器在本地分配序列号；当前号段用掉prefetchRatio后异步预取下一个号段，
+ * 当前号段用完时直接切换到预取的号段（预取未完成时等待它，不会重复申请）。
+ * 号段长度按消耗速度自适应：预取时按当前号段的消耗速度计算，使下一个号段大约用targetMillis，在[minStep, maxStep]之间。
+ * 号段属于某一天的序列号key，日期变化后剩余的号直接丢弃。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 14:00
+ */
+@Slf4j
+class IdSegmentBuffer {
+
+    /**
+     * 申请号段：key为某天的序列号key，返回号段的最后一个号（INCRBY的结果）
+     */
+    interface Fetcher {
+        long incrBy(String date, long step);
+    }
+
+    private final String keyPrefix;
+    private final Fetcher fetcher;
+    private final Executor prefetchExecutor;
+    private final double prefetchRatio;
+    private final long minStep;
+    private final long maxStep;
+    private final long targetMillis;
+
+    private volatile Segment current;
+
+    /**
+     * 预取中或已预取的下一个号段，切换时取走
+     */
+    private volatile CompletableFuture<Segment> next;
+
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+
+    private volatile long step;
+
+    IdSegmentBuffer(String keyPrefix, Fetcher fetcher, Executor prefetchExecutor, double prefetchRatio,
+                    long initialStep, long minStep, long maxStep, long targetMillis) {
+        this.keyPrefix = keyPrefix;
+        this.fetcher = fetcher;
+        this.prefetchExecutor = prefetchExecutor;
+        this.prefetchRatio = prefetchRatio;
+        this.minStep = Math.max(1L, minStep);
+        this.maxStep = Math.max(this.minStep, maxStep);
+        this.targetMillis = targetMillis;
+        this.step = clamp(initialStep);
+    }
+
+    /**
+     * 分配一个序列号
+     * @param date 当天日期（序列号key的日期部分）
+     * @return 序列号
+     */
+    long next(String date){
+        while (true){
+            Segment segment = current;
+            if (segment != null && segment.date.equals(date)){
+                long serial = segment.cursor.getAndIncrement();
+                if (serial <= segment.end){
+                    //1.用掉prefetchRatio后预取下一个号段
+                    if (serial == segment.prefetchAt){
+                        prefetch(segment, serial);
+                    }
+                    return serial;
+                }
+            }
+            //2.当前号段用完或日期变化，切换号段
+            switchSegment(segment, date);
+        }
+    }
+
+    private synchronized void switchSegment(Segment exhausted, String date){
+        if (current != exhausted){
+            //其他线程已切换
+            return;
+        }
+        Segment segment = null;
+        CompletableFuture<Segment> prefetched = next;
+        if (prefetched != null){
+            next = null;
+            try {
+                segment = prefetched.join();
+            } catch (RuntimeException e) {
+                log.warn("预取号段失败，同步申请，业务：{}", keyPrefix, e);
+            } finally {
+                prefetching.set(false);
+            }
+        }
+        if (segment == null || !segment.date.equals(date)){
+            segment = fetch(date, step);
+        }
+        current = segment;
+    }
+
+    /**
+     * 按当前号段的消耗速度计算下一个号段的长度，并异步申请
+     */
+    private void prefetch(Segment segment, long serial){
+        if (!prefetching.compareAndSet(false, true)){
+            return;
+        }
+        long consumed = serial - segment.start + 1;
+        long elapsedMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - segment.fetchedAtNanos));
+        long nextStep = clamp((long) Math.ceil((double) consumed * targetMillis / elapsedMillis));
+        step = nextStep;
+        String date = segment.date;
+        next = CompletableFuture.supplyAsync(() -> fetch(date, nextStep), prefetchExecutor);
+    }
+
+    private Segment fetch(String date, long step){
+        long end = fetcher.incrBy(date, step);
+        return new Segment(date, end - step + 1, end, prefetchRatio);
+    }
+
+    private long clamp(long value){
+        return Math.min(maxStep, Math.max(minStep, value));
+    }
+
+    /**
+     * @return 当前号段长度
+     */
+    long step(){
+        return step;
+    }
+
+    /**
+     * 已申请的号段[start, end]
+     */
+    private static final class Segment {
+        final String date;
+        final long start;
+        final long end;
+        /**
+         * 分配到这个号时预取下一个号段
+         */
+        final long prefetchAt;
+        final AtomicLong cursor;
+        final long fetchedAtNanos = System.nanoTime();
+
+        Segment(String date, long start, long end, double prefetchRatio) {
+            this.date = date;
+            this.start = start;
+            this.end = end;
+            this.prefetchAt = start + (long) ((end - start) * prefetchRatio);
+            this.cursor = new AtomicLong(start);
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.wzy.codedatabase.redis.idgenerator;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.BufferOverflowException;
+import java.nio.LongBuffer;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * 基于Redis的分布式全局ID
+ * id由32位相对时间戳（秒）和32位当天序列号组成，序列号来自redis中按业务和日期区分的计数器。
+ * 低32位的最高位保留给SnowflakeIdWorker（其id该位为1），因此序列号不能超过2^31-1（每个业务每天约21亿个），
+ * 超出时抛出异常而不是与雪花id重叠；两种id的高32位格式相同，同时使用时不会重复。
+ * 开启号段模式（id.segment.enabled=true）后，每次通过INCRBY申请一段序列号，在本地分配，
+ * 并在用掉一部分后异步预取下一段（见IdSegmentBuffer），id的格式不变；服务重启时未用完的号会被跳过。
  * @author 王忠义
  * @version 1.0
  * @date 2023/6/22 16:11
@@ -20,14 +31,67 @@ public class RedisIdWorker {
     /**
      * 开始时间戳 2022/01/01 00:00:00
      */
-    private static final long BEGIN_TIMESTAMP = 1640995200L;
+    static final long BEGIN_TIMESTAMP = 1640995200L;
     /**
      * 序列号位数
      */
-    private static final int COUNT_BITS = 32;
+    static final int COUNT_BITS = 32;
+    /**
+     * 低32位的最高位：SnowflakeIdWorker生成的id该位为1，本类生成的id该位为0
+     */
+    static final long SNOWFLAKE_FLAG = 1L << (COUNT_BITS - 1);
+    /**
+     * 序列号上限（不含低32位的最高位）
+     */
+    static final long MAX_SERIAL = SNOWFLAKE_FLAG - 1L;
+    /**
+     * 序列号key的日期格式（线程安全，只创建一次）
+     */
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    /**
+     * 号段预取线程
+     */
+    private static final ExecutorService SEGMENT_PREFETCH_EXECUTOR = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "id-segment-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private StringRedisTemplate stringRedisTemplate;
 
+    /**
+     * 是否开启号段模式
+     */
+    @Value("${id.segment.enabled:false}")
+    private boolean segmentEnabled;
+
+    /**
+     * 当前号段用掉的比例达到该值时预取下一个号段
+     */
+    @Value("${id.segment.prefetch-ratio:0.2}")
+    private double segmentPrefetchRatio;
+
+    @Value("${id.segment.initial-step:1000}")
+    private long segmentInitialStep;
+
+    @Value("${id.segment.min-step:100}")
+    private long segmentMinStep;
+
+    @Value("${id.segment.max-step:1000000}")
+    private long segmentMaxStep;
+
+    /**
+     * 号段长度自适应的目标：一个号段大约使用的时间（毫秒）
+     */
+    @Value("${id.segment.target-millis:10000}")
+    private long segmentTargetMillis;
+
+    /**
+     * 各业务的号段缓冲
+     */
+    private final ConcurrentHashMap<String, IdSegmentBuffer> segments = new ConcurrentHashMap<>();
+
     public RedisIdWorker(StringRedisTemplate stringRedisTemplate) {
         this.stringRedisTemplate = stringRedisTemplate;
     }
@@ -40,19 +104,113 @@ public class RedisIdWorker {
     public long getNextId(String keyPrefix){
         //1.生成时间戳,高位32位。
         LocalDateTime now = LocalDateTime.now();
-        long timeStamp = now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
-        timeStamp = timeStamp << COUNT_BITS;//左移32位
-        timeStamp = timeStamp & ((1L << 63) - 1L);//保证首位是0
+        long timeStamp = timeStampOf(now);
 
         //2.生成序列号，低位32位，从redis的对应key的value获取
         //2.1.获取当前日期，精确到天。1.避免序列号超过32位，2.利于按天统计
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
-        long serial = stringRedisTemplate.opsForValue().increment("incr:" + keyPrefix + ":" + date);
+        String date = now.format(DATE_FORMATTER);
+        long serial = segmentEnabled ? segmentOf(keyPrefix).next(date)
+                : stringRedisTemplate.opsForValue().increment(serialKey(keyPrefix, date));
+        checkSerial(keyPrefix, serial);
 
         //3.拼接并返回
         return timeStamp | serial;
     }
 
+    /**
+     * 批量获取n个id，只访问一次redis（INCRBY n），返回的n个id是连续的：第i个为 first + i
+     * 时间戳和日期只计算一次，适合在循环中使用（不创建数组）：
+     * long first = getNextIdRange(prefix, n); for (int i = 0; i < n; i++) { long id = first + i; ... }
+     * 不经过号段模式的本地号段，直接从同一个序列号key预留，与号段模式分配的号不会重复。
+     * @param keyPrefix id的对应业务标识key
+     * @param n 个数，大于0
+     * @return 第一个id
+     */
+    public long getNextIdRange(String keyPrefix, int n){
+        if (n <= 0){
+            throw new IllegalArgumentException("n必须大于0：" + n);
+        }
+        //1.生成时间戳,高位32位。
+        LocalDateTime now = LocalDateTime.now();
+        long timeStamp = timeStampOf(now);
+
+        //2.一次预留n个序列号，返回值为最后一个
+        String date = now.format(DATE_FORMATTER);
+        long last = stringRedisTemplate.opsForValue().increment(serialKey(keyPrefix, date), n);
+        checkSerial(keyPrefix, last);
+
+        //3.拼接第一个id（序列号连续，同一天内不会进位到时间戳）
+        return timeStamp | (last - n + 1);
+    }
+
+    /**
+     * 批量获取n个id，只访问一次redis
+     * @param keyPrefix id的对应业务标识key
+     * @param n 个数，大于0
+     * @return 递增的n个id
+     */
+    public long[] getNextIds(String keyPrefix, int n){
+        long first = getNextIdRange(keyPrefix, n);
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    /**
+     * 批量获取n个id并写入调用方的缓冲区（可以复用同一个缓冲区），只访问一次redis
+     * @param keyPrefix id的对应业务标识key
+     * @param n 个数，大于0
+     * @param out 缓冲区，从当前位置开始写入，写入后位置后移n
+     * @throws BufferOverflowException 缓冲区剩余空间不足n（此时不访问redis）
+     */
+    public void getNextIds(String keyPrefix, int n, LongBuffer out){
+        if (out.remaining() < n){
+            throw new BufferOverflowException();
+        }
+        long first = getNextIdRange(keyPrefix, n);
+        for (int i = 0; i < n; i++) {
+            out.put(first + i);
+        }
+    }
+
+    /**
+     * 高32位时间戳：从BEGIN_TIMESTAMP开始的秒数
+     */
+    private static long timeStampOf(LocalDateTime now){
+        long timeStamp = now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
+        timeStamp = timeStamp << COUNT_BITS;//左移32位
+        return timeStamp & ((1L << 63) - 1L);//保证首位是0
+    }
+
+    /**
+     * 序列号超过MAX_SERIAL时会占用雪花id的标志位（继续增大还会进位到时间戳），拒绝生成
+     */
+    private static void checkSerial(String keyPrefix, long serial){
+        if (serial > MAX_SERIAL){
+            throw new IllegalStateException("业务" + keyPrefix + "当天的序列号已超过上限" + MAX_SERIAL);
+        }
+    }
+
+    private IdSegmentBuffer segmentOf(String keyPrefix){
+        IdSegmentBuffer buffer = segments.get(keyPrefix);
+        if (buffer != null){
+            return buffer;
+        }
+        return segments.computeIfAbsent(keyPrefix, prefix -> new IdSegmentBuffer(prefix,
+                (date, step) -> stringRedisTemplate.opsForValue().increment(serialKey(prefix, date), step),
+                SEGMENT_PREFETCH_EXECUTOR, segmentPrefetchRatio, segmentInitialStep, segmentMinStep,
+                segmentMaxStep, segmentTargetMillis));
+    }
+
+    /**
+     * 某个业务某一天的序列号key
+     */
+    private static String serialKey(String keyPrefix, String date){
+        return "incr:" + keyPrefix + ":" + date;
+    }
+
     //打印l的字节数组。从高位到低位，实现程序员计算器类似功能
     private static void printBit(long l) {
         byte[] bytes = new byte[64];
@@ -0,0 +1,270 @@
+package com.wzy.codedatabase.redis.idgenerator;
+
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 本地生成的分布式全局ID（雪花算法），生成id不访问redis，只在启动时从redis租用worker id并定时续约
+ * id格式与RedisIdWorker兼容：高32位同样是从BEGIN_TIMESTAMP开始的秒数（与RedisIdWorker一样按本地时间计算），
+ * 因此不同秒的id与RedisIdWorker生成的id保持先后顺序；低32位为 1位标志（恒为1） + 10位秒内毫秒 + 10位worker id + 11位毫秒内序列号，
+ * 每个节点每毫秒最多2048个id。RedisIdWorker的序列号限制在2^31以下（标志位为0），同一秒内两者的id不会重复。
+ * 生成过程无锁、不创建对象：状态（毫秒时间戳和序列号）压缩在一个AtomicLong中，通过CAS推进。
+ * 时钟回拨或序列号耗尽时借用之后的毫秒（最多超前max-borrow-millis），超出后等待时钟追上（最多max-wait-millis），仍追不上时抛出异常。
+ * worker id通过SET NX PX租用，续约间隔为租期的1/3；连续续约失败时，在租期到期前1/3停止生成id，
+ * 留出的时间用于容忍节点间的时钟误差，租期到期后worker id由其他节点回收。
+ * @author 王忠义
+ * @version 1.0
+ * @date 2026/10/19 15:00
+ */
+@Slf4j
+@Component
+public class SnowflakeIdWorker {
+
+    /**
+     * worker id位数
+     */
+    private static final int WORKER_BITS = 10;
+    /**
+     * 毫秒内序列号位数
+     */
+    private static final int SEQUENCE_BITS = 11;
+    private static final int MAX_WORKERS = 1 << WORKER_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1L;
+    private static final long BEGIN_MILLIS = TimeUnit.SECONDS.toMillis(RedisIdWorker.BEGIN_TIMESTAMP);
+
+    private static final String WORKER_KEY_PREFIX = "id:worker:";
+
+    /**
+     * 从ARGV[4]开始依次尝试SET NX PX，返回租到的worker id，全部被占用时返回-1
+     */
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local n = tonumber(ARGV[3])\n" +
+            "local start = tonumber(ARGV[4])\n" +
+            "for i = 0, n - 1 do\n" +
+            "  local id = (start + i) % n\n" +
+            "  if redis.call('set', KEYS[1] .. id, ARGV[1], 'NX', 'PX', ARGV[2]) then return id end\n" +
+            "end\n" +
+            "return -1", Long.class);
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    /**
+     * worker id续约线程
+     */
+    private static final ScheduledExecutorService HEARTBEAT_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "id-worker-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 是否开启（开启后启动时租用worker id）
+     */
+    @Value("${id.snowflake.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * worker id租期（毫秒）
+     */
+    @Value("${id.snowflake.lease-millis:30000}")
+    private long leaseMillis;
+
+    /**
+     * 最多借用之后多少毫秒
+     */
+    @Value("${id.snowflake.max-borrow-millis:10}")
+    private long maxBorrowMillis;
+
+    /**
+     * 超出借用范围时最多等待时钟追上多少毫秒
+     */
+    @Value("${id.snowflake.max-wait-millis:1000}")
+    private long maxWaitMillis;
+
+    /**
+     * 租约令牌（节点id）
+     */
+    private final String token = IdUtil.fastSimpleUUID();
+
+    /**
+     * 当前租用的worker id，-1表示未持有
+     */
+    private volatile int workerId = -1;
+
+    /**
+     * 租约的有效截止时间（墙上时钟毫秒），超过后停止生成id
+     */
+    private volatile long leaseValidUntil;
+
+    /**
+     * 本地时区偏移（毫秒），与RedisIdWorker的LocalDateTime.toEpochSecond(UTC)保持一致，由续约线程刷新
+     */
+    private volatile long offsetMillis = TimeZone.getDefault().getOffset(System.currentTimeMillis());
+
+    /**
+     * 上一个id的毫秒时间戳（从BEGIN_TIMESTAMP开始）和序列号：高位为毫秒，低SEQUENCE_BITS位为序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdWorker(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @PostConstruct
+    public void start(){
+        if (!enabled){
+            return;
+        }
+        if (!acquire()){
+            throw new IllegalStateException("worker id已全部被占用（" + MAX_WORKERS + "个）");
+        }
+        long interval = Math.max(1L, leaseMillis / 3);
+        HEARTBEAT_EXECUTOR.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop(){
+        int id = workerId;
+        if (id < 0){
+            return;
+        }
+        workerId = -1;
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(WORKER_KEY_PREFIX + id), token);
+        } catch (RuntimeException e) {
+            log.warn("释放worker id {} 失败，等待租期到期", id, e);
+        }
+    }
+
+    /**
+     * 获取下一个id（无锁，不创建对象）
+     * @return id
+     * @throws IllegalStateException 未持有有效的worker id，或时钟回拨超过可等待的范围
+     */
+    public long nextId(){
+        long waitUntilNanos = 0L;
+        while (true){
+            //1.检查租约
+            long wall = System.currentTimeMillis();
+            int worker = workerId;
+            if (worker < 0 || wall >= leaseValidUntil){
+                throw new IllegalStateException("未持有有效的worker id");
+            }
+            long now = wall + offsetMillis - BEGIN_MILLIS;
+
+            //2.推进状态：时钟前进时序列号归零；同一毫秒或时钟落后时沿用上一个毫秒；序列号耗尽时借用下一个毫秒
+            long prev = state.get();
+            long lastMillis = prev >>> SEQUENCE_BITS;
+            long sequence = prev & SEQUENCE_MASK;
+            long millis;
+            if (now > lastMillis){
+                millis = now;
+                sequence = 0L;
+            } else if (sequence < SEQUENCE_MASK){
+                millis = lastMillis;
+                sequence++;
+            } else {
+                millis = lastMillis + 1;
+                sequence = 0L;
+            }
+
+            //3.超前时钟超过可借用的范围，等待时钟追上
+            long ahead = millis - now;
+            if (ahead > maxBorrowMillis){
+                long nanos = System.nanoTime();
+                if (waitUntilNanos == 0L){
+                    waitUntilNanos = nanos + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                }
+                long remaining = waitUntilNanos - nanos;
+                if (remaining <= 0L){
+                    throw new IllegalStateException("时钟回拨" + ahead + "毫秒，超过可等待的范围");
+                }
+                LockSupport.parkNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(ahead - maxBorrowMillis)));
+                continue;
+            }
+
+            //4.CAS成功后拼接：秒 | 标志位 | 秒内毫秒 | worker id | 序列号
+            if (state.compareAndSet(prev, millis << SEQUENCE_BITS | sequence)){
+                return (millis / 1000) << RedisIdWorker.COUNT_BITS
+                        | RedisIdWorker.SNOWFLAKE_FLAG
+                        | (millis % 1000) << (WORKER_BITS + SEQUENCE_BITS)
+                        | (long) worker << SEQUENCE_BITS
+                        | sequence;
+            }
+        }
+    }
+
+    /**
+     * @return 当前租用的worker id，-1表示未持有
+     */
+    public int workerId(){
+        return workerId;
+    }
+
+    /**
+     * 租用worker id，从随机位置开始尝试，避免所有节点竞争同一个id
+     * @return 是否租到
+     */
+    private boolean acquire(){
+        long sentAt = System.currentTimeMillis();
+        Long id = stringRedisTemplate.execute(ACQUIRE_SCRIPT, Collections.singletonList(WORKER_KEY_PREFIX), token,
+                String.valueOf(leaseMillis), String.valueOf(MAX_WORKERS),
+                String.valueOf(ThreadLocalRandom.current().nextInt(MAX_WORKERS)));
+        if (id == null || id < 0){
+            return false;
+        }
+        leaseValidUntil = sentAt + leaseMillis * 2 / 3;
+        workerId = id.intValue();
+        log.info("租用worker id：{}", id);
+        return true;
+    }
+
+    /**
+     * 续约：成功后延长有效截止时间；租约已被回收时重新租用新的worker id
+     */
+    private void heartbeat(){
+        offsetMillis = TimeZone.getDefault().getOffset(System.currentTimeMillis());
+        try {
+            int id = workerId;
+            if (id >= 0){
+                long sentAt = System.currentTimeMillis();
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                        Collections.singletonList(WORKER_KEY_PREFIX + id), token, String.valueOf(leaseMillis));
+                if (renewed != null && renewed == 1L){
+                    leaseValidUntil = sentAt + leaseMillis * 2 / 3;
+                    return;
+                }
+                log.warn("worker id {} 的租约已被回收，重新租用", id);
+                workerId = -1;
+            }
+            if (!acquire()){
+                log.error("worker id已全部被占用，暂停生成id");
+            }
+        } catch (RuntimeException e) {
+            log.warn("worker id续约失败", e);
+        }
+    }
+}